@@ -0,0 +1,109 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.benchmarks;
+
+import emulib.benchmarks.stubs.BenchmarkCPU;
+import emulib.benchmarks.stubs.BenchmarkMemory;
+import emulib.plugins.cpu.CPU;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of single steps and of whole emulation runs of AbstractCPU.
+ */
+@State(Scope.Thread)
+public class AbstractCPUBenchmark {
+    private final static int MEMORY_SIZE = 65536;
+
+    @Param({"30000"})
+    private int instructions;
+
+    private BenchmarkMemory memory;
+    private BenchmarkCPU cpu;
+    private final BlockingQueue<CPU.RunState> states = new LinkedBlockingQueue<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        memory = new BenchmarkMemory(MEMORY_SIZE);
+        // ADD 1; ADD 1; ...; HLT after given number of instructions; the stepping benchmark loops by JMP 0
+        for (int i = 0; i < instructions; i++) {
+            memory.writeShort(2 * i, BenchmarkCPU.ADD);
+            memory.writeShort(2 * i + 1, (short) 1);
+        }
+        memory.writeShort(2 * instructions, BenchmarkCPU.HLT);
+        memory.writeShort(MEMORY_SIZE - 2, BenchmarkCPU.JMP);
+        memory.writeShort(MEMORY_SIZE - 1, (short) (MEMORY_SIZE - 2));
+
+        cpu = new BenchmarkCPU(1L, memory);
+        cpu.addCPUListener(new CPU.CPUListener() {
+            @Override
+            public void runStateChanged(CPU.RunState runState) {
+                if (runState != CPU.RunState.STATE_RUNNING) {
+                    states.add(runState);
+                }
+            }
+
+            @Override
+            public void internalStateChanged() {
+            }
+        });
+        // stepping is allowed only when the CPU is paused
+        cpu.reset();
+        states.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cpu.destroy();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CPU.RunState step() throws InterruptedException {
+        cpu.setInstructionPosition(MEMORY_SIZE - 2);
+        cpu.step();
+        return states.take();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int execute() throws InterruptedException {
+        cpu.reset();
+        states.take();
+        cpu.execute();
+        states.take();
+        return cpu.getAccumulator();
+    }
+
+}
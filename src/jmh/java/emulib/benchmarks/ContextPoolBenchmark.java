@@ -0,0 +1,89 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.benchmarks;
+
+import emulib.annotations.ContextType;
+import emulib.emustudio.API;
+import emulib.plugins.Context;
+import emulib.runtime.ContextPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of context lookups in ContextPool, with a number of other registered contexts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContextPoolBenchmark {
+    private final static String PASSWORD = "benchmark";
+    private final static long OWNER_ID = 1;
+    private final static long REQUESTER_ID = 2;
+
+    @ContextType
+    public interface BenchmarkContext extends Context {
+
+    }
+
+    @ContextType
+    public interface OtherContext extends Context {
+
+    }
+
+    private static class BenchmarkContextImpl implements BenchmarkContext {
+
+    }
+
+    private static class OtherContextImpl implements OtherContext {
+
+    }
+
+    @Param({"1", "16"})
+    private int contextsCount;
+
+    private ContextPool contextPool;
+
+    @Setup
+    public void setUp() throws Exception {
+        API.assignPassword(PASSWORD);
+
+        contextPool = new ContextPool();
+        contextPool.setComputer(PASSWORD, (pluginA, pluginB) -> pluginA == REQUESTER_ID && pluginB == OWNER_ID);
+        for (int i = 0; i < contextsCount; i++) {
+            contextPool.register(OWNER_ID + 10 + i, new OtherContextImpl(), OtherContext.class);
+            contextPool.register(OWNER_ID + 10 + i, new BenchmarkContextImpl(), BenchmarkContext.class);
+        }
+        contextPool.register(OWNER_ID, new BenchmarkContextImpl(), BenchmarkContext.class);
+    }
+
+    @Benchmark
+    public BenchmarkContext getContext() throws Exception {
+        return contextPool.getContext(REQUESTER_ID, BenchmarkContext.class, -1);
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.benchmarks;
+
+import emulib.runtime.HEXFileManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of Intel HEX files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HEXFileManagerBenchmark {
+
+    @Param({"65536"})
+    private int programSize;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws Exception {
+        HEXFileManager hexFile = new HEXFileManager();
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < programSize; i++) {
+            code.append(String.format("%02X", i & 0xFF));
+        }
+        hexFile.putCode(code.toString());
+
+        file = File.createTempFile("emulib-benchmark", ".hex");
+        hexFile.generateFile(file.getPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public HEXFileManager parseFromFile() throws Exception {
+        return HEXFileManager.parseFromFile(file);
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.benchmarks;
+
+import emulib.benchmarks.stubs.BenchmarkMemory;
+import emulib.plugins.memory.ShortMemoryContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of reading and writing memory cells, one by one (boxed and primitive) and in blocks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemoryContextBenchmark {
+    private final static int MEMORY_SIZE = 65536;
+    private final static int BLOCK_SIZE = 256;
+
+    private ShortMemoryContext memory;
+    private final short[] block = new short[BLOCK_SIZE];
+    private final Short[] boxedBlock = new Short[BLOCK_SIZE];
+
+    @Setup
+    public void setUp() {
+        memory = new BenchmarkMemory(MEMORY_SIZE);
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] = (short) i;
+            boxedBlock[i] = (short) i;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMORY_SIZE)
+    public int readBoxed() {
+        int sum = 0;
+        for (int i = 0; i < MEMORY_SIZE; i++) {
+            sum += memory.read(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMORY_SIZE)
+    public int readPrimitive() {
+        int sum = 0;
+        for (int i = 0; i < MEMORY_SIZE; i++) {
+            sum += memory.readShort(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMORY_SIZE)
+    public void writeBoxed() {
+        for (int i = 0; i < MEMORY_SIZE; i++) {
+            memory.write(i, (short) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMORY_SIZE)
+    public void writePrimitive() {
+        for (int i = 0; i < MEMORY_SIZE; i++) {
+            memory.writeShort(i, (short) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMORY_SIZE)
+    public void writeBoxedBlocks() {
+        for (int i = 0; i < MEMORY_SIZE; i += BLOCK_SIZE) {
+            memory.writeBlock(i, boxedBlock, 0, BLOCK_SIZE);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMORY_SIZE)
+    public void writePrimitiveBlocks() {
+        for (int i = 0; i < MEMORY_SIZE; i += BLOCK_SIZE) {
+            memory.writeBlock(i, block, 0, BLOCK_SIZE);
+        }
+    }
+
+}
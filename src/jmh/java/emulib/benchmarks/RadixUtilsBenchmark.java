@@ -0,0 +1,69 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.benchmarks;
+
+import emulib.runtime.RadixUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radix conversions used by debuggers and memory editors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RadixUtilsBenchmark {
+
+    @Param({"2", "8"})
+    private int bytesCount;
+
+    @Param({"2", "10", "16"})
+    private int radix;
+
+    private byte[] number;
+    private String hexNumber;
+
+    @Setup
+    public void setUp() {
+        number = new byte[bytesCount];
+        new Random(42).nextBytes(number);
+        hexNumber = RadixUtils.convertToRadix(number, 16, true);
+    }
+
+    @Benchmark
+    public String convertBytesToRadix() {
+        return RadixUtils.convertToRadix(number, radix, true);
+    }
+
+    @Benchmark
+    public String convertStringToRadix() {
+        return RadixUtils.convertToRadix(hexNumber, 16, radix);
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.benchmarks.stubs;
+
+import emulib.annotations.PLUGIN_TYPE;
+import emulib.annotations.PluginType;
+import emulib.emustudio.SettingsManager;
+import emulib.plugins.cpu.AbstractCPU;
+import emulib.plugins.cpu.Disassembler;
+import emulib.plugins.memory.ShortMemoryContext;
+
+import javax.swing.*;
+import java.util.Objects;
+
+/**
+ * Reference CPU used by benchmarks.
+ *
+ * It is an accumulator machine with 16-bit words, with the following instructions:
+ *
+ * - 0: HLT (stop the emulation)
+ * - 1 n: ADD n (add the next word to the accumulator)
+ * - 2 a: JMP a (jump to address a)
+ * - other: NOP
+ *
+ * Each instruction takes 4 cycles.
+ */
+@PluginType(
+        type = PLUGIN_TYPE.CPU,
+        title = "Benchmark CPU",
+        copyright = "(c) Copyright 2006-2017, Peter Jakubčo",
+        description = "Reference CPU used by benchmarks"
+)
+public class BenchmarkCPU extends AbstractCPU {
+    public final static short HLT = 0;
+    public final static short ADD = 1;
+    public final static short JMP = 2;
+    public final static short NOP = 3;
+
+    private final ShortMemoryContext memory;
+
+    private volatile int pc;
+    private int accumulator;
+
+    public BenchmarkCPU(Long pluginID, ShortMemoryContext memory) {
+        super(pluginID);
+        this.memory = Objects.requireNonNull(memory);
+    }
+
+    @Override
+    protected RunState stepInternal() {
+        int position = pc;
+        short opcode = memory.readShort(position);
+        switch (opcode) {
+            case HLT:
+                return RunState.STATE_STOPPED_NORMAL;
+            case ADD:
+                accumulator += memory.readShort(position + 1);
+                position += 2;
+                break;
+            case JMP:
+                position = memory.readShort(position + 1) & 0xFFFF;
+                break;
+            default:
+                position++;
+        }
+        pc = position;
+        advanceCycles(4);
+        return RunState.STATE_STOPPED_BREAK;
+    }
+
+    public int getAccumulator() {
+        return accumulator;
+    }
+
+    @Override
+    protected void resetInternal(int startPos) {
+        pc = startPos;
+        accumulator = 0;
+    }
+
+    @Override
+    protected void destroyInternal() {
+    }
+
+    @Override
+    public int getInstructionPosition() {
+        return pc;
+    }
+
+    @Override
+    public boolean setInstructionPosition(int pos) {
+        pc = pos;
+        return true;
+    }
+
+    @Override
+    public JPanel getStatusPanel() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Disassembler getDisassembler() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void initialize(SettingsManager settingsManager) {
+    }
+
+    @Override
+    public String getVersion() {
+        return "1.0";
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.annotations.processor;
+
+import emulib.annotations.PluginType;
+import emulib.runtime.PluginDescriptor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Annotation processor generating plug-in descriptor.
+ *
+ * The processor finds the plug-in main class (a concrete class annotated with {@link PluginType}) and writes its
+ * {@link PluginDescriptor} into {@link PluginDescriptor#DESCRIPTOR_PATH}, so it ends up in the plug-in JAR file.
+ * Plug-in loader can then read basic plug-in information without loading the plug-in classes.
+ *
+ * The processor is registered as a service, so it runs automatically when emuLib is on the compile class path.
+ * If a compilation contains more than one plug-in main class, no descriptor is generated.
+ */
+@SupportedAnnotationTypes("emulib.annotations.PluginType")
+public class PluginDescriptorProcessor extends AbstractProcessor {
+    private final List<TypeElement> pluginClasses = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(PluginType.class)) {
+            if (element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+                pluginClasses.add((TypeElement) element);
+            }
+        }
+
+        if (roundEnv.processingOver()) {
+            if (pluginClasses.size() == 1) {
+                writeDescriptor(pluginClasses.get(0));
+            } else if (pluginClasses.size() > 1) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "Found " + pluginClasses.size() + " plug-in main classes; plug-in descriptor is not generated");
+            }
+        }
+        return false;
+    }
+
+    private void writeDescriptor(TypeElement pluginClass) {
+        PluginType pluginType = pluginClass.getAnnotation(PluginType.class);
+        PluginDescriptor descriptor = new PluginDescriptor(
+                processingEnv.getElementUtils().getBinaryName(pluginClass).toString(),
+                pluginType.type(), pluginType.title(), pluginType.emuLibVersion()
+        );
+
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", PluginDescriptor.DESCRIPTOR_PATH, pluginClass
+            );
+            try (OutputStream output = resource.openOutputStream()) {
+                descriptor.write(output);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write plug-in descriptor: " + e.getMessage(), pluginClass);
+        }
+    }
+
+}
@@ -21,6 +21,7 @@
 package emulib.plugins.cpu;
 
 import emulib.annotations.PluginType;
+import emulib.plugins.memory.Memory;
 import net.jcip.annotations.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,21 +29,35 @@ import org.slf4j.LoggerFactory;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
  * This class implements some fundamental functionality that can be used by your own plug-ins. Such as:
  *
  * - support of breakpoints
+ * - stopping on data watchpoints of memories
  * - thread safe controlling of run states
  * - managing CPU state listeners
+ * - emulation loop running instructions in batches
+ * - scheduler of device events timed in CPU cycles
+ *
+ * The emulation runs in a separate thread, by calling <code>call()</code> method. The default implementation runs
+ * <code>executeInstruction()</code> in a tight loop, checking breakpoints before each instruction and checking a stop
+ * request only between batches of instructions. CPU implementations can override <code>call()</code> with their own
+ * loop; in that case they must stop when the thread is interrupted. A loop which does not stop within a second is
+ * abandoned by <code>pause()</code>, <code>stop()</code> and <code>reset()</code>, with a warning in the log.
  *
  */
 @ThreadSafe
@@ -50,6 +65,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
     private final static Logger LOGGER = LoggerFactory.getLogger(AbstractCPU.class);
     private final static Runnable EMPTY_TASK = () -> {};
+    private final static int DEFAULT_BATCH_SIZE = 1000;
+    private final static long STOP_TIMEOUT_MILLIS = 1000;
 
     private final AtomicBoolean isDestroyed = new AtomicBoolean();
     private final ExecutorService eventReceiver = Executors.newSingleThreadExecutor();
@@ -59,7 +76,19 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
 
     private final long pluginID;
     private final Set<CPUListener> stateObservers = new CopyOnWriteArraySet<>();
-    private final Set<Integer> breakpoints = new ConcurrentSkipListSet<>();
+    private final BreakpointSet breakpoints = new BreakpointSet();
+    private final ConcurrentMap<Integer, ConditionalBreakpoint> conditionalBreakpoints = new ConcurrentHashMap<>();
+    private final Memory.WatchpointListener watchpointListener = (watchpoint, position, value) -> stopOnWatchpoint();
+    private final CycleScheduler cycleScheduler = new CycleScheduler();
+
+    private volatile boolean watchpointHit;
+    // set only while the CPU is running in "cpuExecutor"
+    private volatile Thread cpuThread;
+    // the thread executing step(), if any
+    private volatile Thread steppingThread;
+    private volatile boolean stopRequested;
+    // CONTRACT: accessed only in the CPU thread
+    private boolean stopBatch;
 
     // ** CONTRACT: set only in "eventReceiver" or "cpuWatchTask" in a non-concurrent way **
     private volatile RunState runState = RunState.STATE_STOPPED_NORMAL;
@@ -67,6 +96,24 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
     private volatile CPUWatchTask cpuWatchTask;
     // ** END OF CONTRACT **
 
+    private static class ConditionalBreakpoint {
+        private final BooleanSupplier condition;
+        private final int hitCount;
+        private final AtomicInteger hits = new AtomicInteger();
+
+        private ConditionalBreakpoint(BooleanSupplier condition, int hitCount) {
+            this.condition = condition;
+            this.hitCount = hitCount;
+        }
+
+        private boolean test() {
+            if (condition != null && !condition.getAsBoolean()) {
+                return false;
+            }
+            return hits.incrementAndGet() >= hitCount;
+        }
+    }
+
     private class CPUWatchTask implements Runnable {
         private final Future<RunState> cpuFuture;
 
@@ -78,6 +125,9 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
         public void run() {
             try {
                 runState = cpuFuture.get();
+                if (watchpointHit && (runState == RunState.STATE_RUNNING || runState == RunState.STATE_STOPPED_BREAK)) {
+                    runState = RunState.STATE_STOPPED_WATCHPOINT;
+                }
             } catch (ExecutionException e) {
                 if (e.getCause() instanceof IndexOutOfBoundsException) {
                     runState = RunState.STATE_STOPPED_ADDR_FALLOUT;
@@ -90,6 +140,8 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
                     }
                 }
                 LOGGER.error("Unexpected error during emulation", e);
+            } catch (CancellationException e) {
+                // the CPU thread did not stop in time; the run state is set by the event which stopped it
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             } finally {
@@ -98,6 +150,14 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
         }
 
         void requestStop() {
+            stopRequested = true;
+            Thread tmpCpuThread = cpuThread;
+            if (tmpCpuThread != null) {
+                tmpCpuThread.interrupt();
+            }
+        }
+
+        void abandon() {
             cpuFuture.cancel(true);
         }
     }
@@ -156,19 +216,214 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
 
     @Override
     public void setBreakpoint(int memLocation) {
+        conditionalBreakpoints.remove(memLocation);
+        breakpoints.add(memLocation);
+    }
+
+    /**
+     * Set a conditional breakpoint at a memory location.
+     *
+     * The breakpoint is triggered only if the condition holds, and only after it was reached (with the condition
+     * holding) the given number of times. Then it is triggered every time the condition holds. Setting a breakpoint
+     * at the same location again replaces the condition and resets the hits.
+     *
+     * The condition is evaluated in the thread running the emulation, so it can safely inspect the CPU state.
+     *
+     * @param memLocation memory location where the breakpoint will be set
+     * @param condition condition of the breakpoint; null means the condition always holds
+     * @param hitCount number of hits needed to trigger the breakpoint; 1 means every hit
+     * @throws IllegalArgumentException if hitCount is less than 1
+     * @see AbstractCPU#testBreakpoint
+     */
+    public void setBreakpoint(int memLocation, BooleanSupplier condition, int hitCount) {
+        if (hitCount < 1) {
+            throw new IllegalArgumentException("Hit count must be at least 1");
+        }
+        conditionalBreakpoints.put(memLocation, new ConditionalBreakpoint(condition, hitCount));
         breakpoints.add(memLocation);
     }
 
     @Override
     public void unsetBreakpoint(int memLocation) {
         breakpoints.remove(memLocation);
+        conditionalBreakpoints.remove(memLocation);
     }
 
+    /**
+     * Determine if a breakpoint is set at a memory location.
+     *
+     * The method does not allocate and it is cheap when no breakpoint is set, so it can be called before each
+     * instruction. It ignores conditions of breakpoints; the emulation loop should use <code>testBreakpoint</code>.
+     *
+     * @param memLocation memory location, from where the breakpoint will be determined
+     * @return true if breakpoint is set in the location, false otherwise
+     */
     @Override
     public boolean isBreakpointSet(int memLocation) {
         return breakpoints.contains(memLocation);
     }
 
+    /**
+     * Determine if the emulation should stop on a breakpoint at a memory location.
+     *
+     * Unlike <code>isBreakpointSet</code>, this method evaluates breakpoint condition and counts hits, so it should be
+     * called exactly once each time the emulation reaches the location.
+     *
+     * @param memLocation memory location of the instruction to be executed
+     * @return true if the emulation should stop, false otherwise
+     */
+    protected boolean testBreakpoint(int memLocation) {
+        if (!breakpoints.contains(memLocation)) {
+            return false;
+        }
+        if (conditionalBreakpoints.isEmpty()) {
+            return true;
+        }
+        ConditionalBreakpoint conditionalBreakpoint = conditionalBreakpoints.get(memLocation);
+        return conditionalBreakpoint == null || conditionalBreakpoint.test();
+    }
+
+    /**
+     * Get a listener which stops the CPU when a data watchpoint is hit.
+     *
+     * CPU implementations should register it in all memories they use, e.g.:
+     *
+     * <pre>
+     * {@code
+     * memory.addWatchpointListener(getWatchpointListener());
+     * }
+     * </pre>
+     *
+     * When a watchpoint is hit while the CPU is running, the running thread is interrupted (as if the emulation was
+     * paused) and the CPU ends up in <code>STATE_STOPPED_WATCHPOINT</code> state. When a watchpoint is hit during
+     * a step, the state after the step is <code>STATE_STOPPED_WATCHPOINT</code>.
+     *
+     * Only memory accesses made by the CPU itself, i.e. in the thread running the emulation or the step, are taken into
+     * account. Accesses from other threads (e.g. debugger, disassembler, memory GUI or image loaders) are ignored.
+     *
+     * @return watchpoint listener
+     */
+    protected Memory.WatchpointListener getWatchpointListener() {
+        return watchpointListener;
+    }
+
+    private void stopOnWatchpoint() {
+        Thread currentThread = Thread.currentThread();
+        if (currentThread == cpuThread) {
+            watchpointHit = true;
+            stopBatch = true;
+            currentThread.interrupt();
+        } else if (currentThread == steppingThread) {
+            watchpointHit = true;
+        }
+    }
+
+    private RunState callInCPUThread() throws Exception {
+        cpuThread = Thread.currentThread();
+        try {
+            if (stopRequested) {
+                // the stop request came before the thread was known
+                Thread.currentThread().interrupt();
+            }
+            return call();
+        } finally {
+            cpuThread = null;
+        }
+    }
+
+    /**
+     * Runs the emulation until it is stopped.
+     *
+     * Instructions are executed by <code>executeInstruction()</code> in batches of <code>getBatchSize()</code>
+     * instructions. Before each instruction (except the first one, on which the CPU might have been paused) the
+     * breakpoints are tested. Requests to stop the emulation are checked only between the batches, so the inner loop
+     * is cheap. Watchpoints stop the emulation right after the instruction which has triggered them.
+     *
+     * CPU implementations can override this method with their own emulation loop.
+     *
+     * @return new CPU state. STATE_STOPPED_BREAK if the emulation was stopped by a request or a breakpoint; or the
+     *         first state other than STATE_RUNNING returned by <code>executeInstruction()</code>
+     * @throws Exception if <code>executeInstruction()</code> throws
+     */
+    @Override
+    public RunState call() throws Exception {
+        int batchSize = getBatchSize();
+        boolean firstInstruction = true;
+        stopBatch = false;
+
+        while (!stopRequested) {
+            for (int i = 0; i < batchSize; i++) {
+                if (!firstInstruction && !breakpoints.isEmpty() && testBreakpoint(getInstructionPosition())) {
+                    return RunState.STATE_STOPPED_BREAK;
+                }
+                firstInstruction = false;
+
+                RunState state = executeInstruction();
+                if (state != RunState.STATE_RUNNING) {
+                    return state;
+                }
+                if (stopBatch) {
+                    return RunState.STATE_STOPPED_BREAK;
+                }
+            }
+        }
+        return RunState.STATE_STOPPED_BREAK;
+    }
+
+    /**
+     * Executes one instruction within the emulation loop of <code>call()</code>.
+     *
+     * The default implementation calls <code>stepInternal()</code> and maps STATE_STOPPED_BREAK to STATE_RUNNING,
+     * so CPU implementations need just <code>stepInternal()</code>. They can override this method if stepping needs
+     * to do more work than running.
+     *
+     * @return STATE_RUNNING if the emulation should continue; other state stops the emulation
+     * @throws Exception The emulator is allowed to throw any exception
+     */
+    protected RunState executeInstruction() throws Exception {
+        RunState state = stepInternal();
+        return (state == RunState.STATE_STOPPED_BREAK) ? RunState.STATE_RUNNING : state;
+    }
+
+    /**
+     * Get scheduler of events timed in CPU cycles.
+     *
+     * CPU context implementations can return it from <code>CPUContext.getCycleScheduler()</code>. The cycle count is
+     * reset to 0 (keeping scheduled events) when the CPU is reset.
+     *
+     * @return scheduler of this CPU
+     */
+    public CycleScheduler getCycleScheduler() {
+        return cycleScheduler;
+    }
+
+    /**
+     * Advance the cycle scheduler by executed cycles and dispatch due device events.
+     *
+     * CPU implementations should call it from the emulation loop (e.g. in <code>stepInternal()</code>) after each
+     * instruction.
+     *
+     * @param cycles number of cycles the instruction took
+     */
+    protected final void advanceCycles(int cycles) {
+        cycleScheduler.advance(cycles);
+    }
+
+    /**
+     * Get number of instructions executed in <code>call()</code> between checks of stop requests.
+     *
+     * Larger batches make the loop faster, but stopping the emulation slower.
+     *
+     * @return the batch size, must be positive
+     */
+    protected int getBatchSize() {
+        return DEFAULT_BATCH_SIZE;
+    }
+
+    private static boolean isPaused(RunState runState) {
+        return runState == RunState.STATE_STOPPED_BREAK || runState == RunState.STATE_STOPPED_WATCHPOINT;
+    }
+
     /**
      * Add new CPU listener to the list of stateObservers. CPU listener is an
      * implementation object of CPUListener interface. The methods are
@@ -248,9 +503,27 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
         });
     }
 
+    /**
+     * Waits until the CPU watch task finishes.
+     *
+     * If the CPU thread does not stop in time (e.g. an overridden <code>call()</code> ignores interrupts), the CPU
+     * future is cancelled so the watch task finishes; the CPU thread is then left running on its own.
+     * CONTRACT: run in event thread
+     */
     private void ensureCpuIsStopped() {
+        Future<?> stopped = cpuStoppedWatcher.submit(EMPTY_TASK);
         try {
-            cpuStoppedWatcher.submit(EMPTY_TASK).get();
+            try {
+                stopped.get(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                LOGGER.warn("CPU did not stop within {} ms; it should stop when its thread is interrupted",
+                        STOP_TIMEOUT_MILLIS);
+                CPUWatchTask tmpCpuWatchTask = cpuWatchTask;
+                if (tmpCpuWatchTask != null) {
+                    tmpCpuWatchTask.abandon();
+                }
+                stopped.get();
+            }
         } catch (ExecutionException e) {
             LOGGER.error("Unexpected error while waiting for CPU stop", e);
         } catch (InterruptedException e) {
@@ -266,6 +539,7 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
         Future future = eventReceiver.submit(() -> {
             requestStop();
             ensureCpuIsStopped();
+            cycleScheduler.resetCycles();
             resetInternal(addr);
             runState = RunState.STATE_STOPPED_BREAK;
             notifyStateChanged();
@@ -276,11 +550,13 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
     @Override
     public void execute() {
         Future future = eventReceiver.submit(() -> {
-            if (runState == RunState.STATE_STOPPED_BREAK) {
+            if (isPaused(runState)) {
                 runState = RunState.STATE_RUNNING;
                 notifyStateChanged();
 
-                Future<RunState> cpuFuture = cpuExecutor.submit(AbstractCPU.this);
+                watchpointHit = false;
+                stopRequested = false;
+                Future<RunState> cpuFuture = cpuExecutor.submit(AbstractCPU.this::callInCPUThread);
                 cpuWatchTask = new CPUWatchTask(cpuFuture);
                 cpuStoppedWatcher.submit(cpuWatchTask);
             }
@@ -306,10 +582,10 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
     @Override
     public void stop() {
         Future future = eventReceiver.submit(() -> {
-            if (runState == RunState.STATE_STOPPED_BREAK || runState == RunState.STATE_RUNNING) {
+            if (isPaused(runState) || runState == RunState.STATE_RUNNING) {
                 requestStop();
                 ensureCpuIsStopped();
-                if (runState == RunState.STATE_RUNNING || runState == RunState.STATE_STOPPED_BREAK) {
+                if (runState == RunState.STATE_RUNNING || isPaused(runState)) {
                     runState = RunState.STATE_STOPPED_NORMAL;
                 }
                 notifyStateChanged();
@@ -322,12 +598,21 @@ public abstract class AbstractCPU implements CPU, Callable<CPU.RunState> {
     @Override
     public void step() {
         Future future = eventReceiver.submit(() -> {
-            if (runState == RunState.STATE_STOPPED_BREAK) {
+            if (isPaused(runState)) {
                 try {
-                    runState = stepInternal();
+                    watchpointHit = false;
+                    steppingThread = Thread.currentThread();
+                    try {
+                        runState = stepInternal();
+                    } finally {
+                        steppingThread = null;
+                    }
                     if (runState == RunState.STATE_RUNNING) {
                         runState = RunState.STATE_STOPPED_BREAK;
                     }
+                    if (watchpointHit && runState == RunState.STATE_STOPPED_BREAK) {
+                        runState = RunState.STATE_STOPPED_WATCHPOINT;
+                    }
                 } catch (IndexOutOfBoundsException e) {
                     runState = RunState.STATE_STOPPED_ADDR_FALLOUT;
                     LOGGER.error("Unexpected error during emulation", e);
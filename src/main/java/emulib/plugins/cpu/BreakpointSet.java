@@ -0,0 +1,91 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free set of memory locations, used for breakpoints.
+ *
+ * The set is a paged bitmap over whole (unsigned) 32-bit address space. Pages are allocated lazily when the first
+ * location in them is added. Checking a location does not allocate and costs a volatile read when the set is empty.
+ */
+@ThreadSafe
+final class BreakpointSet {
+    private final static int PAGE_BITS = 18;
+    private final static int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(1 << (32 - PAGE_BITS));
+    private final AtomicInteger size = new AtomicInteger();
+
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    boolean contains(int location) {
+        if (size.get() == 0) {
+            return false;
+        }
+        AtomicLongArray page = pages.get(location >>> PAGE_BITS);
+        return page != null && (page.get((location & PAGE_MASK) >>> 6) & (1L << location)) != 0;
+    }
+
+    boolean add(int location) {
+        int pageIndex = location >>> PAGE_BITS;
+        AtomicLongArray page = pages.get(pageIndex);
+        if (page == null) {
+            pages.compareAndSet(pageIndex, null, new AtomicLongArray(1 << (PAGE_BITS - 6)));
+            page = pages.get(pageIndex);
+        }
+        int index = (location & PAGE_MASK) >>> 6;
+        long mask = 1L << location;
+        long word;
+        do {
+            word = page.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(index, word, word | mask));
+        size.incrementAndGet();
+        return true;
+    }
+
+    boolean remove(int location) {
+        AtomicLongArray page = pages.get(location >>> PAGE_BITS);
+        if (page == null) {
+            return false;
+        }
+        int index = (location & PAGE_MASK) >>> 6;
+        long mask = 1L << location;
+        long word;
+        do {
+            word = page.get(index);
+            if ((word & mask) == 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(index, word, word & ~mask));
+        size.decrementAndGet();
+        return true;
+    }
+}
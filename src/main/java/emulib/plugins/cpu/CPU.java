@@ -55,7 +55,12 @@ public interface CPU extends Plugin {
         /**
          * CPU is running.
          */
-        STATE_RUNNING("running");
+        STATE_RUNNING("running"),
+        /**
+         * CPU is paused because a memory access triggered a data watchpoint. It can be run or stepped further,
+         * the same as in the breakpoint state.
+         */
+        STATE_STOPPED_WATCHPOINT("watchpoint");
 
         private final String name;
 
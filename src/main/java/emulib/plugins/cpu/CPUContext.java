@@ -23,6 +23,8 @@ import emulib.annotations.ContextType;
 import emulib.plugins.Context;
 import emulib.plugins.device.DeviceContext;
 
+import java.util.Optional;
+
 /**
  * Basic interface for CPU context. The context is used by plug-ins, that are
  * connected to CPU.
@@ -83,5 +85,16 @@ public interface CPUContext extends Context {
      */
     int getCPUFrequency();
 
+    /**
+     * Get scheduler of events timed in CPU cycles.
+     *
+     * Devices can use it for being called back after given number of CPU cycles, in the CPU thread.
+     *
+     * @return the scheduler, or empty if the CPU does not support it
+     */
+    default Optional<CycleScheduler> getCycleScheduler() {
+        return Optional.empty();
+    }
+
 }
 
@@ -0,0 +1,380 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.Arrays;
+
+/**
+ * A compact, reusable variant of {@link DecodedInstruction}.
+ *
+ * Keys (rule codes) are expected to be small dense integers; values are stored in primitive arrays indexed by
+ * the key. Bit sequences of all rules are stored one after another in a single byte array, which can be accessed
+ * without copying. The instruction can be {@link #reset()} and filled again by a {@link Decoder}, so decoding
+ * does not allocate once the arrays are large enough.
+ */
+@NotThreadSafe
+public class CompactDecodedInstruction {
+    private final static byte HAS_CONSTANT = 1;
+    private final static byte HAS_BITS = 2;
+
+    private byte[] flags;
+    private int[] constants;
+    private String[] strings;
+    private int[] bitsOffsets;
+    private int[] bitsLengths;
+
+    private int[] keys;
+    private int keysCount;
+
+    private byte[] bitsData = new byte[16];
+    private int bitsSize;
+
+    private byte[] image = new byte[8];
+    private int length;
+
+    /**
+     * Creates the instruction with capacity for 16 keys.
+     */
+    public CompactDecodedInstruction() {
+        this(16);
+    }
+
+    /**
+     * Creates the instruction.
+     *
+     * @param keysCapacity initial capacity for keys; keys from 0 to keysCapacity - 1 are stored without growing
+     *                     the arrays
+     */
+    public CompactDecodedInstruction(int keysCapacity) {
+        if (keysCapacity <= 0) {
+            throw new IllegalArgumentException("Keys capacity must be positive");
+        }
+        flags = new byte[keysCapacity];
+        constants = new int[keysCapacity];
+        strings = new String[keysCapacity];
+        bitsOffsets = new int[keysCapacity];
+        bitsLengths = new int[keysCapacity];
+        keys = new int[keysCapacity];
+    }
+
+    /**
+     * Clears the instruction, so it can be reused. Allocated arrays are kept.
+     */
+    public void reset() {
+        for (int i = 0; i < keysCount; i++) {
+            int key = keys[i];
+            flags[key] = 0;
+            strings[key] = null;
+        }
+        keysCount = 0;
+        bitsSize = 0;
+        length = 0;
+    }
+
+    /**
+     * Adds the recognized string-returning variant to the instruction.
+     *
+     * @param key the key (rule code), non-negative
+     * @param string the string which the recognized variant returned
+     * @param constant the constant obtained from the string
+     */
+    public void add(int key, String string, int constant) {
+        prepareKey(key);
+        flags[key] |= HAS_CONSTANT;
+        constants[key] = constant;
+        strings[key] = string;
+    }
+
+    /**
+     * Adds the recognized subrule-returning variant to the instruction.
+     *
+     * @param key the rule code, non-negative
+     * @param bits the bit sequence, padded to whole bytes
+     */
+    public void add(int key, byte[] bits) {
+        add(key, bits, 0, bits.length);
+    }
+
+    /**
+     * Adds the recognized subrule-returning variant to the instruction.
+     *
+     * The bits are copied into the instruction.
+     *
+     * @param key the rule code, non-negative
+     * @param bits array containing the bit sequence, padded to whole bytes
+     * @param offset index of the first byte of the sequence
+     * @param count number of bytes of the sequence
+     */
+    public void add(int key, byte[] bits, int offset, int count) {
+        prepareKey(key);
+        if (bitsSize + count > bitsData.length) {
+            bitsData = Arrays.copyOf(bitsData, Math.max(bitsData.length * 2, bitsSize + count));
+        }
+        System.arraycopy(bits, offset, bitsData, bitsSize, count);
+        flags[key] |= HAS_BITS;
+        bitsOffsets[key] = bitsSize;
+        bitsLengths[key] = count;
+        bitsSize += count;
+    }
+
+    /**
+     * Returns true if the instruction contains the specified key.
+     *
+     * @param key the rule code
+     * @return true if the instruction contains the key, false otherwise
+     */
+    public boolean hasKey(int key) {
+        return key >= 0 && key < flags.length && flags[key] != 0;
+    }
+
+    /**
+     * Returns the constant value to which the given key is mapped.
+     *
+     * @param key the key
+     * @return the constant; or -1 if the key is not mapped to a constant
+     */
+    public int get(int key) {
+        return hasFlag(key, HAS_CONSTANT) ? constants[key] : -1;
+    }
+
+    /**
+     * Returns the string value to which the given key is mapped.
+     *
+     * @param key the key
+     * @return the string; or null if the key is not mapped to a string
+     */
+    public String getString(int key) {
+        return hasFlag(key, HAS_CONSTANT) ? strings[key] : null;
+    }
+
+    /**
+     * Determines if the key is mapped to a bit sequence.
+     *
+     * @param key the key
+     * @return true if the key is mapped to bits, false otherwise
+     */
+    public boolean hasBits(int key) {
+        return hasFlag(key, HAS_BITS);
+    }
+
+    /**
+     * Returns the array holding bit sequences of all keys.
+     *
+     * The array is shared and it is valid only until the instruction is reset. Use {@link #getBitsOffset(int)}
+     * and {@link #getBitsLength(int)} to locate the sequence of a key.
+     *
+     * @return the array of bit sequences
+     */
+    public byte[] getBitsData() {
+        return bitsData;
+    }
+
+    /**
+     * Returns the index of the first byte of the bit sequence in the {@link #getBitsData()} array.
+     *
+     * @param key the key
+     * @return index of the first byte; or -1 if the key is not mapped to bits
+     */
+    public int getBitsOffset(int key) {
+        return hasFlag(key, HAS_BITS) ? bitsOffsets[key] : -1;
+    }
+
+    /**
+     * Returns the length of the bit sequence, in bytes.
+     *
+     * @param key the key
+     * @return number of bytes of the sequence; or -1 if the key is not mapped to bits
+     */
+    public int getBitsLength(int key) {
+        return hasFlag(key, HAS_BITS) ? bitsLengths[key] : -1;
+    }
+
+    /**
+     * Returns the bit sequence as a number.
+     *
+     * The first byte of the sequence is the most significant one; if <code>reverseBytes</code> is true, the last
+     * byte is the most significant one (this is useful for sequences stored in little endian).
+     *
+     * @param key the key
+     * @param reverseBytes reverse the byte order
+     * @return the number; or -1 if the key is not mapped to bits
+     * @throws IllegalStateException if the sequence is longer than 7 bytes
+     */
+    public long getBitsValue(int key, boolean reverseBytes) {
+        if (!hasFlag(key, HAS_BITS)) {
+            return -1;
+        }
+        int offset = bitsOffsets[key];
+        int count = bitsLengths[key];
+        if (count > 7) {
+            throw new IllegalStateException("Bit sequence is too long: " + count + " bytes");
+        }
+
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            int index = reverseBytes ? offset + count - i - 1 : offset + i;
+            value = (value << 8) | (bitsData[index] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Returns a copy of the bit sequence to which the given key is mapped.
+     *
+     * @param key the key
+     * @return the bit sequence; or null if the key is not mapped to bits
+     */
+    public byte[] getBits(int key) {
+        if (!hasFlag(key, HAS_BITS)) {
+            return null;
+        }
+        return Arrays.copyOfRange(bitsData, bitsOffsets[key], bitsOffsets[key] + bitsLengths[key]);
+    }
+
+    /**
+     * Returns the binary image of the whole instruction.
+     *
+     * The array is shared and it can be longer than the instruction; only the first {@link #getLength()} bytes
+     * are valid, until the instruction is reset.
+     *
+     * @return the binary image
+     */
+    public byte[] getImage() {
+        return image;
+    }
+
+    /**
+     * Sets the binary image of the whole instruction. The image is copied into the instruction.
+     *
+     * @param image array containing the binary image
+     * @param offset index of the first byte of the image
+     * @param length length of the instruction, in bytes
+     */
+    public void setImage(byte[] image, int offset, int length) {
+        if (length > this.image.length) {
+            this.image = new byte[Math.max(this.image.length * 2, length)];
+        }
+        System.arraycopy(image, offset, this.image, 0, length);
+        this.length = length;
+    }
+
+    /**
+     * Returns the length of the instruction in the memory.
+     *
+     * @return the length, in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the number of keys contained in this instruction.
+     *
+     * @return number of keys
+     */
+    public int getKeysCount() {
+        return keysCount;
+    }
+
+    /**
+     * Returns a key contained in this instruction. Keys are in the order in which they were added.
+     *
+     * @param index index of the key, from 0 to {@link #getKeysCount()} - 1
+     * @return the key
+     */
+    public int getKey(int index) {
+        if (index < 0 || index >= keysCount) {
+            throw new IndexOutOfBoundsException("Key index: " + index);
+        }
+        return keys[index];
+    }
+
+    /**
+     * Replaces content of this instruction with content of the given instruction.
+     *
+     * @param instruction the instruction
+     */
+    public void copyFrom(DecodedInstruction instruction) {
+        reset();
+        for (int key : instruction.getKeys()) {
+            if (instruction.hasConstant(key)) {
+                add(key, instruction.getString(key), instruction.get(key));
+            }
+            byte[] bits = instruction.getBits(key);
+            if (bits != null) {
+                add(key, bits);
+            }
+        }
+        byte[] instructionImage = instruction.getImage();
+        if (instructionImage != null) {
+            setImage(instructionImage, 0, instructionImage.length);
+        }
+    }
+
+    /**
+     * Replaces content of this instruction with content of the given instruction.
+     *
+     * Arrays of this instruction are reused, so copying does not allocate once they are large enough.
+     *
+     * @param instruction the instruction
+     */
+    public void copyFrom(CompactDecodedInstruction instruction) {
+        if (instruction == this) {
+            return;
+        }
+        reset();
+        for (int i = 0; i < instruction.keysCount; i++) {
+            int key = instruction.keys[i];
+            if (instruction.hasFlag(key, HAS_CONSTANT)) {
+                add(key, instruction.strings[key], instruction.constants[key]);
+            }
+            if (instruction.hasFlag(key, HAS_BITS)) {
+                add(key, instruction.bitsData, instruction.bitsOffsets[key], instruction.bitsLengths[key]);
+            }
+        }
+        setImage(instruction.image, 0, instruction.length);
+    }
+
+    private boolean hasFlag(int key, byte flag) {
+        return key >= 0 && key < flags.length && (flags[key] & flag) != 0;
+    }
+
+    private void prepareKey(int key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must not be negative: " + key);
+        }
+        if (key >= flags.length) {
+            int capacity = Math.max(flags.length * 2, key + 1);
+            flags = Arrays.copyOf(flags, capacity);
+            constants = Arrays.copyOf(constants, capacity);
+            strings = Arrays.copyOf(strings, capacity);
+            bitsOffsets = Arrays.copyOf(bitsOffsets, capacity);
+            bitsLengths = Arrays.copyOf(bitsLengths, capacity);
+        }
+        if (flags[key] == 0) {
+            if (keysCount == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            keys[keysCount++] = key;
+        }
+    }
+}
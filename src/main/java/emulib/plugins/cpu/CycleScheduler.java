@@ -0,0 +1,288 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduler of events timed in CPU cycles.
+ *
+ * Devices can ask to be called after given number of CPU cycles (e.g. timer ticks, serial line baud rate, disk
+ * latency) instead of running own threads. The CPU advances the scheduler by executed cycles from its emulation loop,
+ * and due events are dispatched right there, in the CPU thread, ordered by the cycle (and by the order of scheduling
+ * for the same cycle). So the timing is deterministic and independent of host speed.
+ *
+ * An event is created once and can be re-scheduled any number of times without allocations. Events can be scheduled
+ * and cancelled from any thread, including their own handlers.
+ */
+@ThreadSafe
+public class CycleScheduler {
+    private final static int INITIAL_CAPACITY = 16;
+
+    private final AtomicLong currentCycle = new AtomicLong();
+    private volatile long nextDeadline = Long.MAX_VALUE;
+
+    // ** CONTRACT: guarded by "this" **
+    private Event[] queue = new Event[INITIAL_CAPACITY];
+    private int size;
+    private long sequence;
+    // ** END OF CONTRACT **
+
+    /**
+     * Handler of a scheduled event.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Called in the CPU thread when the event is due.
+         *
+         * The handler can re-schedule the event.
+         *
+         * @param event the event
+         * @param cycle current CPU cycle; it can be later than the cycle for which the event was scheduled
+         */
+        void handle(Event event, long cycle);
+    }
+
+    /**
+     * Event which can be scheduled in the scheduler. It should be scheduled only in one scheduler.
+     */
+    public static final class Event {
+        private final Handler handler;
+
+        // ** CONTRACT: guarded by the scheduler **
+        private long deadline;
+        private long order;
+        private int index = -1;
+        // ** END OF CONTRACT **
+
+        public Event(Handler handler) {
+            this.handler = Objects.requireNonNull(handler);
+        }
+    }
+
+    /**
+     * Get number of cycles the scheduler was advanced by since creation or last reset.
+     *
+     * @return current CPU cycle
+     */
+    public long getCurrentCycle() {
+        return currentCycle.get();
+    }
+
+    /**
+     * Schedule an event relatively to current cycle. If the event is already scheduled, it is re-scheduled.
+     *
+     * @param event the event
+     * @param cycles number of cycles from now, must not be negative
+     */
+    public synchronized void schedule(Event event, long cycles) {
+        if (cycles < 0) {
+            throw new IllegalArgumentException("Number of cycles must not be negative");
+        }
+        scheduleAt(event, currentCycle.get() + cycles);
+    }
+
+    /**
+     * Schedule an event to given cycle. If the event is already scheduled, it is re-scheduled.
+     *
+     * If the cycle has already passed, the event is dispatched by the next advance of the scheduler.
+     *
+     * @param event the event
+     * @param cycle absolute cycle
+     */
+    public synchronized void scheduleAt(Event event, long cycle) {
+        Objects.requireNonNull(event);
+        if (event.index >= 0) {
+            removeAt(event.index);
+        }
+        event.deadline = cycle;
+        event.order = sequence++;
+        if (size == queue.length) {
+            queue = Arrays.copyOf(queue, size * 2);
+        }
+        queue[size] = event;
+        event.index = size;
+        size++;
+        siftUp(event.index);
+        updateNextDeadline();
+    }
+
+    /**
+     * Cancel scheduled event. Does nothing if the event is not scheduled.
+     *
+     * @param event the event
+     * @return true if the event was scheduled; false otherwise
+     */
+    public synchronized boolean cancel(Event event) {
+        if (event.index < 0 || queue[event.index] != event) {
+            return false;
+        }
+        removeAt(event.index);
+        updateNextDeadline();
+        return true;
+    }
+
+    /**
+     * Determine if the event is scheduled.
+     *
+     * @param event the event
+     * @return true if the event is scheduled and was not dispatched yet
+     */
+    public synchronized boolean isScheduled(Event event) {
+        return event.index >= 0 && queue[event.index] == event;
+    }
+
+    /**
+     * Get the cycle for which the event is scheduled.
+     *
+     * @param event scheduled event
+     * @return the cycle, or -1 if the event is not scheduled
+     */
+    public synchronized long getScheduledCycle(Event event) {
+        return isScheduled(event) ? event.deadline : -1;
+    }
+
+    /**
+     * Advance current cycle and dispatch all due events.
+     *
+     * CONTRACT: call in the CPU thread only
+     *
+     * @param cycles number of executed cycles
+     */
+    public void advance(int cycles) {
+        long now = currentCycle.get() + cycles;
+        currentCycle.lazySet(now);
+        if (now >= nextDeadline) {
+            dispatch(now);
+        }
+    }
+
+    /**
+     * Reset current cycle to 0. Scheduled events keep their remaining number of cycles.
+     *
+     * CONTRACT: call when the CPU is not running
+     */
+    public synchronized void resetCycles() {
+        long now = currentCycle.getAndSet(0);
+        for (int i = 0; i < size; i++) {
+            queue[i].deadline -= now;
+        }
+        updateNextDeadline();
+    }
+
+    /**
+     * Cancel all scheduled events.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            queue[i].index = -1;
+            queue[i] = null;
+        }
+        size = 0;
+        updateNextDeadline();
+    }
+
+    private void dispatch(long now) {
+        Event event;
+        while ((event = pollDue(now)) != null) {
+            // handlers run without the lock, so they can wait for threads which schedule events
+            event.handler.handle(event, now);
+        }
+    }
+
+    private synchronized Event pollDue(long now) {
+        if (size == 0 || queue[0].deadline > now) {
+            return null;
+        }
+        Event event = queue[0];
+        removeAt(0);
+        updateNextDeadline();
+        return event;
+    }
+
+    private void removeAt(int index) {
+        Event removed = queue[index];
+        removed.index = -1;
+        size--;
+        if (index == size) {
+            queue[size] = null;
+            return;
+        }
+        Event last = queue[size];
+        queue[size] = null;
+        queue[index] = last;
+        last.index = index;
+        siftDown(index);
+        if (queue[index] == last) {
+            siftUp(index);
+        }
+    }
+
+    private void siftUp(int index) {
+        Event event = queue[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBefore(event, queue[parent])) {
+                break;
+            }
+            place(queue[parent], index);
+            index = parent;
+        }
+        place(event, index);
+    }
+
+    private void siftDown(int index) {
+        Event event = queue[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && isBefore(queue[right], queue[child])) {
+                child = right;
+            }
+            if (!isBefore(queue[child], event)) {
+                break;
+            }
+            place(queue[child], index);
+            index = child;
+        }
+        place(event, index);
+    }
+
+    private void place(Event event, int index) {
+        queue[index] = event;
+        event.index = index;
+    }
+
+    private static boolean isBefore(Event a, Event b) {
+        return (a.deadline < b.deadline) || (a.deadline == b.deadline && a.order < b.order);
+    }
+
+    private void updateNextDeadline() {
+        nextDeadline = (size == 0) ? Long.MAX_VALUE : queue[0].deadline;
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the emulation to the real speed of the emulated CPU.
+ *
+ * The CPU reports executed cycles by <code>addCycles()</code> from its emulation loop. After each time slice worth of
+ * cycles the throttle compares emulated time with wall clock time. If the emulation is ahead, the CPU thread is parked
+ * for most of the difference and the rest is spent by spinning, which keeps the jitter low without wasting a whole
+ * core. If the emulation falls behind too much (e.g. after a pause or a slow host), the reference time is moved
+ * instead of running too fast to catch up.
+ *
+ * Frequency 0 means "unlimited speed" - cycles are just counted.
+ *
+ * The throttle is used by the CPU thread only; the achieved speed and the frequency can be accessed from any thread.
+ */
+@NotThreadSafe
+public class CycleThrottle {
+    public final static long DEFAULT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final static long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private final static long MAX_LAG_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private final static long UNLIMITED_CHECK_CYCLES = 1 << 20;
+    private final static long MEASURE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final long sliceNanos;
+
+    private volatile int frequencyKHz;
+    private volatile double achievedMHz;
+
+    // CONTRACT: accessed only in the CPU thread
+    private int currentFrequencyKHz;
+    private long cycles;
+    private long nextCheckCycles;
+    private long baseNanos;
+    private long baseCycles;
+    private long windowNanos;
+    private long windowCycles;
+
+    /**
+     * Creates throttle with default time slice.
+     *
+     * @param frequencyKHz CPU frequency in kHz, 0 for unlimited speed
+     */
+    public CycleThrottle(int frequencyKHz) {
+        this(frequencyKHz, DEFAULT_SLICE_NANOS);
+    }
+
+    /**
+     * Creates throttle with default time slice and frequency of given CPU.
+     *
+     * @param cpuContext CPU context providing the frequency
+     */
+    public CycleThrottle(CPUContext cpuContext) {
+        this(Objects.requireNonNull(cpuContext).getCPUFrequency());
+    }
+
+    /**
+     * Creates throttle.
+     *
+     * @param frequencyKHz CPU frequency in kHz, 0 for unlimited speed
+     * @param sliceNanos how often (in emulated time) is the speed adjusted. Shorter slices mean lower latency of
+     *                   emulated devices, but more overhead.
+     */
+    public CycleThrottle(int frequencyKHz, long sliceNanos) {
+        if (sliceNanos <= 0) {
+            throw new IllegalArgumentException("Time slice must be positive");
+        }
+        this.sliceNanos = sliceNanos;
+        setFrequency(frequencyKHz);
+        start();
+    }
+
+    /**
+     * Set CPU frequency. The change is applied at the next time slice.
+     *
+     * @param frequencyKHz CPU frequency in kHz, 0 for unlimited speed
+     */
+    public final void setFrequency(int frequencyKHz) {
+        if (frequencyKHz < 0) {
+            throw new IllegalArgumentException("Frequency must not be negative");
+        }
+        this.frequencyKHz = frequencyKHz;
+    }
+
+    /**
+     * Get CPU frequency.
+     *
+     * @return CPU frequency in kHz, or 0 if the speed is unlimited
+     */
+    public int getFrequency() {
+        return frequencyKHz;
+    }
+
+    public boolean isUnlimited() {
+        return frequencyKHz == 0;
+    }
+
+    /**
+     * Get speed achieved in the last measuring window.
+     *
+     * @return achieved speed in MHz, or 0 if it was not measured yet
+     */
+    public double getAchievedMHz() {
+        return achievedMHz;
+    }
+
+    /**
+     * Get number of cycles executed since last <code>start()</code>.
+     *
+     * CONTRACT: call in the CPU thread
+     *
+     * @return number of executed cycles
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Starts counting cycles from zero and sets the reference time to now.
+     *
+     * Should be called when the CPU starts running.
+     *
+     * CONTRACT: call in the CPU thread
+     */
+    public void start() {
+        long now = System.nanoTime();
+        cycles = 0;
+        rebase(now);
+        windowNanos = now;
+        windowCycles = 0;
+        achievedMHz = 0;
+    }
+
+    /**
+     * Adds executed cycles, and waits if the emulation is ahead of real time.
+     *
+     * CONTRACT: call in the CPU thread
+     *
+     * @param executedCycles number of executed cycles
+     */
+    public void addCycles(int executedCycles) {
+        cycles += executedCycles;
+        if (cycles >= nextCheckCycles) {
+            throttle();
+        }
+    }
+
+    private void throttle() {
+        long now = System.nanoTime();
+        measure(now);
+
+        if (currentFrequencyKHz != frequencyKHz) {
+            rebase(now);
+            return;
+        }
+        if (currentFrequencyKHz == 0) {
+            nextCheckCycles = cycles + UNLIMITED_CHECK_CYCLES;
+            return;
+        }
+
+        long targetNanos = baseNanos + cyclesToNanos(cycles - baseCycles, currentFrequencyKHz);
+        long aheadNanos = targetNanos - now;
+        if (aheadNanos < -MAX_LAG_NANOS) {
+            rebase(now);
+            return;
+        }
+        // parkNanos can return early (spurious wakeup)
+        while (aheadNanos > SPIN_NANOS && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(aheadNanos - SPIN_NANOS);
+            aheadNanos = targetNanos - System.nanoTime();
+        }
+        while (System.nanoTime() - targetNanos < 0 && !Thread.currentThread().isInterrupted()) {
+            // spin for the rest
+        }
+        nextCheckCycles = cycles + nanosToCycles(sliceNanos);
+    }
+
+    private void rebase(long now) {
+        currentFrequencyKHz = frequencyKHz;
+        baseNanos = now;
+        baseCycles = cycles;
+        nextCheckCycles = cycles + ((currentFrequencyKHz == 0) ? UNLIMITED_CHECK_CYCLES : nanosToCycles(sliceNanos));
+    }
+
+    private void measure(long now) {
+        long elapsedNanos = now - windowNanos;
+        if (elapsedNanos >= MEASURE_WINDOW_NANOS) {
+            // cycles per microsecond = MHz
+            achievedMHz = (cycles - windowCycles) * 1000.0 / elapsedNanos;
+            windowNanos = now;
+            windowCycles = cycles;
+        }
+    }
+
+    static long cyclesToNanos(long cycleCount, int frequencyKHz) {
+        // 1 kHz = 1 cycle per 1 000 000 ns; split into quotient and remainder so it cannot overflow
+        return (cycleCount / frequencyKHz) * 1000000L + (cycleCount % frequencyKHz) * 1000000L / frequencyKHz;
+    }
+
+    private long nanosToCycles(long nanos) {
+        long cycleCount = (nanos / 1000000L) * currentFrequencyKHz
+            + (nanos % 1000000L) * currentFrequencyKHz / 1000000L;
+        return Math.max(1, cycleCount);
+    }
+
+}
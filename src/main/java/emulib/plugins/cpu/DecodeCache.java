@@ -0,0 +1,303 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import emulib.plugins.memory.Memory.MemoryListener;
+import emulib.plugins.memory.MemoryContext;
+import emulib.runtime.exceptions.InvalidInstructionException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToIntFunction;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Cache of decoded instructions, wrapped around a decoder.
+ *
+ * Instructions are cached by their address in direct-mapped pages, which are allocated on first use. When an
+ * instruction is executed again, the cached instance is returned without decoding, so hot loops skip the decoder
+ * entirely. Instructions decoded into a {@link CompactDecodedInstruction} are cached separately, using the
+ * allocation-free method of the wrapped decoder, and cached instructions are copied into the caller's instance.
+ *
+ * The cache listens for changes of the memory and drops every cached instruction which overlaps a changed cell, so
+ * self-modifying code is decoded again. It relies on synchronous memory notifications; if notifications are disabled
+ * or coalesced, the owner must call {@link #invalidate(int, int)} or {@link #invalidateAll()} itself.
+ *
+ * Cached instructions are shared, they must not be modified by the caller. The cache should be closed when it is not
+ * needed anymore, in order to unregister it from the memory. A closed cache passes all requests to the wrapped
+ * decoder.
+ */
+@ThreadSafe
+public class DecodeCache implements Decoder, MemoryListener, AutoCloseable {
+    /**
+     * Default number of address bits of a page offset (256 instructions per page).
+     */
+    public final static int DEFAULT_PAGE_BITS = 8;
+
+    private final static int MAX_PAGE_BITS = 16;
+
+    private final Decoder decoder;
+    private final MemoryContext<?> memory;
+    private final int pageBits;
+    private final int pageMask;
+
+    private final Pages<DecodedInstruction> instructions;
+    private final Pages<CompactDecodedInstruction> compactInstructions;
+    // incremented before cached instructions are dropped; detects decoding which races with a memory change
+    private final AtomicLong invalidations = new AtomicLong();
+    // the longest cached instruction so far, determines how far back a memory change can reach
+    private final AtomicInteger maxInstructionLength = new AtomicInteger(1);
+    private volatile boolean closed;
+
+    /**
+     * Creates the cache with default page size and registers it as a listener of the memory.
+     *
+     * @param decoder the decoder whose instructions are cached
+     * @param memory the memory from which the decoder reads instructions
+     */
+    public DecodeCache(Decoder decoder, MemoryContext<?> memory) {
+        this(decoder, memory, DEFAULT_PAGE_BITS);
+    }
+
+    /**
+     * Creates the cache and registers it as a listener of the memory.
+     *
+     * @param decoder the decoder whose instructions are cached
+     * @param memory the memory from which the decoder reads instructions
+     * @param pageBits number of address bits of a page offset, from 0 to 16
+     * @throws IllegalArgumentException if pageBits is out of range
+     */
+    public DecodeCache(Decoder decoder, MemoryContext<?> memory, int pageBits) {
+        if (pageBits < 0 || pageBits > MAX_PAGE_BITS) {
+            throw new IllegalArgumentException("Page bits must be between 0 and " + MAX_PAGE_BITS);
+        }
+        this.decoder = Objects.requireNonNull(decoder);
+        this.memory = Objects.requireNonNull(memory);
+        this.pageBits = pageBits;
+        this.pageMask = (1 << pageBits) - 1;
+        this.instructions = new Pages<>(DecodeCache::lengthOf);
+        this.compactInstructions = new Pages<>(DecodeCache::lengthOf);
+
+        memory.addMemoryListener(this);
+    }
+
+    /**
+     * Returns the cached instruction, or decodes and caches it.
+     *
+     * Instructions outside the memory or without the image (so their length is unknown) are decoded, but not
+     * cached. Invalid instructions are never cached.
+     *
+     * @param memoryPosition the address of the start of the instruction
+     * @return the decoded instruction; shared, must not be modified
+     * @throws InvalidInstructionException when decoding is not successful
+     */
+    @Override
+    public DecodedInstruction decode(int memoryPosition) throws InvalidInstructionException {
+        if (closed) {
+            return decoder.decode(memoryPosition);
+        }
+        DecodedInstruction instruction = instructions.get(memoryPosition);
+        if (instruction == null) {
+            long generation = invalidations.get();
+            instruction = decoder.decode(memoryPosition);
+            instructions.put(memoryPosition, instruction, generation);
+        }
+        return instruction;
+    }
+
+    /**
+     * Copies the cached instruction into the given instance, or decodes the instruction into it and caches a copy.
+     *
+     * The instruction is decoded by the allocation-free method of the wrapped decoder. Instructions outside
+     * the memory or without the image (so their length is unknown) are decoded, but not cached. Invalid instructions
+     * are never cached.
+     *
+     * @param memoryPosition the address of the start of the instruction
+     * @param instruction the instruction which is reset and filled
+     * @throws InvalidInstructionException when decoding is not successful
+     */
+    @Override
+    public void decode(int memoryPosition, CompactDecodedInstruction instruction)
+            throws InvalidInstructionException {
+        if (closed) {
+            decoder.decode(memoryPosition, instruction);
+            return;
+        }
+        CompactDecodedInstruction cached = compactInstructions.get(memoryPosition);
+        if (cached != null) {
+            instruction.copyFrom(cached);
+            return;
+        }
+
+        long generation = invalidations.get();
+        decoder.decode(memoryPosition, instruction);
+        if (compactInstructions.covers(memoryPosition) && lengthOf(instruction) > 0) {
+            CompactDecodedInstruction copy = new CompactDecodedInstruction();
+            copy.copyFrom(instruction);
+            compactInstructions.put(memoryPosition, copy, generation);
+        }
+    }
+
+    // 0 if the length is unknown
+    private static int lengthOf(DecodedInstruction instruction) {
+        byte[] image = instruction.getImage();
+        return (image == null) ? 0 : image.length;
+    }
+
+    private static int lengthOf(CompactDecodedInstruction instruction) {
+        return instruction.getLength();
+    }
+
+    /**
+     * Drops cached instructions which overlap the given range of memory cells.
+     *
+     * @param fromPosition memory position (address) of the first changed cell
+     * @param toPosition memory position (address) after the last changed cell (exclusive)
+     */
+    public void invalidate(int fromPosition, int toPosition) {
+        if (fromPosition >= toPosition) {
+            return;
+        }
+        invalidations.incrementAndGet();
+
+        instructions.invalidate(fromPosition, toPosition);
+        compactInstructions.invalidate(fromPosition, toPosition);
+    }
+
+    /**
+     * Drops all cached instructions.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        instructions.clear();
+        compactInstructions.clear();
+    }
+
+    @Override
+    public void memoryChanged(int memoryPosition) {
+        invalidate(memoryPosition, memoryPosition + 1);
+    }
+
+    @Override
+    public void memoryRangeChanged(int fromPosition, int toPosition) {
+        invalidate(fromPosition, toPosition);
+    }
+
+    @Override
+    public void memorySizeChanged() {
+        invalidateAll();
+    }
+
+    /**
+     * Unregisters the cache from the memory and drops all cached instructions.
+     *
+     * Instructions are then decoded by the wrapped decoder, without caching.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        memory.removeMemoryListener(this);
+        invalidateAll();
+    }
+
+    /**
+     * Direct-mapped pages of cached instructions of one type.
+     *
+     * @param <T> type of cached instructions
+     */
+    private final class Pages<T> {
+        private final ToIntFunction<T> lengths;
+        private volatile AtomicReferenceArray<AtomicReferenceArray<T>> pages;
+
+        private Pages(ToIntFunction<T> lengths) {
+            this.lengths = lengths;
+            clear();
+        }
+
+        private boolean covers(int memoryPosition) {
+            return memoryPosition >= 0 && (memoryPosition >>> pageBits) < pages.length();
+        }
+
+        private T get(int memoryPosition) {
+            AtomicReferenceArray<AtomicReferenceArray<T>> tmpPages = pages;
+            int pageIndex = memoryPosition >>> pageBits;
+            if (memoryPosition < 0 || pageIndex >= tmpPages.length()) {
+                return null;
+            }
+            AtomicReferenceArray<T> page = tmpPages.get(pageIndex);
+            return (page == null) ? null : page.get(memoryPosition & pageMask);
+        }
+
+        private void put(int memoryPosition, T instruction, long generation) {
+            AtomicReferenceArray<AtomicReferenceArray<T>> tmpPages = pages;
+            int pageIndex = memoryPosition >>> pageBits;
+            int length = lengths.applyAsInt(instruction);
+            if (memoryPosition < 0 || pageIndex >= tmpPages.length() || length <= 0) {
+                return;
+            }
+
+            AtomicReferenceArray<T> page = tmpPages.get(pageIndex);
+            if (page == null) {
+                page = new AtomicReferenceArray<>(pageMask + 1);
+                if (!tmpPages.compareAndSet(pageIndex, null, page)) {
+                    page = tmpPages.get(pageIndex);
+                }
+            }
+
+            int slot = memoryPosition & pageMask;
+            maxInstructionLength.accumulateAndGet(length, Math::max);
+            page.set(slot, instruction);
+            if (invalidations.get() != generation) {
+                // memory has changed while decoding, the instruction might be stale
+                page.compareAndSet(slot, instruction, null);
+            }
+        }
+
+        private void invalidate(int fromPosition, int toPosition) {
+            AtomicReferenceArray<AtomicReferenceArray<T>> tmpPages = pages;
+            int position = Math.max(0, fromPosition - maxInstructionLength.get() + 1);
+            while (position < toPosition) {
+                int pageIndex = position >>> pageBits;
+                if (pageIndex >= tmpPages.length()) {
+                    break;
+                }
+                int pageEnd = (int) Math.min(toPosition, (long) (pageIndex + 1) << pageBits);
+                AtomicReferenceArray<T> page = tmpPages.get(pageIndex);
+                if (page != null) {
+                    for (; position < pageEnd; position++) {
+                        int slot = position & pageMask;
+                        T instruction = page.get(slot);
+                        if (instruction != null && position + lengths.applyAsInt(instruction) > fromPosition) {
+                            page.compareAndSet(slot, instruction, null);
+                        }
+                    }
+                }
+                position = pageEnd;
+            }
+        }
+
+        private void clear() {
+            int count = (int) ((Math.max(0, memory.getSize()) + (long) pageMask) >>> pageBits);
+            pages = new AtomicReferenceArray<>(count);
+        }
+    }
+
+}
@@ -63,6 +63,15 @@ public class DecodedInstruction {
         return bits.containsKey(key) || constants.containsKey(key);
     }
 
+    /**
+     * Returns true if the specified key is mapped to a constant.
+     * @param key the rule code
+     * @return true if the key is mapped to a constant, false otherwise
+     */
+    boolean hasConstant(int key) {
+        return constants.containsKey(key);
+    }
+
     /**
      * Returns the constant value to which the given key is mapped.
      * @param key the key
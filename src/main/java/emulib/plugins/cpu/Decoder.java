@@ -35,4 +35,22 @@ public interface Decoder {
      */
     DecodedInstruction decode(int memoryPosition) throws InvalidInstructionException;
 
+    /**
+     * Decodes an instruction into a reusable instruction object.
+     *
+     * The instruction is reset before decoding. Decoders should override this method to fill the instruction
+     * directly, without allocation; the default implementation copies the result of {@link #decode(int)}.
+     *
+     * The decoder should set the image of the instruction, because its length tells which memory cells
+     * the instruction occupies. {@link DecodeCache} does not cache instructions without the image.
+     *
+     * @param memoryPosition the address of the start of the instruction
+     * @param instruction the instruction object which will be filled
+     * @throws InvalidInstructionException when decoding is not successful
+     */
+    default void decode(int memoryPosition, CompactDecodedInstruction instruction)
+            throws InvalidInstructionException {
+        instruction.copyFrom(decode(memoryPosition));
+    }
+
 }
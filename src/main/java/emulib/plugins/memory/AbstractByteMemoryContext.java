@@ -0,0 +1,204 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Memory context backed by a primitive <code>byte</code> array.
+ *
+ * The primitive methods are the primary implementation; the boxed methods of <code>MemoryContext</code> just delegate
+ * to them. Subclasses which want to change the behavior (e.g. ROM areas or banking) should override the primitive
+ * methods only. Block operations access the cells directly only if the primitive methods are not overridden;
+ * otherwise they go through the primitive methods cell by cell, and listeners are notified about each cell.
+ */
+public abstract class AbstractByteMemoryContext extends AbstractMemoryContext<Byte> implements ByteMemoryContext {
+    /**
+     * Memory cells.
+     */
+    protected final byte[] memory;
+
+    // values of memory cells as seen by watchpoints
+    private final IntUnaryOperator cellValues;
+    // block operations can bypass the primitive methods only if they are not overridden
+    private final boolean directRead;
+    private final boolean directWrite;
+
+    /**
+     * Creates new memory context.
+     *
+     * @param size number of memory cells
+     * @throws IllegalArgumentException if size is negative
+     */
+    public AbstractByteMemoryContext(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Memory size must not be negative");
+        }
+        this.memory = new byte[size];
+        this.cellValues = i -> memory[i] & 0xFF;
+        this.directRead = !isOverridden(AbstractByteMemoryContext.class, "readByte", int.class);
+        this.directWrite = !isOverridden(AbstractByteMemoryContext.class, "writeByte", int.class, byte.class);
+    }
+
+    @Override
+    public byte readByte(int memoryPosition) {
+        byte value = memory[memoryPosition];
+        if (areWatchpointsSet()) {
+            checkReadWatchpoints(memoryPosition, value & 0xFF);
+        }
+        return value;
+    }
+
+    @Override
+    public void writeByte(int memoryPosition, byte value) {
+        memory[memoryPosition] = value;
+        if (areWatchpointsSet()) {
+            checkWriteWatchpoints(memoryPosition, value & 0xFF);
+        }
+        notifyMemoryChanged(memoryPosition);
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, byte[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directRead) {
+            System.arraycopy(memory, memoryPosition, destination, offset, length);
+            checkReadWatchpoints(memoryPosition, length, cellValues);
+        } else {
+            for (int i = 0; i < length; i++) {
+                destination[offset + i] = readByte(memoryPosition + i);
+            }
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, byte[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            System.arraycopy(source, offset, memory, memoryPosition, length);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeByte(memoryPosition + i, source[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, ByteBuffer destination) {
+        int length = destination.remaining();
+        checkRange(memoryPosition, length);
+        if (directRead) {
+            destination.put(memory, memoryPosition, length);
+            checkReadWatchpoints(memoryPosition, length, cellValues);
+        } else {
+            for (int i = 0; i < length; i++) {
+                destination.put(readByte(memoryPosition + i));
+            }
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, ByteBuffer source) {
+        int length = source.remaining();
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            source.get(memory, memoryPosition, length);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeByte(memoryPosition + i, source.get());
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, Byte[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        for (int i = 0; i < length; i++) {
+            destination[offset + i] = readByte(memoryPosition + i);
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, Byte[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            for (int i = 0; i < length; i++) {
+                memory[memoryPosition + i] = source[offset + i];
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeByte(memoryPosition + i, source[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public void fill(int memoryPosition, int length, Byte value) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            Arrays.fill(memory, memoryPosition, memoryPosition + length, value);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            byte cell = value;
+            for (int i = 0; i < length; i++) {
+                writeByte(memoryPosition + i, cell);
+            }
+        }
+    }
+
+    @Override
+    public void move(int fromPosition, int toPosition, int length) {
+        checkRange(fromPosition, length);
+        checkRange(toPosition, length);
+        if (directRead && directWrite) {
+            checkReadWatchpoints(fromPosition, length, cellValues);
+            System.arraycopy(memory, fromPosition, memory, toPosition, length);
+            checkWriteWatchpoints(toPosition, length, cellValues);
+            notifyMemoryRangeChanged(toPosition, toPosition + length);
+        } else {
+            ByteMemoryContext.super.move(fromPosition, toPosition, length);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (directWrite) {
+            Arrays.fill(memory, (byte) 0);
+            notifyMemoryRangeChanged(0, memory.length);
+        } else {
+            fill(0, memory.length, (byte) 0);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return memory.length;
+    }
+
+}
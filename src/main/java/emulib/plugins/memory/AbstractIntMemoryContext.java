@@ -0,0 +1,262 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Memory context backed by a primitive <code>int</code> array.
+ *
+ * The primitive methods are the primary implementation; the boxed methods of <code>MemoryContext</code> just delegate
+ * to them. Subclasses which want to change the behavior (e.g. ROM areas or banking) should override the primitive
+ * methods only. Block operations access the cells directly only if the primitive methods are not overridden;
+ * otherwise they go through the primitive methods cell by cell, and listeners are notified about each cell.
+ */
+public abstract class AbstractIntMemoryContext extends AbstractMemoryContext<Integer> implements IntMemoryContext {
+    /**
+     * Memory cells.
+     */
+    protected final int[] memory;
+
+    // values of memory cells as seen by watchpoints
+    private final IntUnaryOperator cellValues;
+    // block operations can bypass the primitive methods only if they are not overridden
+    private final boolean directRead;
+    private final boolean directWrite;
+
+    /**
+     * Creates new memory context.
+     *
+     * @param size number of memory cells
+     * @throws IllegalArgumentException if size is negative
+     */
+    public AbstractIntMemoryContext(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Memory size must not be negative");
+        }
+        this.memory = new int[size];
+        this.cellValues = i -> memory[i];
+        this.directRead = !isOverridden(AbstractIntMemoryContext.class, "readInt", int.class);
+        this.directWrite = !isOverridden(AbstractIntMemoryContext.class, "writeInt", int.class, int.class);
+    }
+
+    @Override
+    public int readInt(int memoryPosition) {
+        int value = memory[memoryPosition];
+        if (areWatchpointsSet()) {
+            checkReadWatchpoints(memoryPosition, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void writeInt(int memoryPosition, int value) {
+        memory[memoryPosition] = value;
+        if (areWatchpointsSet()) {
+            checkWriteWatchpoints(memoryPosition, value);
+        }
+        notifyMemoryChanged(memoryPosition);
+    }
+
+    @Override
+    public void readWord(int memoryPosition, int[] buffer) {
+        buffer[0] = readInt(memoryPosition);
+        buffer[1] = readInt(memoryPosition + 1);
+    }
+
+    @Override
+    public void writeWord(int memoryPosition, int first, int second) {
+        writeInt(memoryPosition, first);
+        writeInt(memoryPosition + 1, second);
+    }
+
+    @Override
+    public Integer read(int memoryPosition) {
+        return readInt(memoryPosition);
+    }
+
+    @Override
+    public Integer[] readWord(int memoryPosition) {
+        return new Integer[] { readInt(memoryPosition), readInt(memoryPosition + 1) };
+    }
+
+    @Override
+    public void write(int memoryPosition, Integer value) {
+        writeInt(memoryPosition, value);
+    }
+
+    @Override
+    public void writeWord(int memoryPosition, Integer[] value) {
+        writeWord(memoryPosition, value[0], value[1]);
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, int[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directRead) {
+            System.arraycopy(memory, memoryPosition, destination, offset, length);
+            checkReadWatchpoints(memoryPosition, length, cellValues);
+        } else {
+            for (int i = 0; i < length; i++) {
+                destination[offset + i] = readInt(memoryPosition + i);
+            }
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, int[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            System.arraycopy(source, offset, memory, memoryPosition, length);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeInt(memoryPosition + i, source[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, byte[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        for (int i = 0; i < length; i++) {
+            destination[offset + i] = (byte) readInt(memoryPosition + i);
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, byte[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            for (int i = 0; i < length; i++) {
+                memory[memoryPosition + i] = (source[offset + i] & 0xFF);
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeInt(memoryPosition + i, (source[offset + i] & 0xFF));
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, ByteBuffer destination) {
+        int length = destination.remaining();
+        checkRange(memoryPosition, length);
+        for (int i = 0; i < length; i++) {
+            destination.put((byte) readInt(memoryPosition + i));
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, ByteBuffer source) {
+        int length = source.remaining();
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            for (int i = 0; i < length; i++) {
+                memory[memoryPosition + i] = (source.get() & 0xFF);
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeInt(memoryPosition + i, (source.get() & 0xFF));
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, Integer[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        for (int i = 0; i < length; i++) {
+            destination[offset + i] = readInt(memoryPosition + i);
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, Integer[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            for (int i = 0; i < length; i++) {
+                memory[memoryPosition + i] = source[offset + i];
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeInt(memoryPosition + i, source[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public void fill(int memoryPosition, int length, Integer value) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            Arrays.fill(memory, memoryPosition, memoryPosition + length, value);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            int cell = value;
+            for (int i = 0; i < length; i++) {
+                writeInt(memoryPosition + i, cell);
+            }
+        }
+    }
+
+    @Override
+    public void move(int fromPosition, int toPosition, int length) {
+        checkRange(fromPosition, length);
+        checkRange(toPosition, length);
+        if (directRead && directWrite) {
+            checkReadWatchpoints(fromPosition, length, cellValues);
+            System.arraycopy(memory, fromPosition, memory, toPosition, length);
+            checkWriteWatchpoints(toPosition, length, cellValues);
+            notifyMemoryRangeChanged(toPosition, toPosition + length);
+        } else {
+            IntMemoryContext.super.move(fromPosition, toPosition, length);
+        }
+    }
+
+    @Override
+    public Class<?> getDataType() {
+        return Integer.class;
+    }
+
+    @Override
+    public void clear() {
+        if (directWrite) {
+            Arrays.fill(memory, 0);
+            notifyMemoryRangeChanged(0, memory.length);
+        } else {
+            fill(0, memory.length, 0);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return memory.length;
+    }
+
+}
@@ -21,8 +21,16 @@
 package emulib.plugins.memory;
 
 import emulib.plugins.memory.Memory.MemoryListener;
+import emulib.plugins.memory.Memory.WatchpointListener;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
 import net.jcip.annotations.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +39,11 @@ import org.slf4j.LoggerFactory;
  * This class implements some fundamental functionality of MemoryContext
  * interface, that can be useful in the programming of the own memory context.
  *
+ * Memory change notifications are synchronous by default - listeners are called in the thread which has changed the
+ * memory. In the coalesced mode, changed positions are just marked in a bitmap, and listeners are notified about
+ * continuous changed ranges periodically, in a separate thread. It is useful when listeners are slow (e.g. GUI) and the
+ * memory is changed often (e.g. by running CPU).
+ *
  * @param <Type> the memory cell type
  */
 @ThreadSafe
@@ -39,6 +52,28 @@ public abstract class AbstractMemoryContext<Type> implements MemoryContext<Type>
 
     private volatile boolean notificationsEnabled = true;
 
+    // null if notifications are synchronous
+    private volatile DirtyBitmap dirtyCells;
+    // ** CONTRACT: guarded by coalescingLock **
+    private ScheduledFuture<?> dispatchTask;
+    private final Object coalescingLock = new Object();
+
+    private final static Watchpoint[] NO_WATCHPOINTS = new Watchpoint[0];
+
+    // copy-on-write; the flag is a fast path for memory accesses
+    private volatile Watchpoint[] watchpoints = NO_WATCHPOINTS;
+    private volatile boolean watchpointsSet;
+    private final Set<WatchpointListener> watchpointListeners = new CopyOnWriteArraySet<>();
+    private final Object watchpointsLock = new Object();
+
+    private static class Dispatcher {
+        private final static ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "memory-notifications");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @Override
     public boolean areMemoryNotificationsEnabled() {
         return notificationsEnabled;
@@ -76,6 +111,192 @@ public abstract class AbstractMemoryContext<Type> implements MemoryContext<Type>
         listeners.remove(listener);
     }
 
+    /**
+     * This class supports watchpoints.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isWatchpointSupported() {
+        return true;
+    }
+
+    @Override
+    public void setWatchpoint(Watchpoint watchpoint) {
+        Objects.requireNonNull(watchpoint);
+        synchronized (watchpointsLock) {
+            Watchpoint[] tmpWatchpoints = Arrays.copyOf(watchpoints, watchpoints.length + 1);
+            tmpWatchpoints[tmpWatchpoints.length - 1] = watchpoint;
+            watchpoints = tmpWatchpoints;
+            watchpointsSet = true;
+        }
+    }
+
+    @Override
+    public void unsetWatchpoint(Watchpoint watchpoint) {
+        synchronized (watchpointsLock) {
+            Watchpoint[] tmpWatchpoints = Arrays.stream(watchpoints)
+                .filter(w -> w != watchpoint)
+                .toArray(Watchpoint[]::new);
+            watchpoints = tmpWatchpoints;
+            watchpointsSet = tmpWatchpoints.length > 0;
+        }
+    }
+
+    @Override
+    public void addWatchpointListener(WatchpointListener listener) {
+        watchpointListeners.add(listener);
+    }
+
+    @Override
+    public void removeWatchpointListener(WatchpointListener listener) {
+        watchpointListeners.remove(listener);
+    }
+
+    /**
+     * Determine if at least one watchpoint is set.
+     *
+     * Memory implementations should call <code>checkReadWatchpoints</code> and <code>checkWriteWatchpoints</code>
+     * only if this method returns true, so memory accesses are cheap when no watchpoint is set.
+     *
+     * @return true if a watchpoint is set, false otherwise
+     */
+    protected final boolean areWatchpointsSet() {
+        return watchpointsSet;
+    }
+
+    /**
+     * Notify watchpoint listeners if a read access triggers a watchpoint.
+     *
+     * @param position memory position (address) of the read cell
+     * @param value the read value
+     */
+    protected void checkReadWatchpoints(int position, int value) {
+        checkWatchpoints(position, value, false);
+    }
+
+    /**
+     * Notify watchpoint listeners if a write access triggers a watchpoint.
+     *
+     * @param position memory position (address) of the written cell
+     * @param value the written value
+     */
+    protected void checkWriteWatchpoints(int position, int value) {
+        checkWatchpoints(position, value, true);
+    }
+
+    /**
+     * Notify watchpoint listeners if a read access of a block of cells triggers a watchpoint.
+     *
+     * Does nothing if no watchpoint is set.
+     *
+     * @param memoryPosition memory position (address) of the first read cell
+     * @param length number of read cells
+     * @param cells function returning the value of a cell at given memory position
+     */
+    protected void checkReadWatchpoints(int memoryPosition, int length, IntUnaryOperator cells) {
+        if (areWatchpointsSet()) {
+            for (int i = memoryPosition; i < memoryPosition + length; i++) {
+                checkReadWatchpoints(i, cells.applyAsInt(i));
+            }
+        }
+    }
+
+    /**
+     * Notify watchpoint listeners if a write access of a block of cells triggers a watchpoint.
+     *
+     * Does nothing if no watchpoint is set.
+     *
+     * @param memoryPosition memory position (address) of the first written cell
+     * @param length number of written cells
+     * @param cells function returning the value of a cell at given memory position
+     */
+    protected void checkWriteWatchpoints(int memoryPosition, int length, IntUnaryOperator cells) {
+        if (areWatchpointsSet()) {
+            for (int i = memoryPosition; i < memoryPosition + length; i++) {
+                checkWriteWatchpoints(i, cells.applyAsInt(i));
+            }
+        }
+    }
+
+    private void checkWatchpoints(int position, int value, boolean write) {
+        for (Watchpoint watchpoint : watchpoints) {
+            if (watchpoint.matches(position, value, write)) {
+                watchpointListeners.forEach(listener -> {
+                    try {
+                        listener.watchpointHit(watchpoint, position, value);
+                    } catch (Exception e) {
+                        LOGGER.error("Watchpoint listener error", e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Switch to coalesced notifications mode.
+     *
+     * Changed memory positions are collected and listeners are notified by <code>memoryRangeChanged</code> at most
+     * once per given period, in a separate thread. Calling this method again just changes the period.
+     *
+     * @param period period of notifications
+     * @param unit time unit of the period
+     * @throws IllegalArgumentException if period is not positive
+     */
+    public void enableCoalescedNotifications(long period, TimeUnit unit) {
+        Objects.requireNonNull(unit);
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        synchronized (coalescingLock) {
+            if (dispatchTask != null) {
+                dispatchTask.cancel(false);
+            }
+            if (dirtyCells == null) {
+                dirtyCells = new DirtyBitmap(getSize());
+            }
+            dispatchTask = Dispatcher.EXECUTOR.scheduleWithFixedDelay(
+                this::dispatchDirtyCells, period, period, unit
+            );
+        }
+    }
+
+    /**
+     * Switch back to synchronous notifications mode.
+     *
+     * Pending changes are delivered to listeners in the calling thread.
+     */
+    public void disableCoalescedNotifications() {
+        synchronized (coalescingLock) {
+            DirtyBitmap tmpDirtyCells = dirtyCells;
+            if (tmpDirtyCells == null) {
+                return;
+            }
+            dispatchTask.cancel(false);
+            dispatchTask = null;
+            dirtyCells = null;
+            tmpDirtyCells.drain(this::fireMemoryRangeChanged, getSize());
+        }
+    }
+
+    /**
+     * Determine if memory change notifications are coalesced.
+     *
+     * @return true if coalesced notifications mode is enabled, false if notifications are synchronous
+     */
+    public boolean areNotificationsCoalesced() {
+        return dirtyCells != null;
+    }
+
+    private void dispatchDirtyCells() {
+        synchronized (coalescingLock) {
+            DirtyBitmap tmpDirtyCells = dirtyCells;
+            if (tmpDirtyCells != null) {
+                tmpDirtyCells.drain(this::fireMemoryRangeChanged, getSize());
+            }
+        }
+    }
+
     /**
      * Notify all listeners that memory has changed.
      *
@@ -86,6 +307,14 @@ public abstract class AbstractMemoryContext<Type> implements MemoryContext<Type>
      */
     public void notifyMemoryChanged(int position) {
         if (notificationsEnabled) {
+            DirtyBitmap tmpDirtyCells = dirtyCells;
+            if (tmpDirtyCells != null) {
+                tmpDirtyCells.mark(position);
+                if (dirtyCells == tmpDirtyCells) {
+                    return;
+                }
+                // the bitmap was detached meanwhile, its final drain might have missed the mark
+            }
             listeners.forEach(listener -> {
                 try {
                     listener.memoryChanged(position);
@@ -96,10 +325,84 @@ public abstract class AbstractMemoryContext<Type> implements MemoryContext<Type>
         }
     }
 
+    /**
+     * Notify all listeners that a continuous range of memory has changed.
+     *
+     * This method should be called after bulk writes instead of calling <code>notifyMemoryChanged</code> for
+     * each cell.
+     *
+     * @param fromPosition memory position (address) of the first changed cell
+     * @param toPosition memory position (address) after the last changed cell (exclusive)
+     */
+    public void notifyMemoryRangeChanged(int fromPosition, int toPosition) {
+        if (notificationsEnabled && fromPosition < toPosition) {
+            DirtyBitmap tmpDirtyCells = dirtyCells;
+            if (tmpDirtyCells != null) {
+                tmpDirtyCells.mark(fromPosition, toPosition);
+                if (dirtyCells == tmpDirtyCells) {
+                    return;
+                }
+                // the bitmap was detached meanwhile, its final drain might have missed the mark
+            }
+            fireMemoryRangeChanged(fromPosition, toPosition);
+        }
+    }
+
+    private void fireMemoryRangeChanged(int fromPosition, int toPosition) {
+        listeners.forEach(listener -> {
+            try {
+                listener.memoryRangeChanged(fromPosition, toPosition);
+            } catch (Exception e) {
+                LOGGER.error("Memory listener error", e);
+            }
+        });
+    }
+
+    /**
+     * Determine if a public method is overridden by the runtime class of this memory context.
+     *
+     * Memory contexts use it to decide if block operations can access memory cells directly, or if they must go
+     * through single-cell methods overridden by a subclass (e.g. ROM areas or banking).
+     *
+     * @param declaringClass the class which declares the original method
+     * @param name method name
+     * @param parameterTypes method parameter types
+     * @return true if the method is declared in a subclass of declaringClass, false otherwise
+     * @throws IllegalArgumentException if the method does not exist
+     */
+    protected final boolean isOverridden(Class<?> declaringClass, String name, Class<?>... parameterTypes) {
+        try {
+            return getClass().getMethod(name, parameterTypes).getDeclaringClass() != declaringClass;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Method " + name + " does not exist", e);
+        }
+    }
+
+    /**
+     * Check if a range of memory cells lies within the memory.
+     *
+     * @param memoryPosition memory position (address) of the first cell
+     * @param length number of cells
+     * @throws IndexOutOfBoundsException if the range is not within the memory
+     */
+    protected void checkRange(int memoryPosition, int length) {
+        if (memoryPosition < 0 || length < 0 || memoryPosition > getSize() - length) {
+            throw new IndexOutOfBoundsException(
+                "Range [" + memoryPosition + ", " + memoryPosition + " + " + length + ") is out of memory bounds"
+            );
+        }
+    }
+
     /**
      * Notify listeners that memory size has changed.
      */
     public void notifyMemorySizeChanged() {
+        synchronized (coalescingLock) {
+            if (dirtyCells != null) {
+                // listeners are expected to refresh everything, so pending changes can be forgotten
+                dirtyCells = new DirtyBitmap(getSize());
+            }
+        }
         if (notificationsEnabled) {
             listeners.forEach(listener -> {
                 try {
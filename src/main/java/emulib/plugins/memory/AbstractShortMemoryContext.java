@@ -0,0 +1,262 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Memory context backed by a primitive <code>short</code> array.
+ *
+ * The primitive methods are the primary implementation; the boxed methods of <code>MemoryContext</code> just delegate
+ * to them. Subclasses which want to change the behavior (e.g. ROM areas or banking) should override the primitive
+ * methods only. Block operations access the cells directly only if the primitive methods are not overridden;
+ * otherwise they go through the primitive methods cell by cell, and listeners are notified about each cell.
+ */
+public abstract class AbstractShortMemoryContext extends AbstractMemoryContext<Short> implements ShortMemoryContext {
+    /**
+     * Memory cells.
+     */
+    protected final short[] memory;
+
+    // values of memory cells as seen by watchpoints
+    private final IntUnaryOperator cellValues;
+    // block operations can bypass the primitive methods only if they are not overridden
+    private final boolean directRead;
+    private final boolean directWrite;
+
+    /**
+     * Creates new memory context.
+     *
+     * @param size number of memory cells
+     * @throws IllegalArgumentException if size is negative
+     */
+    public AbstractShortMemoryContext(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Memory size must not be negative");
+        }
+        this.memory = new short[size];
+        this.cellValues = i -> memory[i] & 0xFFFF;
+        this.directRead = !isOverridden(AbstractShortMemoryContext.class, "readShort", int.class);
+        this.directWrite = !isOverridden(AbstractShortMemoryContext.class, "writeShort", int.class, short.class);
+    }
+
+    @Override
+    public short readShort(int memoryPosition) {
+        short value = memory[memoryPosition];
+        if (areWatchpointsSet()) {
+            checkReadWatchpoints(memoryPosition, value & 0xFFFF);
+        }
+        return value;
+    }
+
+    @Override
+    public void writeShort(int memoryPosition, short value) {
+        memory[memoryPosition] = value;
+        if (areWatchpointsSet()) {
+            checkWriteWatchpoints(memoryPosition, value & 0xFFFF);
+        }
+        notifyMemoryChanged(memoryPosition);
+    }
+
+    @Override
+    public void readWord(int memoryPosition, int[] buffer) {
+        buffer[0] = readShort(memoryPosition) & 0xFFFF;
+        buffer[1] = readShort(memoryPosition + 1) & 0xFFFF;
+    }
+
+    @Override
+    public void writeWord(int memoryPosition, int first, int second) {
+        writeShort(memoryPosition, (short) first);
+        writeShort(memoryPosition + 1, (short) second);
+    }
+
+    @Override
+    public Short read(int memoryPosition) {
+        return readShort(memoryPosition);
+    }
+
+    @Override
+    public Short[] readWord(int memoryPosition) {
+        return new Short[] { readShort(memoryPosition), readShort(memoryPosition + 1) };
+    }
+
+    @Override
+    public void write(int memoryPosition, Short value) {
+        writeShort(memoryPosition, value);
+    }
+
+    @Override
+    public void writeWord(int memoryPosition, Short[] value) {
+        writeWord(memoryPosition, value[0], value[1]);
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, short[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directRead) {
+            System.arraycopy(memory, memoryPosition, destination, offset, length);
+            checkReadWatchpoints(memoryPosition, length, cellValues);
+        } else {
+            for (int i = 0; i < length; i++) {
+                destination[offset + i] = readShort(memoryPosition + i);
+            }
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, short[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            System.arraycopy(source, offset, memory, memoryPosition, length);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeShort(memoryPosition + i, source[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, byte[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        for (int i = 0; i < length; i++) {
+            destination[offset + i] = (byte) readShort(memoryPosition + i);
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, byte[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            for (int i = 0; i < length; i++) {
+                memory[memoryPosition + i] = (short) (source[offset + i] & 0xFF);
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeShort(memoryPosition + i, (short) (source[offset + i] & 0xFF));
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, ByteBuffer destination) {
+        int length = destination.remaining();
+        checkRange(memoryPosition, length);
+        for (int i = 0; i < length; i++) {
+            destination.put((byte) readShort(memoryPosition + i));
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, ByteBuffer source) {
+        int length = source.remaining();
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            for (int i = 0; i < length; i++) {
+                memory[memoryPosition + i] = (short) (source.get() & 0xFF);
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeShort(memoryPosition + i, (short) (source.get() & 0xFF));
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, Short[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        for (int i = 0; i < length; i++) {
+            destination[offset + i] = readShort(memoryPosition + i);
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, Short[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            for (int i = 0; i < length; i++) {
+                memory[memoryPosition + i] = source[offset + i];
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeShort(memoryPosition + i, source[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public void fill(int memoryPosition, int length, Short value) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            Arrays.fill(memory, memoryPosition, memoryPosition + length, value);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            short cell = value;
+            for (int i = 0; i < length; i++) {
+                writeShort(memoryPosition + i, cell);
+            }
+        }
+    }
+
+    @Override
+    public void move(int fromPosition, int toPosition, int length) {
+        checkRange(fromPosition, length);
+        checkRange(toPosition, length);
+        if (directRead && directWrite) {
+            checkReadWatchpoints(fromPosition, length, cellValues);
+            System.arraycopy(memory, fromPosition, memory, toPosition, length);
+            checkWriteWatchpoints(toPosition, length, cellValues);
+            notifyMemoryRangeChanged(toPosition, toPosition + length);
+        } else {
+            ShortMemoryContext.super.move(fromPosition, toPosition, length);
+        }
+    }
+
+    @Override
+    public Class<?> getDataType() {
+        return Short.class;
+    }
+
+    @Override
+    public void clear() {
+        if (directWrite) {
+            Arrays.fill(memory, (short) 0);
+            notifyMemoryRangeChanged(0, memory.length);
+        } else {
+            fill(0, memory.length, (short) 0);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return memory.length;
+    }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.memory;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Memory context backed by a <code>ByteBuffer</code>.
+ *
+ * The buffer can be a direct (off-heap) buffer, or a buffer mapped over a file. In the latter case, a ROM image can be
+ * mapped read-only without copying it into the Java heap, and RAM contents can be persisted just by calling
+ * <code>flush()</code>.
+ *
+ * Memory positions are absolute indexes into the buffer, from 0 up to the buffer capacity. Position and limit of the
+ * buffer are ignored.
+ *
+ * Writing into read-only buffer throws <code>ReadOnlyBufferException</code>. Memories which should silently ignore
+ * such writes (like real ROMs do) should override <code>writeByte</code>. Block operations access the buffer directly
+ * only if <code>readByte</code> and <code>writeByte</code> are not overridden; otherwise they go through them cell by
+ * cell, and listeners are notified about each cell.
+ */
+public class ByteBufferMemoryContext extends AbstractMemoryContext<Byte> implements ByteMemoryContext {
+    private static final int CLEAR_CHUNK_SIZE = 4096;
+
+    /**
+     * Memory cells.
+     */
+    protected final ByteBuffer memory;
+
+    // values of memory cells as seen by watchpoints
+    private final IntUnaryOperator cellValues;
+    // block operations can bypass readByte/writeByte only if they are not overridden
+    private final boolean directRead;
+    private final boolean directWrite;
+
+    /**
+     * Creates new memory context over given buffer.
+     *
+     * @param memory the buffer holding memory cells
+     * @throws NullPointerException if the buffer is null
+     */
+    public ByteBufferMemoryContext(ByteBuffer memory) {
+        this.memory = Objects.requireNonNull(memory);
+        this.cellValues = i -> this.memory.get(i) & 0xFF;
+        this.directRead = !isOverridden(ByteBufferMemoryContext.class, "readByte", int.class);
+        this.directWrite = !isOverridden(ByteBufferMemoryContext.class, "writeByte", int.class, byte.class);
+    }
+
+    /**
+     * Creates new memory context backed by a direct (off-heap) buffer.
+     *
+     * @param size number of memory cells
+     * @return new memory context
+     */
+    public static ByteBufferMemoryContext allocateDirect(int size) {
+        return new ByteBufferMemoryContext(ByteBuffer.allocateDirect(size));
+    }
+
+    /**
+     * Creates new read-only memory context mapped over whole file.
+     *
+     * @param file the file (e.g. ROM image)
+     * @return new memory context
+     * @throws IOException if the file cannot be mapped, or it is larger than 2 GB
+     */
+    public static ByteBufferMemoryContext mapReadOnly(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be mapped: " + file);
+            }
+            return new ByteBufferMemoryContext(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Creates new read-write memory context mapped over a file.
+     *
+     * If the file does not exist, it is created. If it is smaller than given size, it is extended. Changes of the
+     * memory are written into the file by the operating system; call <code>flush()</code> to force it.
+     *
+     * @param file the file (e.g. RAM snapshot)
+     * @param size number of memory cells
+     * @return new memory context
+     * @throws IOException if the file cannot be mapped
+     */
+    public static ByteBufferMemoryContext mapReadWrite(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            return new ByteBufferMemoryContext(channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    /**
+     * Determine if the memory is read-only.
+     *
+     * @return true if the backing buffer is read-only, false otherwise
+     */
+    public boolean isReadOnly() {
+        return memory.isReadOnly();
+    }
+
+    /**
+     * Forces changes of the memory to be written to the mapped file.
+     *
+     * Does nothing if the memory is not mapped over a file, or if it is read-only.
+     */
+    public void flush() {
+        if (memory instanceof MappedByteBuffer && !memory.isReadOnly()) {
+            ((MappedByteBuffer) memory).force();
+        }
+    }
+
+    @Override
+    public byte readByte(int memoryPosition) {
+        byte value = memory.get(memoryPosition);
+        if (areWatchpointsSet()) {
+            checkReadWatchpoints(memoryPosition, value & 0xFF);
+        }
+        return value;
+    }
+
+    @Override
+    public void writeByte(int memoryPosition, byte value) {
+        memory.put(memoryPosition, value);
+        if (areWatchpointsSet()) {
+            checkWriteWatchpoints(memoryPosition, value & 0xFF);
+        }
+        notifyMemoryChanged(memoryPosition);
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, byte[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directRead) {
+            view(memoryPosition, length).get(destination, offset, length);
+            checkReadWatchpoints(memoryPosition, length, cellValues);
+        } else {
+            for (int i = 0; i < length; i++) {
+                destination[offset + i] = readByte(memoryPosition + i);
+            }
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, byte[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            view(memoryPosition, length).put(source, offset, length);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeByte(memoryPosition + i, source[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, ByteBuffer destination) {
+        int length = destination.remaining();
+        checkRange(memoryPosition, length);
+        if (directRead) {
+            destination.put(view(memoryPosition, length));
+            checkReadWatchpoints(memoryPosition, length, cellValues);
+        } else {
+            for (int i = 0; i < length; i++) {
+                destination.put(readByte(memoryPosition + i));
+            }
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, ByteBuffer source) {
+        int length = source.remaining();
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            view(memoryPosition, length).put(source);
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeByte(memoryPosition + i, source.get());
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(int memoryPosition, Byte[] destination, int offset, int length) {
+        checkRange(memoryPosition, length);
+        for (int i = 0; i < length; i++) {
+            destination[offset + i] = readByte(memoryPosition + i);
+        }
+    }
+
+    @Override
+    public void writeBlock(int memoryPosition, Byte[] source, int offset, int length) {
+        checkRange(memoryPosition, length);
+        if (directWrite) {
+            for (int i = 0; i < length; i++) {
+                memory.put(memoryPosition + i, source[offset + i]);
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeByte(memoryPosition + i, source[offset + i]);
+            }
+        }
+    }
+
+    @Override
+    public void fill(int memoryPosition, int length, Byte value) {
+        checkRange(memoryPosition, length);
+        byte cell = value;
+        if (directWrite) {
+            for (int i = memoryPosition; i < memoryPosition + length; i++) {
+                memory.put(i, cell);
+            }
+            checkWriteWatchpoints(memoryPosition, length, cellValues);
+            notifyMemoryRangeChanged(memoryPosition, memoryPosition + length);
+        } else {
+            for (int i = memoryPosition; i < memoryPosition + length; i++) {
+                writeByte(i, cell);
+            }
+        }
+    }
+
+    @Override
+    public void move(int fromPosition, int toPosition, int length) {
+        checkRange(fromPosition, length);
+        checkRange(toPosition, length);
+        if (directRead && directWrite) {
+            // overlapping bulk transfers between views of the same buffer are not well defined
+            byte[] tmp = new byte[length];
+            view(fromPosition, length).get(tmp);
+            checkReadWatchpoints(fromPosition, length, cellValues);
+            view(toPosition, length).put(tmp);
+            checkWriteWatchpoints(toPosition, length, cellValues);
+            notifyMemoryRangeChanged(toPosition, toPosition + length);
+        } else {
+            ByteMemoryContext.super.move(fromPosition, toPosition, length);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (!directWrite) {
+            fill(0, memory.capacity(), (byte) 0);
+            return;
+        }
+        ByteBuffer target = view(0, memory.capacity());
+
+        byte[] zeroes = new byte[Math.min(CLEAR_CHUNK_SIZE, target.capacity())];
+        while (target.hasRemaining()) {
+            target.put(zeroes, 0, Math.min(zeroes.length, target.remaining()));
+        }
+        notifyMemoryRangeChanged(0, memory.capacity());
+    }
+
+    @Override
+    public int getSize() {
+        return memory.capacity();
+    }
+
+    /**
+     * Creates independent view of a range of the memory, with its own position and limit.
+     *
+     * @param memoryPosition memory position (address) of the first cell
+     * @param length number of cells
+     * @return buffer positioned at the first cell, with limit after the last cell
+     */
+    private ByteBuffer view(int memoryPosition, int length) {
+        ByteBuffer view = memory.duplicate();
+        // Cast to Buffer keeps the compiled code runnable on Java 8, where ByteBuffer does not override these methods
+        ((Buffer) view).limit(memoryPosition + length);
+        ((Buffer) view).position(memoryPosition);
+        return view;
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.memory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free set of dirty memory positions, used for coalescing memory change notifications.
+ *
+ * Writers mark positions or ranges as dirty; a single reader periodically drains the set as a sequence of continuous
+ * ranges. Marking a position which is already dirty costs just one volatile read.
+ *
+ * Positions outside the bitmap (e.g. after the memory has grown) mark the whole memory as dirty.
+ */
+final class DirtyBitmap {
+    private final AtomicLongArray words;
+    private final int size;
+    private volatile boolean everythingDirty;
+
+    /**
+     * Receiver of drained ranges.
+     */
+    interface RangeConsumer {
+        void accept(int fromPosition, int toPosition);
+    }
+
+    DirtyBitmap(int size) {
+        this.size = Math.max(0, size);
+        this.words = new AtomicLongArray((this.size + 63) >>> 6);
+    }
+
+    void mark(int position) {
+        if (position < 0 || position >= size) {
+            everythingDirty = true;
+            return;
+        }
+        int index = position >>> 6;
+        long mask = 1L << position;
+        long word = words.get(index);
+        while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+            word = words.get(index);
+        }
+    }
+
+    void mark(int fromPosition, int toPosition) {
+        if (fromPosition >= toPosition) {
+            return;
+        }
+        if (fromPosition < 0 || toPosition > size) {
+            everythingDirty = true;
+            return;
+        }
+        int lastPosition = toPosition - 1;
+        for (int index = fromPosition >>> 6; index <= lastPosition >>> 6; index++) {
+            long mask = -1L;
+            if (index == fromPosition >>> 6) {
+                mask &= -1L << fromPosition;
+            }
+            if (index == lastPosition >>> 6) {
+                mask &= -1L >>> (63 - (lastPosition & 63));
+            }
+            long word = words.get(index);
+            while ((word & mask) != mask && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+    }
+
+    /**
+     * Removes all dirty positions and passes them to the consumer as maximal continuous ranges, in ascending order.
+     *
+     * @param consumer the consumer
+     * @param memorySize current memory size, used if the whole memory is dirty
+     */
+    void drain(RangeConsumer consumer, int memorySize) {
+        if (everythingDirty) {
+            everythingDirty = false;
+            for (int index = 0; index < words.length(); index++) {
+                words.set(index, 0);
+            }
+            if (memorySize > 0) {
+                consumer.accept(0, memorySize);
+            }
+            return;
+        }
+
+        int rangeStart = -1;
+        for (int index = 0; index < words.length(); index++) {
+            long word = (words.get(index) == 0) ? 0 : words.getAndSet(index, 0);
+            int base = index << 6;
+            int bit = 0;
+            while (bit < 64) {
+                if (rangeStart < 0) {
+                    long remaining = word >>> bit;
+                    if (remaining == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(remaining);
+                    rangeStart = base + bit;
+                } else {
+                    long remaining = ~word >>> bit;
+                    if (remaining == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(remaining);
+                    consumer.accept(rangeStart, base + bit);
+                    rangeStart = -1;
+                }
+            }
+        }
+        if (rangeStart >= 0) {
+            consumer.accept(rangeStart, Math.min(size, words.length() << 6));
+        }
+    }
+}
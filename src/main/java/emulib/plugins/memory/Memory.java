@@ -40,6 +40,20 @@ public interface Memory extends Plugin {
          */
         void memoryChanged (int memoryPosition);
 
+        /**
+         * Invoked when a continuous range of memory cells is changed at once (e.g. by a bulk write).
+         *
+         * The default implementation calls <code>memoryChanged</code> for each cell in the range.
+         *
+         * @param fromPosition memory position (address) of the first changed cell
+         * @param toPosition memory position (address) after the last changed cell (exclusive)
+         */
+        default void memoryRangeChanged(int fromPosition, int toPosition) {
+            for (int i = fromPosition; i < toPosition; i++) {
+                memoryChanged(i);
+            }
+        }
+
         /**
          * Some memories can be dynamic-sized. This method is invoked when memory size has changed.
          */
@@ -47,6 +61,23 @@ public interface Memory extends Plugin {
 
     }
 
+    /**
+     * The listener interface for receiving watchpoint hits.
+     *
+     * The listener is called in the thread which has accessed the memory, usually the CPU thread. It should just
+     * record the hit and return quickly.
+     */
+    interface WatchpointListener {
+        /**
+         * Invoked when a memory access triggers a watchpoint.
+         *
+         * @param watchpoint the triggered watchpoint
+         * @param memoryPosition memory position (address) of accessed cell
+         * @param value value which was read or written
+         */
+        void watchpointHit(Watchpoint watchpoint, int memoryPosition, int value);
+    }
+
     /**
      * Sets program start address.
      *
@@ -22,6 +22,7 @@ package emulib.plugins.memory;
 import emulib.annotations.ContextType;
 import emulib.plugins.Context;
 import emulib.plugins.memory.Memory.MemoryListener;
+import emulib.plugins.memory.Memory.WatchpointListener;
 
 /**
  * Interface provides a context for operating memory. It supports basic methods,
@@ -87,6 +88,77 @@ public interface MemoryContext<CellType> extends Context {
      */
     void writeWord (int memoryPosition, CellType[] value);
 
+    /**
+     * Reads a block of adjacent cells from a memory into an array.
+     *
+     * The default implementation reads the cells one by one. Implementations should override it if they can do it
+     * faster.
+     *
+     * @param memoryPosition memory position (address) of the first read cell
+     * @param destination the array where the cells will be stored
+     * @param offset index in the array where the first cell will be stored
+     * @param length number of cells to read
+     */
+    default void readBlock(int memoryPosition, CellType[] destination, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            destination[offset + i] = read(memoryPosition + i);
+        }
+    }
+
+    /**
+     * Writes a block of adjacent cells from an array to a memory.
+     *
+     * The default implementation writes the cells one by one. Implementations should override it if they can do it
+     * faster, and notify memory listeners just once for the whole range.
+     *
+     * @param memoryPosition memory position (address) of the first written cell
+     * @param source the array with cells to be written
+     * @param offset index in the array of the first cell to be written
+     * @param length number of cells to write
+     */
+    default void writeBlock(int memoryPosition, CellType[] source, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            write(memoryPosition + i, source[offset + i]);
+        }
+    }
+
+    /**
+     * Fills a range of memory cells with the same value.
+     *
+     * The default implementation writes the cells one by one.
+     *
+     * @param memoryPosition memory position (address) of the first cell
+     * @param length number of cells to fill
+     * @param value the value
+     */
+    default void fill(int memoryPosition, int length, CellType value) {
+        for (int i = 0; i < length; i++) {
+            write(memoryPosition + i, value);
+        }
+    }
+
+    /**
+     * Moves (copies) a range of memory cells to another location in the memory.
+     *
+     * The ranges can overlap; the result is as if the cells were copied to a temporary array first.
+     * The default implementation moves the cells one by one.
+     *
+     * @param fromPosition memory position (address) of the first source cell
+     * @param toPosition memory position (address) of the first destination cell
+     * @param length number of cells to move
+     */
+    default void move(int fromPosition, int toPosition, int length) {
+        if (toPosition > fromPosition) {
+            for (int i = length - 1; i >= 0; i--) {
+                write(toPosition + i, read(fromPosition + i));
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                write(toPosition + i, read(fromPosition + i));
+            }
+        }
+    }
+
     /**
      * Get the type of memory cells.
      * @return Java data type of memory cells
@@ -116,6 +188,61 @@ public interface MemoryContext<CellType> extends Context {
      */
     void removeMemoryListener (MemoryListener listener);
 
+    /**
+     * Determine whether watchpoints are supported by this memory.
+     *
+     * @return true if watchpoints are supported, false otherwise
+     */
+    default boolean isWatchpointSupported() {
+        return false;
+    }
+
+    /**
+     * Set a data watchpoint.
+     *
+     * Does nothing if watchpoints are not supported.
+     *
+     * @param watchpoint the watchpoint
+     * @see MemoryContext#isWatchpointSupported
+     */
+    default void setWatchpoint(Watchpoint watchpoint) {
+
+    }
+
+    /**
+     * Unset a data watchpoint.
+     *
+     * Does nothing if watchpoints are not supported.
+     *
+     * @param watchpoint the watchpoint previously set
+     * @see MemoryContext#isWatchpointSupported
+     */
+    default void unsetWatchpoint(Watchpoint watchpoint) {
+
+    }
+
+    /**
+     * Adds the specified listener to receive watchpoint hits.
+     *
+     * Does nothing if watchpoints are not supported.
+     *
+     * @param listener the watchpoint listener
+     */
+    default void addWatchpointListener(WatchpointListener listener) {
+
+    }
+
+    /**
+     * Removes the specified watchpoint listener.
+     *
+     * Does nothing if watchpoints are not supported.
+     *
+     * @param listener the watchpoint listener to be removed
+     */
+    default void removeWatchpointListener(WatchpointListener listener) {
+
+    }
+
     /**
      * Get memory size.
      *
@@ -0,0 +1,148 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.memory;
+
+import emulib.annotations.ContextType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Memory context with cells of type <code>short</code>, accessible without boxing.
+ *
+ * The boxed methods inherited from <code>MemoryContext</code> are kept for compatibility with plug-ins which do not
+ * know about this interface, but CPUs and devices should prefer the primitive methods in hot paths.
+ */
+@ContextType
+public interface ShortMemoryContext extends MemoryContext<Short> {
+
+    /**
+     * Reads one cell from a memory.
+     *
+     * @param memoryPosition memory position (address) of the read cell
+     * @return read cell
+     */
+    short readShort(int memoryPosition);
+
+    /**
+     * Writes one cell to a memory.
+     *
+     * @param memoryPosition memory position (address) of the cell where data will be written
+     * @param value data to be written
+     */
+    void writeShort(int memoryPosition, short value);
+
+    /**
+     * Reads two adjacent cells from a memory into a caller-supplied buffer.
+     *
+     * The cells are zero-extended (taken as unsigned) and stored at indexes 0 and 1 of the buffer, respectively.
+     * No array is allocated.
+     *
+     * @param memoryPosition memory position (address) of the first cell
+     * @param buffer the output buffer, must have space for at least 2 items
+     */
+    void readWord(int memoryPosition, int[] buffer);
+
+    /**
+     * Writes two adjacent cells to a memory.
+     *
+     * Only the lower 16 bits of each value are written.
+     *
+     * @param memoryPosition memory position (address) of the first cell
+     * @param first value of the cell at <code>memoryPosition</code>
+     * @param second value of the cell at <code>memoryPosition + 1</code>
+     */
+    void writeWord(int memoryPosition, int first, int second);
+
+    /**
+     * Reads a block of adjacent cells from a memory into an array.
+     *
+     * @param memoryPosition memory position (address) of the first read cell
+     * @param destination the array where the cells will be stored
+     * @param offset index in the array where the first cell will be stored
+     * @param length number of cells to read
+     * @throws IndexOutOfBoundsException if the range is not within the memory or the array
+     */
+    void readBlock(int memoryPosition, short[] destination, int offset, int length);
+
+    /**
+     * Writes a block of adjacent cells from an array to a memory.
+     *
+     * Memory listeners are notified just once for the whole range.
+     *
+     * @param memoryPosition memory position (address) of the first written cell
+     * @param source the array with cells to be written
+     * @param offset index in the array of the first cell to be written
+     * @param length number of cells to write
+     * @throws IndexOutOfBoundsException if the range is not within the memory or the array
+     */
+    void writeBlock(int memoryPosition, short[] source, int offset, int length);
+
+    /**
+     * Reads a block of adjacent cells from a memory into a byte array.
+     *
+     * Only the lower 8 bits of each cell are stored.
+     *
+     * @param memoryPosition memory position (address) of the first read cell
+     * @param destination the array where the cells will be stored
+     * @param offset index in the array where the first cell will be stored
+     * @param length number of cells to read
+     * @throws IndexOutOfBoundsException if the range is not within the memory or the array
+     */
+    void readBlock(int memoryPosition, byte[] destination, int offset, int length);
+
+    /**
+     * Writes a block of bytes to a memory, one byte per cell.
+     *
+     * The bytes are zero-extended (taken as unsigned). Memory listeners are notified just once for the whole range.
+     * This is the preferred way of loading programs into the memory.
+     *
+     * @param memoryPosition memory position (address) of the first written cell
+     * @param source the array with bytes to be written
+     * @param offset index in the array of the first byte to be written
+     * @param length number of bytes to write
+     * @throws IndexOutOfBoundsException if the range is not within the memory or the array
+     */
+    void writeBlock(int memoryPosition, byte[] source, int offset, int length);
+
+    /**
+     * Reads a block of adjacent cells from a memory into a buffer, one cell per byte.
+     *
+     * Only the lower 8 bits of each cell are stored. Number of read cells is given by remaining bytes in the buffer.
+     * The buffer position is advanced.
+     *
+     * @param memoryPosition memory position (address) of the first read cell
+     * @param destination the buffer where the cells will be stored
+     * @throws IndexOutOfBoundsException if the range is not within the memory
+     */
+    void readBlock(int memoryPosition, ByteBuffer destination);
+
+    /**
+     * Writes remaining bytes of a buffer into a memory, one byte per cell.
+     *
+     * The bytes are zero-extended (taken as unsigned). The buffer position is advanced. Memory listeners are notified
+     * just once for the whole range.
+     *
+     * @param memoryPosition memory position (address) of the first written cell
+     * @param source the buffer with bytes to be written
+     * @throws IndexOutOfBoundsException if the range is not within the memory
+     */
+    void writeBlock(int memoryPosition, ByteBuffer source);
+
+}
@@ -0,0 +1,151 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.memory;
+
+import net.jcip.annotations.Immutable;
+
+import java.util.Objects;
+
+/**
+ * Data watchpoint - a condition on memory access which should stop the emulation.
+ *
+ * Watchpoint covers a range of memory positions and a kind of access (read, write or both). Optionally, it can match
+ * only accesses of a specific value. Values are compared as <code>int</code>; memory contexts with byte or short cells
+ * zero-extend them.
+ */
+@Immutable
+public final class Watchpoint {
+
+    /**
+     * Kind of memory access which triggers the watchpoint.
+     */
+    public enum Type {
+        /**
+         * Triggered when a cell is read.
+         */
+        READ,
+        /**
+         * Triggered when a cell is written.
+         */
+        WRITE,
+        /**
+         * Triggered when a cell is read or written.
+         */
+        ACCESS
+    }
+
+    private final int fromPosition;
+    private final int toPosition;
+    private final Type type;
+    private final boolean matchValue;
+    private final int value;
+
+    /**
+     * Creates a watchpoint triggered by any value.
+     *
+     * @param fromPosition memory position (address) of the first watched cell
+     * @param toPosition memory position (address) after the last watched cell (exclusive)
+     * @param type kind of memory access
+     * @throws IllegalArgumentException if the range is empty
+     * @throws NullPointerException if type is null
+     */
+    public Watchpoint(int fromPosition, int toPosition, Type type) {
+        this(fromPosition, toPosition, type, false, 0);
+    }
+
+    /**
+     * Creates a watchpoint triggered only by given value.
+     *
+     * @param fromPosition memory position (address) of the first watched cell
+     * @param toPosition memory position (address) after the last watched cell (exclusive)
+     * @param type kind of memory access
+     * @param value the value which has to be read or written
+     * @throws IllegalArgumentException if the range is empty
+     * @throws NullPointerException if type is null
+     */
+    public Watchpoint(int fromPosition, int toPosition, Type type, int value) {
+        this(fromPosition, toPosition, type, true, value);
+    }
+
+    private Watchpoint(int fromPosition, int toPosition, Type type, boolean matchValue, int value) {
+        if (fromPosition >= toPosition) {
+            throw new IllegalArgumentException("Watched range is empty");
+        }
+        this.fromPosition = fromPosition;
+        this.toPosition = toPosition;
+        this.type = Objects.requireNonNull(type);
+        this.matchValue = matchValue;
+        this.value = value;
+    }
+
+    public int getFromPosition() {
+        return fromPosition;
+    }
+
+    public int getToPosition() {
+        return toPosition;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Determine if the watchpoint is triggered only by a specific value.
+     *
+     * @return true if the watchpoint matches a value, false if it is triggered by any value
+     */
+    public boolean isValueMatched() {
+        return matchValue;
+    }
+
+    /**
+     * Get the value which triggers the watchpoint.
+     *
+     * @return the value; meaningful only if <code>isValueMatched()</code> returns true
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Determine if a memory access triggers this watchpoint.
+     *
+     * @param memoryPosition memory position (address) of accessed cell
+     * @param cellValue value which was read or written
+     * @param write true if the cell was written, false if it was read
+     * @return true if the watchpoint is triggered, false otherwise
+     */
+    public boolean matches(int memoryPosition, int cellValue, boolean write) {
+        if (memoryPosition < fromPosition || memoryPosition >= toPosition) {
+            return false;
+        }
+        if (type != Type.ACCESS && (type == Type.WRITE) != write) {
+            return false;
+        }
+        return !matchValue || cellValue == value;
+    }
+
+    @Override
+    public String toString() {
+        return "Watchpoint{" + type + " [" + fromPosition + ", " + toPosition + ")"
+            + (matchValue ? " == " + value : "") + "}";
+    }
+}
@@ -31,6 +31,8 @@ import emulib.runtime.exceptions.ContextNotFoundException;
 import emulib.runtime.exceptions.InvalidContextException;
 import emulib.runtime.exceptions.InvalidPasswordException;
 import emulib.runtime.interfaces.PluginConnections;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,9 +47,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class manages all plug-in contexts.
@@ -55,31 +59,219 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * Plug-ins should register their contexts manually. Other plug-ins that have permissions, can gather contexts by
  * querying this pool.
  *
- * Context pool is not thread safe.
+ * Context pool is thread safe. Lookups of contexts do not lock - they read an immutable snapshot of registered
+ * contexts, which is replaced on each (un)registration.
  *
  */
+@ThreadSafe
 public class ContextPool {
     private final static Logger LOGGER = LoggerFactory.getLogger(ContextPool.class);
 
     /**
-     * The following map stores all registered contexts.
-     *
-     * Contexts implementing the same context interfaces are stored to the end of the list under the same map key
+     * Hashes of context interfaces are computed by reflection, so they are computed once per class.
      */
-    private final Map<String,List<Context>> allContexts = new HashMap<>();
+    private final static ClassValue<String> CONTEXT_HASHES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return computeHashInternal(type);
+        }
+    };
 
     /**
-     * This map represents owners of registered contexts (these are keys).
-     * It is used for checking the plug-in permissions.
+     * Snapshot of registered contexts. It is never modified, only replaced while holding registeringLock.
      */
-    private final Map<Long,List<Context>> contextOwners = new HashMap<>();
+    private volatile Registry registry = Registry.EMPTY;
 
     /**
      * Virtual computer loaded by emuStudio
      */
     private final AtomicReference<PluginConnections> computer = new AtomicReference<>();
 
-    private final ReadWriteLock registeringLock = new ReentrantReadWriteLock();
+    private final Lock registeringLock = new ReentrantLock();
+
+    /**
+     * Cached permission decisions. It is valid only for the registry snapshot and computer it was created for.
+     */
+    private volatile PermissionCache permissionCache;
+
+    /**
+     * Permission decisions for given registry snapshot and computer. Decisions are keyed by context owner and then by
+     * requesting plug-in ID.
+     */
+    @ThreadSafe
+    private static final class PermissionCache {
+        private final Registry registry;
+        private final PluginConnections computer;
+        private final ConcurrentMap<Long, OwnerDecisions> decisions = new ConcurrentHashMap<>();
+
+        private PermissionCache(Registry registry, PluginConnections computer) {
+            this.registry = registry;
+            this.computer = computer;
+        }
+
+        private boolean isValidFor(Registry registry, PluginConnections computer) {
+            return this.registry == registry && this.computer == computer;
+        }
+
+        private boolean isConnected(long pluginID, Long contextOwner) {
+            OwnerDecisions ownerDecisions = decisions.getOrDefault(contextOwner, OwnerDecisions.NONE);
+            if (ownerDecisions.isAllowed(pluginID)) {
+                return true;
+            }
+            if (ownerDecisions.isDenied(pluginID)) {
+                return false;
+            }
+            LOGGER.debug(
+                    "Checking permission of plugin with ID={} to context owner with ID={}", pluginID, contextOwner
+            );
+            boolean decision = computer.isConnected(pluginID, contextOwner);
+            decisions.compute(
+                    contextOwner, (owner, old) -> ((old == null) ? OwnerDecisions.NONE : old).with(pluginID, decision)
+            );
+            return decision;
+        }
+    }
+
+    /**
+     * Permission decisions of plug-ins requesting contexts of one owner.
+     *
+     * Plug-in IDs are kept in sorted primitive arrays, so a lookup does not box the ID.
+     */
+    @Immutable
+    private static final class OwnerDecisions {
+        private final static OwnerDecisions NONE = new OwnerDecisions(new long[0], new long[0]);
+
+        private final long[] allowed;
+        private final long[] denied;
+
+        private OwnerDecisions(long[] allowed, long[] denied) {
+            this.allowed = allowed;
+            this.denied = denied;
+        }
+
+        private boolean isAllowed(long pluginID) {
+            return Arrays.binarySearch(allowed, pluginID) >= 0;
+        }
+
+        private boolean isDenied(long pluginID) {
+            return Arrays.binarySearch(denied, pluginID) >= 0;
+        }
+
+        private OwnerDecisions with(long pluginID, boolean decision) {
+            if (isAllowed(pluginID) || isDenied(pluginID)) {
+                return this;
+            }
+            return decision
+                    ? new OwnerDecisions(inserted(allowed, pluginID), denied)
+                    : new OwnerDecisions(allowed, inserted(denied, pluginID));
+        }
+
+        private static long[] inserted(long[] sortedIDs, long pluginID) {
+            int index = -(Arrays.binarySearch(sortedIDs, pluginID) + 1);
+            long[] result = new long[sortedIDs.length + 1];
+            System.arraycopy(sortedIDs, 0, result, 0, index);
+            result[index] = pluginID;
+            System.arraycopy(sortedIDs, index, result, index + 1, sortedIDs.length - index);
+            return result;
+        }
+    }
+
+    @Immutable
+    private static final class Registry {
+        private final static Registry EMPTY = new Registry(
+                Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap()
+        );
+
+        /**
+         * Registered contexts by hashes of context interfaces.
+         *
+         * Contexts implementing the same context interfaces are stored to the end of the list under the same map key
+         */
+        private final Map<String, List<Context>> contextsByHash;
+
+        /**
+         * This map represents owners of registered contexts (these are keys).
+         */
+        private final Map<Long, List<Context>> contextsByOwner;
+
+        /**
+         * Reverse index of contextsByOwner. It is used for checking the plug-in permissions.
+         */
+        private final Map<Context, Long> ownersByContext;
+
+        private Registry(Map<String, List<Context>> contextsByHash, Map<Long, List<Context>> contextsByOwner,
+                         Map<Context, Long> ownersByContext) {
+            this.contextsByHash = contextsByHash;
+            this.contextsByOwner = contextsByOwner;
+            this.ownersByContext = ownersByContext;
+        }
+
+        private List<Context> getContexts(String contextHash) {
+            return contextsByHash.getOrDefault(contextHash, Collections.emptyList());
+        }
+
+        private Long findOwner(Context context) {
+            return ownersByContext.get(context);
+        }
+
+        private Registry register(long pluginID, String contextHash, Context context) {
+            Map<String, List<Context>> newContextsByHash = new HashMap<>(contextsByHash);
+            newContextsByHash.put(contextHash, appended(newContextsByHash.get(contextHash), context));
+
+            Map<Long, List<Context>> newContextsByOwner = new HashMap<>(contextsByOwner);
+            newContextsByOwner.put(pluginID, appended(newContextsByOwner.get(pluginID), context));
+
+            Map<Context, Long> newOwnersByContext = new HashMap<>(ownersByContext);
+            newOwnersByContext.putIfAbsent(context, pluginID);
+
+            return new Registry(newContextsByHash, newContextsByOwner, newOwnersByContext);
+        }
+
+        private Registry unregister(long pluginID, String contextHash) {
+            List<Context> ownedContexts = new ArrayList<>(contextsByOwner.get(pluginID));
+            List<Context> hashContexts = new ArrayList<>(contextsByHash.get(contextHash));
+            List<Context> removedContexts = new ArrayList<>();
+
+            Iterator<Context> contextIterator = hashContexts.iterator();
+            while (contextIterator.hasNext()) {
+                Context context = contextIterator.next();
+                if (ownedContexts.contains(context)) {
+                    ownedContexts.remove(context);
+                    contextIterator.remove();
+                    removedContexts.add(context);
+                }
+            }
+
+            Map<String, List<Context>> newContextsByHash = new HashMap<>(contextsByHash);
+            if (hashContexts.isEmpty()) {
+                newContextsByHash.remove(contextHash);
+            } else {
+                newContextsByHash.put(contextHash, Collections.unmodifiableList(hashContexts));
+            }
+            Map<Long, List<Context>> newContextsByOwner = new HashMap<>(contextsByOwner);
+            newContextsByOwner.put(pluginID, Collections.unmodifiableList(ownedContexts));
+
+            Map<Context, Long> newOwnersByContext = new HashMap<>(ownersByContext);
+            for (Context context : removedContexts) {
+                if (!ownedContexts.contains(context) && newOwnersByContext.remove(context, pluginID)) {
+                    // the same context might be registered also by other plug-in
+                    for (Map.Entry<Long, List<Context>> owner : newContextsByOwner.entrySet()) {
+                        if (owner.getValue().contains(context)) {
+                            newOwnersByContext.put(context, owner.getKey());
+                            break;
+                        }
+                    }
+                }
+            }
+            return new Registry(newContextsByHash, newContextsByOwner, newOwnersByContext);
+        }
+
+        private static List<Context> appended(List<Context> contexts, Context context) {
+            List<Context> result = (contexts == null) ? new ArrayList<>() : new ArrayList<>(contexts);
+            result.add(context);
+            return Collections.unmodifiableList(result);
+        }
+    }
 
     /**
      * This method registers plug-in's context interface.
@@ -109,32 +301,18 @@ public class ContextPool {
            throw new InvalidContextException("Context does not implement context interface");
         }
 
-        registeringLock.writeLock().lock();
+        registeringLock.lock();
         try {
             // check if the context is already registered
-            List<Context> contextsByHash = allContexts.get(contextHash);
-            if (contextsByHash != null) {
-                // Test if the context instance is already there
-                if (contextsByHash.contains(context)) {
-                    throw new AlreadyRegisteredException();
-                }
+            if (registry.getContexts(contextHash).contains(context)) {
+                throw new AlreadyRegisteredException();
             }
 
             // finally register the context
-            List<Context> contextsByOwner = contextOwners.get(pluginID);
-            if (contextsByOwner == null) {
-                contextsByOwner = new ArrayList<>();
-                contextOwners.put(pluginID, contextsByOwner);
-            }
-            contextsByOwner.add(context);
-
-            if (contextsByHash == null) {
-                contextsByHash = new ArrayList<>();
-                allContexts.put(contextHash, contextsByHash);
-            }
-            contextsByHash.add(context);
+            registry = registry.register(pluginID, contextHash, context);
+            permissionCache = null;
         } finally {
-            registeringLock.writeLock().unlock();
+            registeringLock.unlock();
         }
     }
 
@@ -172,33 +350,18 @@ public class ContextPool {
         trustedContext(contextInterface);
         String contextHash = computeHash(contextInterface);
 
-        registeringLock.writeLock().lock();
+        registeringLock.lock();
         try {
-            List<Context> contextsByOwner = contextOwners.get(pluginID);
-            if (contextsByOwner == null) {
+            Registry tmpRegistry = registry;
+            if (!tmpRegistry.contextsByOwner.containsKey(pluginID)
+                    || !tmpRegistry.contextsByHash.containsKey(contextHash)) {
                 return false;
             }
-
-            List<Context> contextsByHash = allContexts.get(contextHash);
-
-            if (contextsByHash == null) {
-                return false;
-            }
-
-            Iterator<Context> contextIterator = contextsByHash.iterator();
-            while (contextIterator.hasNext()) {
-                Context context = contextIterator.next();
-                if (contextsByOwner.contains(context)) {
-                    contextsByOwner.remove(context);
-                    contextIterator.remove();
-                }
-            }
-            if (contextsByHash.isEmpty()) {
-                allContexts.remove(contextHash);
-            }
+            registry = tmpRegistry.unregister(pluginID, contextHash);
+            permissionCache = null;
             return true;
         } finally {
-            registeringLock.writeLock().unlock();
+            registeringLock.unlock();
         }
     }
 
@@ -215,6 +378,7 @@ public class ContextPool {
     public boolean setComputer(String password, PluginConnections computer) throws InvalidPasswordException {
         API.testPassword(password);
         this.computer.set(computer);
+        permissionCache = null;
         return true;
     }
 
@@ -227,12 +391,12 @@ public class ContextPool {
     public void clearAll(String password) throws InvalidPasswordException {
         API.testPassword(password);
         this.computer.set(null);
-        registeringLock.writeLock().lock();
+        registeringLock.lock();
         try {
-            allContexts.clear();
-            contextOwners.clear();
+            registry = Registry.EMPTY;
+            permissionCache = null;
         } finally {
-            registeringLock.writeLock().unlock();
+            registeringLock.unlock();
         }
     }
 
@@ -254,36 +418,33 @@ public class ContextPool {
     public <T extends Context> T getContext(long pluginID, Class<T> contextInterface,
             int index) throws InvalidContextException, ContextNotFoundException {
         trustedContext(contextInterface);
-        registeringLock.readLock().lock();
-        try {
-            // find the requested context
-            List<Context> contextsByHash = allContexts.get(computeHash(contextInterface));
-            if ((contextsByHash == null) || contextsByHash.isEmpty()) {
-                throw new ContextNotFoundException("Context "
-                        + contextInterface
-                        + " is not found in registered contexts list.");
-            }
-            LOGGER.debug("Matching context " + contextInterface + " from " + contextsByHash.size() + " options...");
-
-            // find context based on contextID
-            int j = 0;
-            for (Context context : contextsByHash) {
-                if (checkPermission(pluginID, context)) {
-                    if ((index == -1) || (j == index)) {
-                        LOGGER.debug("Found context with index " + j);
-                        return (T)context;
-                    }
+        Registry tmpRegistry = registry;
+
+        // find the requested context
+        List<Context> contextsByHash = tmpRegistry.getContexts(computeHash(contextInterface));
+        if (contextsByHash.isEmpty()) {
+            throw new ContextNotFoundException("Context "
+                    + contextInterface
+                    + " is not found in registered contexts list.");
+        }
+        LOGGER.debug("Matching context {} from {} options...", contextInterface, contextsByHash.size());
+
+        // find context based on contextID
+        int j = 0;
+        for (Context context : contextsByHash) {
+            if (checkPermission(pluginID, context, tmpRegistry)) {
+                if ((index == -1) || (j == index)) {
+                    LOGGER.debug("Found context with index {}", j);
+                    return (T)context;
                 }
-                j++;
             }
-            throw new ContextNotFoundException("The plugin with ID "
-                    + pluginID
-                    + " has no permission to access context "
-                    + contextInterface
-            );
-        } finally {
-            registeringLock.readLock().unlock();
+            j++;
         }
+        throw new ContextNotFoundException("The plugin with ID "
+                + pluginID
+                + " has no permission to access context "
+                + contextInterface
+        );
     }
 
     /**
@@ -486,31 +647,18 @@ public class ContextPool {
         return getContext(pluginID, contextInterface, index);
     }
 
-    private Long findContextOwner(Context context) {
-        Long contextOwner = null;
-        for (Map.Entry<Long, List<Context>> owner : contextOwners.entrySet()) {
-            List<Context> contextsByOwner = owner.getValue();
-            assert (contextsByOwner != null);
-            if (contextsByOwner.contains(context)) {
-                contextOwner = owner.getKey();
-                break;
-            }
-        }
-        return contextOwner;
-    }
-
     /**
      * This method check if the plug-in has the permission to access specified context.
      *
      * The permission is granted if and only if the context is connected to the plug-in inside virtual computer.
-     *
-     * Note: it can be called only when registeringLock is held.
+     * Decisions are cached until the computer or registered contexts change.
      *
      * @param pluginID plug-in to check
      * @param context requested context
+     * @param registry snapshot of registered contexts containing the context
      * @return true if the plug-in is approved to access the context; false otherwise
      */
-    private boolean checkPermission(long pluginID, Context context) {
+    private boolean checkPermission(long pluginID, Context context, Registry registry) {
         // at first check if the pluginID == hash code of emuStudio password
         if (API.testPassword(pluginID)) {
             return true;
@@ -519,16 +667,22 @@ public class ContextPool {
         // check if it is possible to check the plug-in for the permission
         PluginConnections tmpComputer = computer.get();
         if (tmpComputer == null) {
-            LOGGER.debug("Plugin with ID=" + pluginID + " cannot have access to context " + context + ": Computer is not set.");
+            LOGGER.debug("Plugin with ID={} cannot have access to context {}: Computer is not set.", pluginID, context);
             return false;
         }
         // first it must be found the contextsByOwner of the ContextPool.
-        Long contextOwner = findContextOwner(context);
+        Long contextOwner = registry.findOwner(context);
+        if (contextOwner == null) {
+            return false;
+        }
 
         // THIS is the permission check
-        LOGGER.debug("Checking permission of plugin with ID=" + pluginID + " to context owner with ID=" + contextOwner
-                + " (" + context + ")");
-        return tmpComputer.isConnected(pluginID, contextOwner);
+        PermissionCache tmpCache = permissionCache;
+        if (tmpCache == null || !tmpCache.isValidFor(registry, tmpComputer)) {
+            tmpCache = new PermissionCache(registry, tmpComputer);
+            permissionCache = tmpCache;
+        }
+        return tmpCache.isConnected(pluginID, contextOwner);
     }
 
     /**
@@ -536,12 +690,16 @@ public class ContextPool {
      * The name of the interface is not important, only method names and their
      * signatures.
      *
-     * The final processing uses SHA-1 method.
+     * The final processing uses SHA-1 method. The hash is computed only once per class.
      *
      * @param contextInterface interface to compute hash of
      * @return SHA-1 hash string of the interface
      */
     public static String computeHash(Class<? extends Context> contextInterface) {
+        return CONTEXT_HASHES.get(contextInterface);
+    }
+
+    private static String computeHashInternal(Class<?> contextInterface) {
         List<Method> contextMethods = Arrays.asList(contextInterface.getMethods());
         Collections.sort(contextMethods, (m1, m2) -> m1.getName().compareTo(m2.getName()));
 
@@ -556,7 +714,7 @@ public class ContextPool {
         try {
             return SHA1(hash);
         } catch(NoSuchAlgorithmException | UnsupportedEncodingException e) {
-            LOGGER.error("Could not compute hash for interface " + contextInterface, e);
+            LOGGER.error("Could not compute hash for interface {}", contextInterface, e);
             return null;
         }
     }
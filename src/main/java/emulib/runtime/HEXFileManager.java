@@ -20,27 +20,35 @@
 package emulib.runtime;
 
 import emulib.plugins.memory.MemoryContext;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This class generates and loads 16 bit Intel hex files.
+ *
+ * The program is kept in a sparse binary program image. The code table (address to hexadecimal string of one byte)
+ * is available for compatibility, as a view of the image.
  */
 public class HEXFileManager {
-    private final Map<Integer, String> program;
+    private final static char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final ProgramImage program;
+    private final Map<Integer, String> table = new CodeTable();
     private int nextAddress;
 
     public HEXFileManager() {
-        this.program = new HashMap<>();
+        this.program = new ProgramImage();
         nextAddress = 0;
     }
 
@@ -67,16 +75,23 @@ public class HEXFileManager {
         if (code.isEmpty()) {
             return nextAddress;
         }
-        int addr = nextAddress;
-        for (int i = 0; i < code.length()-1; i += 2) {
-            String tmp = code.substring(i, i + 2);
-            program.put(addr, tmp);
-            addr++;
+        byte[] bytes = new byte[code.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((hexDigit(code.charAt(2 * i)) << 4) | hexDigit(code.charAt(2 * i + 1)));
         }
-        nextAddress += (code.length() / 2);
+        program.put(nextAddress, bytes, 0, bytes.length);
+        nextAddress += bytes.length;
         return nextAddress;
     }
 
+    private static int hexDigit(char c) {
+        int digit = Character.digit(c, 16);
+        if (digit == -1) {
+            throw new NumberFormatException("Invalid hexadecimal digit: " + c);
+        }
+        return digit;
+    }
+
     /**
      * Set the next address where the next value will be assigned.
      *
@@ -86,22 +101,6 @@ public class HEXFileManager {
         nextAddress = address;
     }
 
-    private String checksum(String lin) {
-        int sum = 0, chsum;
-        for (int i = 0; i < lin.length() - 1; i += 2) {
-            sum += Integer.parseInt(lin.substring(i, i + 2), 16);
-        }
-        sum %= 0x100;
-        // :
-        // 10 00 08 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
-        // 16 0  8  0  0  0  0  0  0  0  0  0  0  0  0  0  0  0  0  0
-        // 16+8 = 24
-        // 0x100 -24 +1 = 256 - 24 +1 = 232 +1 = 0xe8 + 1 = 0xe9
-        // 0xe9 je zevraj zle, ma byt 0xe8
-        chsum = 0x100 - sum; //+1;
-        return String.format("%1$02X", chsum);
-    }
-
     /**
      * Keys of the HashMap have to represent adresses and values have to
      * represent compiled code. Method copies all elements from param HashMap to
@@ -126,60 +125,28 @@ public class HEXFileManager {
     /**
      * Get the Map representing the program hex code.
      *
-     * @return Map representing the program hex code
+     * The map is a view of the program image. Putting a value (hexadecimal string of one byte) writes it into
+     * the program; removing values is not supported.
+     *
+     * @return Map of addresses to hexadecimal strings of bytes
+     * @deprecated use {@link #getProgramImage()}
      */
+    @Deprecated
     public Map<Integer, String> getTable() {
-        return this.program;
+        return table;
     }
 
-    // generate hex file
-    private String generateHEX() {
-        String lines = "";       // all lines
-        String lineAddress = ""; // starting line address
-        String line = "";        // line data
-        int address = 0;         // current address in hex file
-        int bytesCount = 0;      // current count of data bytes on single line
-
-        List<Integer> adrs = new ArrayList<>(program.keySet());
-        Collections.sort(adrs);
-
-        // for all code elements (they won't be separated)
-        for (Integer adr : adrs) {
-            // is line very beginning ?
-            if (lineAddress.isEmpty()) {
-                address = adr;
-                lineAddress = String.format("%1$04X", address);
-            }
-
-            // if element's address do not equal suggested (natural computed)
-            // address or line is full
-            if ((address != adr) || (bytesCount >= 16)) {
-                String lin = String.format("%1$02X", bytesCount) + lineAddress
-                        + "00" + line;
-                lines += ":" + lin + checksum(lin) + "\n";
-                bytesCount = 0;
-                line = "";
-                address = adr;
-                lineAddress = String.format("%1$04X", address);
-            }
-
-            // code have to be stored as number of separate pairs of hex digits
-            String cd = program.get(adr);
-            line += cd;
-            address += (cd.length() / 2); // compute next address
-            bytesCount += (cd.length() / 2);
-        }
-        if (!line.isEmpty()) {
-            String lin = String.format("%1$02X", bytesCount) + lineAddress
-                    + "00" + line;
-            lines += ":" + lin + checksum(lin) + "\n";
-        }
-        lines += ":00000001FF\n";
-        return lines;
+    /**
+     * Get the program image.
+     *
+     * @return program image
+     */
+    public ProgramImage getProgramImage() {
+        return program;
     }
 
     /**
-     * Method is similar to generateHex() method in that way, that compiled
+     * Method is similar to generateFile() method in that way, that compiled
      * program is also transformed into chunk of bytes, but not to hex file but
      * to the operating memory.
      *
@@ -187,16 +154,7 @@ public class HEXFileManager {
      * @return true if the hex file was successfully loaded, false otherwise
      */
     public boolean loadIntoMemory(MemoryContext<Short> mem) {
-        List<Integer> adrs = new ArrayList<>(program.keySet());
-        Collections.sort(adrs);
-        adrs.forEach(adr -> {
-            String code = program.get(adr);
-            for (int i = 0, j = 0; i < code.length() - 1; i += 2, j++) {
-                String hexCode = code.substring(i, i + 2);
-                short num = (short) ((Short.decode("0x" + hexCode)) & 0xFF);
-                mem.write(adr + j, num);
-            }
-        });
+        program.writeTo(MemoryImageSink.writingShortCells(mem));
         return true;
     }
 
@@ -207,9 +165,10 @@ public class HEXFileManager {
      * @throws java.io.IOException if the HEX file could not be written
      */
     public void generateFile(String filename) throws java.io.IOException {
-        String fileData = generateHEX();
-        try (BufferedWriter out = new BufferedWriter(new FileWriter(filename))) {
-            out.write(fileData);
+        try (Writer out = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.US_ASCII)) {
+            IntelHexWriter writer = new IntelHexWriter(out);
+            writer.write(program);
+            writer.finish();
         }
     }
 
@@ -220,130 +179,142 @@ public class HEXFileManager {
      * @return program starting memory location
      */
     public int getProgramStart() {
-        List<Integer> adrs = new ArrayList<>(program.keySet());
-        Collections.sort(adrs);
-        if (!adrs.isEmpty()) {
-            return adrs.get(0);
-        } else {
-            return 0;
-        }
+        return program.isEmpty() ? 0 : program.getLowestAddress();
     }
 
-    private static char ignoreSpaces(Reader reader) throws IOException {
-        int input = reader.read();
-        while (input == ' ') {
-            input = reader.read();
-        }
-        return (char) input;
+    /**
+     * Parse Intel HEX file into the code table.
+     *
+     * Checksums of the records are validated. Three-digit checksums "100", written by older versions of this class,
+     * are accepted.
+     *
+     * @param file Intel HEX file
+     * @return HEX file manager containing the program
+     * @throws Exception if the file cannot be read or it is not valid Intel HEX file
+     */
+    public static HEXFileManager parseFromFile(File file) throws Exception {
+        return parseFromFile(file, true);
     }
 
-    private static char ignoreLine(Reader reader) throws IOException {
-        int input = reader.read();
-        while (input != -1 && input != '\n') {
-            input = reader.read();
-        }
-        return (char) input;
+    /**
+     * Parse Intel HEX file into the code table.
+     *
+     * The checksum validation can be turned off for files with invalid checksums.
+     *
+     * @param file Intel HEX file
+     * @param checksumValidated whether checksums of records should be validated
+     * @return HEX file manager containing the program
+     * @throws Exception if the file cannot be read or it is not valid Intel HEX file
+     */
+    public static HEXFileManager parseFromFile(File file, boolean checksumValidated) throws Exception {
+        HEXFileManager hexFile = new HEXFileManager();
+        new IntelHexParser(hexFile::putCode, checksumValidated).parse(file.toPath());
+        return hexFile;
     }
 
-    private static int readWord(Reader reader) throws Exception {
-        int input = reader.read();
-        if (input == -1) {
-            reader.close();
-            throw new Exception("Unexpected end of input");
-        }
-        char wordHigh = (char) input;
-        input = reader.read();
-        if (input == -1) {
-            reader.close();
-            throw new Exception("Unexpected end of input");
-        }
-        char wordLow = (char) input;
-        return Integer.decode(String.format("0x%c%c", wordHigh, wordLow));
+    private void putCode(int address, byte[] data, int offset, int length) {
+        program.put(address, data, offset, length);
+        nextAddress = address + length;
     }
 
-    private static int readDword(Reader reader) throws Exception {
-        int input = reader.read();
-        if (input == -1) {
-            reader.close();
-            throw new Exception("Unexpected end of input");
-        }
-        char dwordHigh = (char) input;
-        input = reader.read();
-        if (input == -1) {
-            reader.close();
-            throw new Exception("Unexpected end of input");
+    /**
+     * Load Intel HEX file directly into memory, without building the code table.
+     *
+     * Checksums of the records are validated, see {@link #parseFromFile(File)}.
+     *
+     * @param file Intel HEX file
+     * @param memory the memory
+     * @return program start address (the lowest address in the file)
+     * @throws Exception if the file cannot be read or it is not valid Intel HEX file
+     */
+    public static int loadIntoMemory(File file, MemoryContext<Short> memory) throws Exception {
+        return loadIntoMemory(file, memory, true);
+    }
+
+    /**
+     * Load Intel HEX file directly into memory, without building the code table.
+     *
+     * The checksum validation can be turned off for files with invalid checksums.
+     *
+     * @param file Intel HEX file
+     * @param memory the memory
+     * @param checksumValidated whether checksums of records should be validated
+     * @return program start address (the lowest address in the file)
+     * @throws Exception if the file cannot be read or it is not valid Intel HEX file
+     */
+    public static int loadIntoMemory(File file, MemoryContext<Short> memory, boolean checksumValidated)
+            throws Exception {
+        MemoryImageSink sink = MemoryImageSink.writingShortCells(memory);
+        new IntelHexParser(sink, checksumValidated).parse(file.toPath());
+        return Math.max(0, sink.getLowestAddress());
+    }
+
+    private static String toHexByte(int value) {
+        return new String(new char[] { HEX_DIGITS[value >>> 4], HEX_DIGITS[value & 0x0F] });
+    }
+
+    /**
+     * Code table view of the program image.
+     */
+    private final class CodeTable extends AbstractMap<Integer, String> {
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, program.getSize());
         }
-        char dwordLow = (char) input;
-        input = reader.read();
-        if (input == -1) {
-            reader.close();
-            throw new Exception("Unexpected end of input");
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
         }
-        char wordHigh = (char) input;
-        input = reader.read();
-        if (input == -1) {
-            reader.close();
-            throw new Exception("Unexpected end of input");
+
+        @Override
+        public String get(Object key) {
+            if (!(key instanceof Integer)) {
+                return null;
+            }
+            int value = program.get((Integer) key);
+            return (value < 0) ? null : toHexByte(value);
         }
-        char wordLow = (char) input;
-        return Integer.decode(String.format("0x%c%c%c%c", dwordHigh, dwordLow, wordHigh, wordLow));
-    }
 
-    // line beginning with ; is ignored
-    public static HEXFileManager parseFromFile(File file) throws Exception {
-        HEXFileManager hexFile = new HEXFileManager();
+        @Override
+        public String put(Integer address, String code) {
+            if (code.length() != 2) {
+                throw new IllegalArgumentException("Code must be one byte (two hexadecimal digits): " + code);
+            }
+            byte value = (byte) Integer.parseInt(code, 16);
+            String oldCode = get(address);
+            program.put(address, new byte[] { value }, 0, 1);
+            return oldCode;
+        }
 
-        try (FileReader reader = new FileReader(file)) {
-            int input;
-            while ((input = reader.read()) != -1) {
-                if (input == ' ') {
-                    input = ignoreSpaces(reader);
+        @Override
+        public Set<Entry<Integer, String>> entrySet() {
+            List<Entry<Integer, String>> entries = new ArrayList<>();
+            program.forEachSegment((address, data, offset, length) -> {
+                for (int i = 0; i < length; i++) {
+                    entries.add(new SimpleEntry<Integer, String>(address + i, toHexByte(data[offset + i] & 0xFF)) {
+                        @Override
+                        public String setValue(String code) {
+                            put(getKey(), code);
+                            return super.setValue(code);
+                        }
+                    });
                 }
-                if (input == ';') {
-                    ignoreLine(reader);
-                    continue;
-                }
-                if (input != ':') {
-                    reader.close();
-                    throw new IOException("Unexpected character: " + input);
-                }
-                // data bytes count
-                int bytesCount = readWord(reader);
-                if (bytesCount == 0) {
-                    // ignore line
-                    ignoreLine(reader);
-                    continue;
-                }
-                // address
-                int address = readDword(reader);
+            });
+            List<Entry<Integer, String>> snapshot = Collections.unmodifiableList(entries);
+            return new AbstractSet<Entry<Integer, String>>() {
 
-                // data type
-                int dataType = readWord(reader);
-                if (dataType != 0) {
-                    reader.close();
-                    throw new IOException("Unexpected data type: " + dataType);
-                } // doesnt support other data types
+                @Override
+                public Iterator<Entry<Integer, String>> iterator() {
+                    return snapshot.iterator();
+                }
 
-                // data...
-                hexFile.setNextAddress(address);
-                for (int y = 0; y < bytesCount; y++) {
-                    char[] cbuf = new char[2];
-                    reader.read(cbuf);
-                    if (cbuf[0] == '\n' || cbuf[1] == '\n') {
-                      throw new IOException("Unexpected EOL");
-                    }
-                    hexFile.putCode(new String(cbuf));
+                @Override
+                public int size() {
+                    return snapshot.size();
                 }
-                // checksum - dont care..
-                ignoreLine(reader);
-            }
+            };
         }
-        return hexFile;
-    }
-
-    public static int loadIntoMemory(File file, MemoryContext<Short> memory) throws Exception {
-        HEXFileManager hexFile = HEXFileManager.parseFromFile(file);
-        hexFile.loadIntoMemory(memory);
-        return hexFile.getProgramStart();
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.plugins.memory.MemoryContext;
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.runtime.interfaces.ImageLoader;
+import emulib.runtime.loaders.ElfLoader;
+import emulib.runtime.loaders.IntelHexLoader;
+import emulib.runtime.loaders.RawBinaryLoader;
+import emulib.runtime.loaders.SRecordLoader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of program image loaders.
+ *
+ * Built-in loaders support Intel HEX, Motorola S-records, ELF32 and raw binary files. Additional loaders are found
+ * by <code>ServiceLoader</code> and they take precedence over the built-in ones.
+ */
+public class ImageLoaders {
+    private final static List<ImageLoader> BUILT_IN_LOADERS = Collections.unmodifiableList(Arrays.asList(
+            new IntelHexLoader(), new SRecordLoader(), new ElfLoader(), new RawBinaryLoader()
+    ));
+
+    private ImageLoaders() {
+    }
+
+    /**
+     * Get all available loaders, in the order of precedence.
+     *
+     * @return list of loaders; loaders provided as services first, then the built-in loaders
+     */
+    public static List<ImageLoader> getLoaders() {
+        List<ImageLoader> loaders = new ArrayList<>();
+        for (ImageLoader loader : ServiceLoader.load(ImageLoader.class)) {
+            loaders.add(loader);
+        }
+        loaders.addAll(BUILT_IN_LOADERS);
+        return loaders;
+    }
+
+    /**
+     * Find loader supporting given file.
+     *
+     * @param path path to the file
+     * @return the first loader which supports the file, or empty if no loader supports it
+     * @throws IOException if the file cannot be read
+     */
+    public static Optional<ImageLoader> findLoader(Path path) throws IOException {
+        for (ImageLoader loader : getLoaders()) {
+            if (loader.isSupported(path)) {
+                return Optional.of(loader);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Load program image directly into memory, by a loader supporting the file.
+     *
+     * @param path path to the file
+     * @param memory the memory
+     * @return program start address (given by the image, or the lowest loaded address)
+     * @throws IOException if the file cannot be read
+     * @throws InvalidImageException if the file format is not supported, or the file is not valid
+     */
+    public static int loadIntoMemory(Path path, MemoryContext<?> memory) throws IOException {
+        ImageLoader loader = findLoader(path).orElseThrow(
+                () -> new InvalidImageException("Unsupported image format: " + path)
+        );
+        MemoryImageSink sink = new MemoryImageSink(memory);
+        loader.load(path, sink);
+        return sink.getProgramStart();
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.runtime.interfaces.ImageSink;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Streaming parser of Intel HEX files.
+ *
+ * Records are parsed one by one and data records are passed directly to an image sink. Supported record types are:
+ *
+ * - 00 data
+ * - 01 end of file
+ * - 02 extended segment address
+ * - 03 start segment address
+ * - 04 extended linear address
+ * - 05 start linear address
+ *
+ * Lines starting with <code>;</code> are comments, and whitespace around records is ignored.
+ *
+ * Checksums are validated by default. Checksum 0x00 written as three digits "100", as older versions of emuLib did,
+ * is accepted. If the validation is turned off, everything after the checksum on the record line is ignored.
+ */
+@NotThreadSafe
+public class IntelHexParser {
+    private final static int BUFFER_SIZE = 8192;
+    private final static byte[] HEX_VALUES = new byte[128];
+
+    private final static int TYPE_DATA = 0;
+    private final static int TYPE_EOF = 1;
+    private final static int TYPE_EXTENDED_SEGMENT_ADDRESS = 2;
+    private final static int TYPE_START_SEGMENT_ADDRESS = 3;
+    private final static int TYPE_EXTENDED_LINEAR_ADDRESS = 4;
+    private final static int TYPE_START_LINEAR_ADDRESS = 5;
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private final ImageSink sink;
+    private final boolean checksumValidated;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] data = new byte[255];
+    private InputStream input;
+    private int position;
+    private int limit;
+    private int line;
+
+    /**
+     * Creates parser which validates checksums.
+     *
+     * @param sink receiver of the parsed data
+     */
+    public IntelHexParser(ImageSink sink) {
+        this(sink, true);
+    }
+
+    /**
+     * Creates parser.
+     *
+     * @param sink receiver of the parsed data
+     * @param checksumValidated whether checksums of records should be validated
+     */
+    public IntelHexParser(ImageSink sink, boolean checksumValidated) {
+        this.sink = Objects.requireNonNull(sink);
+        this.checksumValidated = checksumValidated;
+    }
+
+    /**
+     * Parse Intel HEX file.
+     *
+     * @param path path to the file
+     * @throws IOException if the file cannot be read
+     * @throws InvalidImageException if the file is not valid Intel HEX file
+     */
+    public void parse(Path path) throws IOException {
+        try (InputStream fileInput = Files.newInputStream(path)) {
+            parse(fileInput);
+        }
+    }
+
+    /**
+     * Parse Intel HEX content from input stream. The stream is read by blocks, so it does not need to be buffered.
+     *
+     * Parsing stops at the end-of-file record, or at the end of the stream. The stream is not closed.
+     *
+     * @param inputStream the input stream
+     * @throws IOException if the stream cannot be read
+     * @throws InvalidImageException if the content is not valid Intel HEX
+     */
+    public void parse(InputStream inputStream) throws IOException {
+        input = Objects.requireNonNull(inputStream);
+        position = 0;
+        limit = 0;
+        line = 1;
+        try {
+            parseRecords();
+        } finally {
+            input = null;
+        }
+    }
+
+    private void parseRecords() throws IOException {
+        int baseAddress = 0;
+
+        int c;
+        while ((c = skipWhitespace()) != -1) {
+            if (c == ';') {
+                skipLine();
+                continue;
+            }
+            if (c != ':') {
+                throw invalid("Unexpected character '" + (char) c + "'");
+            }
+
+            int count = readByte();
+            int addressHigh = readByte();
+            int addressLow = readByte();
+            int type = readByte();
+            int sum = count + addressHigh + addressLow + type;
+            for (int i = 0; i < count; i++) {
+                int value = readByte();
+                data[i] = (byte) value;
+                sum += value;
+            }
+            sum += readByte();
+            finishRecord(sum);
+
+            int address = (addressHigh << 8) | addressLow;
+            switch (type) {
+                case TYPE_DATA:
+                    if (count > 0) {
+                        sink.write(baseAddress + address, data, 0, count);
+                    }
+                    break;
+                case TYPE_EOF:
+                    return;
+                case TYPE_EXTENDED_SEGMENT_ADDRESS:
+                    baseAddress = readDataWord(count) << 4;
+                    break;
+                case TYPE_START_SEGMENT_ADDRESS:
+                    expectDataLength(count, 4);
+                    sink.startAddress((readDataWord(0, 2) << 4) + readDataWord(2, 2));
+                    break;
+                case TYPE_EXTENDED_LINEAR_ADDRESS:
+                    baseAddress = readDataWord(count) << 16;
+                    break;
+                case TYPE_START_LINEAR_ADDRESS:
+                    expectDataLength(count, 4);
+                    sink.startAddress((readDataWord(0, 2) << 16) | readDataWord(2, 2));
+                    break;
+                default:
+                    throw invalid("Unsupported record type: " + type);
+            }
+        }
+    }
+
+    private void finishRecord(int sum) throws IOException {
+        if (!checksumValidated) {
+            skipLine();
+            return;
+        }
+        int c = read();
+        if ((sum & 0xFF) != 0) {
+            // older versions of HEXFileManager wrote checksum 0x00 as three digits "100"
+            if ((sum & 0xFF) != 0x10 || c != '0') {
+                throw invalid("Invalid checksum");
+            }
+            c = read();
+        }
+        while (c == ' ' || c == '\t' || c == '\r') {
+            c = read();
+        }
+        if (c == '\n') {
+            line++;
+        } else if (c != -1) {
+            throw invalid("Unexpected character '" + (char) c + "' after checksum");
+        }
+    }
+
+    private int readDataWord(int count) throws InvalidImageException {
+        expectDataLength(count, 2);
+        return readDataWord(0, 2);
+    }
+
+    private int readDataWord(int offset, int length) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private void expectDataLength(int count, int expected) throws InvalidImageException {
+        if (count != expected) {
+            throw invalid("Unexpected record length: " + count);
+        }
+    }
+
+    private int readByte() throws IOException {
+        return (readDigit() << 4) | readDigit();
+    }
+
+    private int readDigit() throws IOException {
+        int c = read();
+        if (c == -1) {
+            throw invalid("Unexpected end of input");
+        }
+        int value = (c < HEX_VALUES.length) ? HEX_VALUES[c] : -1;
+        if (value == -1) {
+            throw invalid("Invalid hexadecimal digit '" + (char) c + "'");
+        }
+        return value;
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            if (c == '\n') {
+                line++;
+            }
+            c = read();
+        }
+        return c;
+    }
+
+    private void skipLine() throws IOException {
+        int c = read();
+        while (c != -1 && c != '\n') {
+            c = read();
+        }
+        if (c == '\n') {
+            line++;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = input.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private InvalidImageException invalid(String message) {
+        return new InvalidImageException("Line " + line + ": " + message);
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.runtime.interfaces.ImageSink;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Streaming writer of Intel HEX files.
+ *
+ * Data are encoded record by record into a reused line buffer and written directly to the output. Records do not
+ * cross 64 KB boundaries; extended linear address records (04) are written when data go above 64 KB. Start address
+ * is written as start linear address record (05).
+ *
+ * A program image can be written directly by <code>write(ProgramImage)</code>. Parsers and loaders can write into
+ * the image sink view given by <code>asImageSink()</code>; since image sinks cannot throw checked exceptions, the
+ * view throws I/O errors as <code>UncheckedIOException</code>.
+ *
+ * After all data are written, <code>finish()</code> must be called to write the end-of-file record.
+ */
+@NotThreadSafe
+public class IntelHexWriter {
+    public final static int DEFAULT_RECORD_LENGTH = 16;
+    public final static int MAX_RECORD_LENGTH = 255;
+
+    private final static char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final static int TYPE_DATA = 0;
+    private final static int TYPE_EOF = 1;
+    private final static int TYPE_EXTENDED_LINEAR_ADDRESS = 4;
+    private final static int TYPE_START_LINEAR_ADDRESS = 5;
+
+    private final Writer output;
+    private final int recordLength;
+
+    // ':' + 2 * (count + address + type + data + checksum) + '\n'
+    private final char[] line = new char[1 + 2 * (1 + 2 + 1 + MAX_RECORD_LENGTH + 1) + 1];
+    private final byte[] addressData = new byte[4];
+    private int upperAddress;
+
+    /**
+     * Creates writer with default record length.
+     *
+     * @param output output writer. It is not closed by this writer.
+     */
+    public IntelHexWriter(Writer output) {
+        this(output, DEFAULT_RECORD_LENGTH);
+    }
+
+    /**
+     * Creates writer.
+     *
+     * @param output output writer. It is not closed by this writer.
+     * @param recordLength maximum number of data bytes in a record (1-255)
+     */
+    public IntelHexWriter(Writer output, int recordLength) {
+        if (recordLength < 1 || recordLength > MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException("Record length must be between 1 and " + MAX_RECORD_LENGTH);
+        }
+        this.output = Objects.requireNonNull(output);
+        this.recordLength = recordLength;
+    }
+
+    /**
+     * Creates writer which writes ASCII characters into output stream.
+     *
+     * @param output output stream. It is not closed by this writer.
+     * @param recordLength maximum number of data bytes in a record (1-255)
+     */
+    public IntelHexWriter(OutputStream output, int recordLength) {
+        this(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII)), recordLength);
+    }
+
+    /**
+     * Write a block of contiguous data bytes, as one or more data records.
+     *
+     * @param address address of the first byte
+     * @param data data bytes
+     * @param offset offset of the first byte in the data array
+     * @param length number of bytes
+     * @throws IOException if the output cannot be written
+     */
+    public void write(int address, byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int upper = address >>> 16;
+            if (upper != upperAddress) {
+                addressData[0] = (byte) (upper >>> 8);
+                addressData[1] = (byte) upper;
+                writeRecord(0, TYPE_EXTENDED_LINEAR_ADDRESS, addressData, 0, 2);
+                upperAddress = upper;
+            }
+            int lower = address & 0xFFFF;
+            int count = Math.min(Math.min(length, recordLength), 0x10000 - lower);
+            writeRecord(lower, TYPE_DATA, data, offset, count);
+
+            address += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Write all segments of a program image.
+     *
+     * @param image the program image
+     * @throws IOException if the output cannot be written
+     */
+    public void write(ProgramImage image) throws IOException {
+        image.forEachSegment(this::write);
+    }
+
+    /**
+     * Write the program start address, as start linear address record.
+     *
+     * @param address program start address
+     * @throws IOException if the output cannot be written
+     */
+    public void startAddress(int address) throws IOException {
+        addressData[0] = (byte) (address >>> 24);
+        addressData[1] = (byte) (address >>> 16);
+        addressData[2] = (byte) (address >>> 8);
+        addressData[3] = (byte) address;
+        writeRecord(0, TYPE_START_LINEAR_ADDRESS, addressData, 0, 4);
+    }
+
+    /**
+     * Get a view of this writer as an image sink.
+     *
+     * I/O errors are thrown from the sink as <code>UncheckedIOException</code>.
+     *
+     * @return image sink writing into this writer
+     */
+    public ImageSink asImageSink() {
+        return new ImageSink() {
+            @Override
+            public void write(int address, byte[] data, int offset, int length) {
+                try {
+                    IntelHexWriter.this.write(address, data, offset, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void startAddress(int address) {
+                try {
+                    IntelHexWriter.this.startAddress(address);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Write the end-of-file record and flush the output.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    public void finish() throws IOException {
+        writeRecord(0, TYPE_EOF, addressData, 0, 0);
+        output.flush();
+    }
+
+    private void writeRecord(int address, int type, byte[] data, int offset, int count) throws IOException {
+        int position = 0;
+        line[position++] = ':';
+        position = putByte(position, count);
+        position = putByte(position, address >>> 8);
+        position = putByte(position, address);
+        position = putByte(position, type);
+        int sum = count + (address >>> 8) + address + type;
+        for (int i = 0; i < count; i++) {
+            int value = data[offset + i];
+            position = putByte(position, value);
+            sum += value;
+        }
+        position = putByte(position, -sum);
+        line[position++] = '\n';
+        output.write(line, 0, position);
+    }
+
+    private int putByte(int position, int value) {
+        line[position] = HEX_DIGITS[(value >>> 4) & 0x0F];
+        line[position + 1] = HEX_DIGITS[value & 0x0F];
+        return position + 2;
+    }
+
+}
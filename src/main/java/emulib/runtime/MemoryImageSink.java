@@ -0,0 +1,206 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.plugins.memory.ByteMemoryContext;
+import emulib.plugins.memory.IntMemoryContext;
+import emulib.plugins.memory.MemoryContext;
+import emulib.plugins.memory.ShortMemoryContext;
+import emulib.runtime.interfaces.ImageSink;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Image sink writing the data directly into a memory, by bulk writes.
+ *
+ * Each byte is stored into one memory cell. Memories with primitive cell types (byte, short, int) are written without
+ * boxing; other memories must have cells of type Byte, Short or Integer.
+ *
+ * The sink remembers the lowest written address and the start address, if the image defines it.
+ */
+@NotThreadSafe
+public class MemoryImageSink implements ImageSink {
+    private final MemoryContext<?> memory;
+    private final Writer writer;
+    private final BufferWriter bufferWriter;
+
+    private int lowestAddress = -1;
+    private int startAddress;
+    private boolean startAddressSet;
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(int address, byte[] data, int offset, int length);
+    }
+
+    @FunctionalInterface
+    private interface BufferWriter {
+        void write(int address, ByteBuffer data);
+    }
+
+    /**
+     * Creates the sink.
+     *
+     * @param memory memory where the data will be written
+     * @throws IllegalArgumentException if memory cells are not of type Byte, Short or Integer
+     */
+    public MemoryImageSink(MemoryContext<?> memory) {
+        this.memory = Objects.requireNonNull(memory);
+
+        if (memory instanceof ByteMemoryContext) {
+            writer = ((ByteMemoryContext) memory)::writeBlock;
+            bufferWriter = ((ByteMemoryContext) memory)::writeBlock;
+        } else if (memory instanceof ShortMemoryContext) {
+            writer = ((ShortMemoryContext) memory)::writeBlock;
+            bufferWriter = ((ShortMemoryContext) memory)::writeBlock;
+        } else if (memory instanceof IntMemoryContext) {
+            writer = ((IntMemoryContext) memory)::writeBlock;
+            bufferWriter = ((IntMemoryContext) memory)::writeBlock;
+        } else {
+            writer = boxingWriter(memory);
+            bufferWriter = null;
+        }
+    }
+
+    private MemoryImageSink(MemoryContext<?> memory, Writer writer) {
+        this.memory = Objects.requireNonNull(memory);
+        this.writer = Objects.requireNonNull(writer);
+        this.bufferWriter = null;
+    }
+
+    /**
+     * Creates the sink writing the data into a memory with cells of type Short, one cell at a time.
+     *
+     * Unlike the constructor, it does not look at <code>getDataType()</code> of the memory and uses just
+     * <code>MemoryContext.write()</code>, so it works with any memory typed as <code>MemoryContext&lt;Short&gt;</code>.
+     *
+     * @param memory memory where the data will be written
+     * @return new sink
+     */
+    public static MemoryImageSink writingShortCells(MemoryContext<Short> memory) {
+        return new MemoryImageSink(memory, (address, data, offset, length) -> {
+            for (int i = 0; i < length; i++) {
+                memory.write(address + i, (short) (data[offset + i] & 0xFF));
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Writer boxingWriter(MemoryContext<?> memory) {
+        Writer writer;
+        if (memory.getDataType() == Byte.class) {
+            MemoryContext<Byte> byteMemory = (MemoryContext<Byte>) memory;
+            writer = (address, data, offset, length) -> {
+                Byte[] cells = new Byte[length];
+                for (int i = 0; i < length; i++) {
+                    cells[i] = data[offset + i];
+                }
+                byteMemory.writeBlock(address, cells, 0, length);
+            };
+        } else if (memory.getDataType() == Short.class) {
+            MemoryContext<Short> shortMemory = (MemoryContext<Short>) memory;
+            writer = (address, data, offset, length) -> {
+                Short[] cells = new Short[length];
+                for (int i = 0; i < length; i++) {
+                    cells[i] = (short) (data[offset + i] & 0xFF);
+                }
+                shortMemory.writeBlock(address, cells, 0, length);
+            };
+        } else if (memory.getDataType() == Integer.class) {
+            MemoryContext<Integer> intMemory = (MemoryContext<Integer>) memory;
+            writer = (address, data, offset, length) -> {
+                Integer[] cells = new Integer[length];
+                for (int i = 0; i < length; i++) {
+                    cells[i] = data[offset + i] & 0xFF;
+                }
+                intMemory.writeBlock(address, cells, 0, length);
+            };
+        } else {
+            throw new IllegalArgumentException("Unsupported memory cell type: " + memory.getDataType());
+        }
+        return writer;
+    }
+
+    @Override
+    public void write(int address, byte[] data, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        writer.write(address, data, offset, length);
+        if (lowestAddress == -1 || address < lowestAddress) {
+            lowestAddress = address;
+        }
+    }
+
+    @Override
+    public void write(int address, ByteBuffer data) {
+        if (bufferWriter == null) {
+            ImageSink.super.write(address, data);
+            return;
+        }
+        if (!data.hasRemaining()) {
+            return;
+        }
+        bufferWriter.write(address, data);
+        if (lowestAddress == -1 || address < lowestAddress) {
+            lowestAddress = address;
+        }
+    }
+
+    @Override
+    public void startAddress(int address) {
+        startAddress = address;
+        startAddressSet = true;
+    }
+
+    /**
+     * Get the memory where the data are written.
+     *
+     * @return the memory
+     */
+    public MemoryContext<?> getMemory() {
+        return memory;
+    }
+
+    /**
+     * Get the lowest address where some data were written.
+     *
+     * @return the lowest written address, or -1 if nothing was written
+     */
+    public int getLowestAddress() {
+        return lowestAddress;
+    }
+
+    /**
+     * Get program start address.
+     *
+     * @return the start address given by the image; or the lowest written address if the image does not define it;
+     *         or 0 if nothing was written
+     */
+    public int getProgramStart() {
+        if (startAddressSet) {
+            return startAddress;
+        }
+        return (lowestAddress == -1) ? 0 : lowestAddress;
+    }
+
+}
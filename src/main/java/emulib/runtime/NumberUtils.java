@@ -19,6 +19,9 @@
  */
 package emulib.runtime;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 public class NumberUtils {
     
     /**
@@ -52,11 +55,33 @@ public class NumberUtils {
      * @return value with reversed bits
      */
     public static int reverseBits(int value, int numberOfBits) {
-        int result = 0;
-        for (int i = 0; i < numberOfBits; i++) {
-            result |= ((value >>> i) & 0x1) << (numberOfBits - i - 1);
+        if (numberOfBits <= 0) {
+            return 0;
+        }
+        if (numberOfBits >= 32) {
+            return Integer.reverse(value);
         }
-        return result;
+        return Integer.reverse(value) >>> (32 - numberOfBits);
+    }
+
+    /**
+     * Reverse bits in each byte of the value, keeping the order of bytes.
+     *
+     * @param value the value
+     * @return value with reversed bits in each byte
+     */
+    public static int reverseBitsInBytes(int value) {
+        return Integer.reverse(Integer.reverseBytes(value));
+    }
+
+    /**
+     * Reverse bits in each byte of the value, keeping the order of bytes.
+     *
+     * @param value the value
+     * @return value with reversed bits in each byte
+     */
+    public static long reverseBitsInBytes(long value) {
+        return Long.reverse(Long.reverseBytes(value));
     }
 
     public static Byte[] toObjectArray(byte[] array) {
@@ -79,28 +104,8 @@ public class NumberUtils {
      * @return Single integer number which combines the array of bytes into one 32-bit value
      */
     public static int readInt(Byte[] word, int strategy) {
-        int result;
-        int b0,b1,b2,b3;
-        
-        if ((strategy & Strategy.REVERSE_BITS) == Strategy.REVERSE_BITS) {
-            b0 = (byte)reverseBits(word[0].intValue(), 8);
-            b1 = (byte)reverseBits(word[1].intValue(), 8);
-            b2 = (byte)reverseBits(word[2].intValue(), 8);
-            b3 = (byte)reverseBits(word[3].intValue(), 8);
-        } else {
-            b0 = word[0].intValue();
-            b1 = word[1].intValue();
-            b2 = word[2].intValue();
-            b3 = word[3].intValue();
-        }
-  
-        if ((strategy & Strategy.BIG_ENDIAN) == Strategy.BIG_ENDIAN) {
-            result = (b3 & 0xFF) | ((b2 & 0xFF) << 8) | ((b1 & 0xFF) << 16) | ((b0 & 0xFF) << 24);
-        } else {
-            result = (b0 & 0xFF) | ((b1 & 0xFF) << 8) | ((b2 & 0xFF) << 16) | ((b3 & 0xFF) << 24);
-        }
-        
-        return result;
+        int value = (word[0] & 0xFF) | ((word[1] & 0xFF) << 8) | ((word[2] & 0xFF) << 16) | ((word[3] & 0xFF) << 24);
+        return decodeInt(value, strategy);
     }
     
     /**
@@ -114,28 +119,8 @@ public class NumberUtils {
      * @return Single integer number which combines the array of bytes into one 32-bit value
      */
     public static int readInt(Integer[] word, int strategy) {
-        int result;
-        int b0,b1,b2,b3;
-        
-        if ((strategy & Strategy.REVERSE_BITS) == Strategy.REVERSE_BITS) {
-            b0 = reverseBits(word[0], 8);
-            b1 = reverseBits(word[1], 8);
-            b2 = reverseBits(word[2], 8);
-            b3 = reverseBits(word[3], 8);
-        } else {
-            b0 = word[0];
-            b1 = word[1];
-            b2 = word[2];
-            b3 = word[3];
-        }
-  
-        if ((strategy & Strategy.BIG_ENDIAN) == Strategy.BIG_ENDIAN) {
-            result = (b3 & 0xFF) | ((b2 & 0xFF) << 8) | ((b1 & 0xFF) << 16) | ((b0 & 0xFF) << 24);
-        } else {
-            result = (b0 & 0xFF) | ((b1 & 0xFF) << 8) | ((b2 & 0xFF) << 16) | ((b3 & 0xFF) << 24);
-        }
-
-        return result;
+        int value = (word[0] & 0xFF) | ((word[1] & 0xFF) << 8) | ((word[2] & 0xFF) << 16) | ((word[3] & 0xFF) << 24);
+        return decodeInt(value, strategy);
     }
     
     /**
@@ -148,24 +133,11 @@ public class NumberUtils {
      * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
      */
     public static void writeInt(int value, Integer[] output, int strategy) {
-        if ((strategy & Strategy.BIG_ENDIAN) == Strategy.BIG_ENDIAN) {
-            output[3] = value & 0xFF;
-            output[2] = (value >>> 8) & 0xFF;
-            output[1] = (value >>> 16) & 0xFF;
-            output[0] = (value >>> 24) & 0xFF;
-        } else {
-            output[0] = value & 0xFF;
-            output[1] = (value >>> 8) & 0xFF;
-            output[2] = (value >>> 16) & 0xFF;
-            output[3] = (value >>> 24) & 0xFF;
-        }
-
-        if ((strategy & Strategy.REVERSE_BITS) == Strategy.REVERSE_BITS) {
-            output[0] = reverseBits(output[0], 8);
-            output[1] = reverseBits(output[1], 8);
-            output[2] = reverseBits(output[2], 8);
-            output[3] = reverseBits(output[3], 8);
-        }
+        value = encodeInt(value, strategy);
+        output[0] = value & 0xFF;
+        output[1] = (value >>> 8) & 0xFF;
+        output[2] = (value >>> 16) & 0xFF;
+        output[3] = (value >>> 24) & 0xFF;
     }
 
     /**
@@ -178,12 +150,11 @@ public class NumberUtils {
      * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
      */
     public static void writeInt(int value, Byte[] output, int strategy) {
-        Integer[] tmp = new Integer[4];
-        writeInt(value, tmp, strategy);
-        
-        for (int i = 0; i < tmp.length; i++) {
-            output[i] = (byte)(tmp[i] & 0xFF);
-        }
+        value = encodeInt(value, strategy);
+        output[0] = (byte) value;
+        output[1] = (byte) (value >>> 8);
+        output[2] = (byte) (value >>> 16);
+        output[3] = (byte) (value >>> 24);
     }
    
     /**
@@ -196,12 +167,435 @@ public class NumberUtils {
      * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
      */
     public static void writeInt(int value, Short[] output, int strategy) {
-        Integer[] tmp = new Integer[output.length];
-        writeInt(value, tmp, strategy);
-        
-        for (int i = 0; i < tmp.length; i++) {
-            output[i] = (short)(tmp[i] & 0xFFFF);
+        value = encodeInt(value, strategy);
+        output[0] = (short) (value & 0xFF);
+        output[1] = (short) ((value >>> 8) & 0xFF);
+        output[2] = (short) ((value >>> 16) & 0xFF);
+        output[3] = (short) ((value >>> 24) & 0xFF);
+    }
+
+    /**
+     * Reads a 16-bit number from the array of bytes.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 16-bit number combined from 2 bytes
+     */
+    public static short readShort(byte[] data, int offset, int strategy) {
+        return decodeShort((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8), strategy);
+    }
+
+    /**
+     * Reads a 32-bit number from the array of bytes.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 32-bit number combined from 4 bytes
+     */
+    public static int readInt(byte[] data, int offset, int strategy) {
+        return decodeInt((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24), strategy);
+    }
+
+    /**
+     * Reads a 64-bit number from the array of bytes.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 64-bit number combined from 8 bytes
+     */
+    public static long readLong(byte[] data, int offset, int strategy) {
+        long low = readInt(data, offset, Strategy.LITTLE_ENDIAN) & 0xFFFFFFFFL;
+        long high = readInt(data, offset + 4, Strategy.LITTLE_ENDIAN) & 0xFFFFFFFFL;
+        return decodeLong(low | (high << 32), strategy);
+    }
+
+    /**
+     * Writes a 16-bit number into the array of bytes.
+     *
+     * @param value the value; higher bits are ignored
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeShort(int value, byte[] output, int offset, int strategy) {
+        value = encodeShort(value, strategy);
+        output[offset] = (byte) value;
+        output[offset + 1] = (byte) (value >>> 8);
+    }
+
+    /**
+     * Writes a 32-bit number into the array of bytes.
+     *
+     * @param value the value
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeInt(int value, byte[] output, int offset, int strategy) {
+        value = encodeInt(value, strategy);
+        output[offset] = (byte) value;
+        output[offset + 1] = (byte) (value >>> 8);
+        output[offset + 2] = (byte) (value >>> 16);
+        output[offset + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Writes a 64-bit number into the array of bytes.
+     *
+     * @param value the value
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeLong(long value, byte[] output, int offset, int strategy) {
+        value = encodeLong(value, strategy);
+        writeInt((int) value, output, offset, Strategy.LITTLE_ENDIAN);
+        writeInt((int) (value >>> 32), output, offset + 4, Strategy.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads a 16-bit number from the array of numbers, each representing a byte.
+     *
+     * If a value in the array is larger than a byte, the higher-order bits are cut.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 16-bit number combined from 2 bytes
+     */
+    public static short readShort(short[] data, int offset, int strategy) {
+        return decodeShort((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8), strategy);
+    }
+
+    /**
+     * Reads a 32-bit number from the array of numbers, each representing a byte.
+     *
+     * If a value in the array is larger than a byte, the higher-order bits are cut.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 32-bit number combined from 4 bytes
+     */
+    public static int readInt(short[] data, int offset, int strategy) {
+        return decodeInt((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24), strategy);
+    }
+
+    /**
+     * Reads a 64-bit number from the array of numbers, each representing a byte.
+     *
+     * If a value in the array is larger than a byte, the higher-order bits are cut.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 64-bit number combined from 8 bytes
+     */
+    public static long readLong(short[] data, int offset, int strategy) {
+        long low = readInt(data, offset, Strategy.LITTLE_ENDIAN) & 0xFFFFFFFFL;
+        long high = readInt(data, offset + 4, Strategy.LITTLE_ENDIAN) & 0xFFFFFFFFL;
+        return decodeLong(low | (high << 32), strategy);
+    }
+
+    /**
+     * Writes a 16-bit number into the array of numbers, each representing a byte.
+     *
+     * @param value the value; higher bits are ignored
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeShort(int value, short[] output, int offset, int strategy) {
+        value = encodeShort(value, strategy);
+        output[offset] = (short) (value & 0xFF);
+        output[offset + 1] = (short) ((value >>> 8) & 0xFF);
+    }
+
+    /**
+     * Writes a 32-bit number into the array of numbers, each representing a byte.
+     *
+     * @param value the value
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeInt(int value, short[] output, int offset, int strategy) {
+        value = encodeInt(value, strategy);
+        output[offset] = (short) (value & 0xFF);
+        output[offset + 1] = (short) ((value >>> 8) & 0xFF);
+        output[offset + 2] = (short) ((value >>> 16) & 0xFF);
+        output[offset + 3] = (short) ((value >>> 24) & 0xFF);
+    }
+
+    /**
+     * Writes a 64-bit number into the array of numbers, each representing a byte.
+     *
+     * @param value the value
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeLong(long value, short[] output, int offset, int strategy) {
+        value = encodeLong(value, strategy);
+        writeInt((int) value, output, offset, Strategy.LITTLE_ENDIAN);
+        writeInt((int) (value >>> 32), output, offset + 4, Strategy.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads a 16-bit number from the array of numbers, each representing a byte.
+     *
+     * If a value in the array is larger than a byte, the higher-order bits are cut.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 16-bit number combined from 2 bytes
+     */
+    public static short readShort(int[] data, int offset, int strategy) {
+        return decodeShort((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8), strategy);
+    }
+
+    /**
+     * Reads a 32-bit number from the array of numbers, each representing a byte.
+     *
+     * If a value in the array is larger than a byte, the higher-order bits are cut.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 32-bit number combined from 4 bytes
+     */
+    public static int readInt(int[] data, int offset, int strategy) {
+        return decodeInt((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24), strategy);
+    }
+
+    /**
+     * Reads a 64-bit number from the array of numbers, each representing a byte.
+     *
+     * If a value in the array is larger than a byte, the higher-order bits are cut.
+     *
+     * @param data the array
+     * @param offset index of the first byte
+     * @param strategy strategy how to deal with the array. See <code>Strategy</code> class for more information.
+     * @return 64-bit number combined from 8 bytes
+     */
+    public static long readLong(int[] data, int offset, int strategy) {
+        long low = readInt(data, offset, Strategy.LITTLE_ENDIAN) & 0xFFFFFFFFL;
+        long high = readInt(data, offset + 4, Strategy.LITTLE_ENDIAN) & 0xFFFFFFFFL;
+        return decodeLong(low | (high << 32), strategy);
+    }
+
+    /**
+     * Writes a 16-bit number into the array of numbers, each representing a byte.
+     *
+     * @param value the value; higher bits are ignored
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeShort(int value, int[] output, int offset, int strategy) {
+        value = encodeShort(value, strategy);
+        output[offset] = value & 0xFF;
+        output[offset + 1] = (value >>> 8) & 0xFF;
+    }
+
+    /**
+     * Writes a 32-bit number into the array of numbers, each representing a byte.
+     *
+     * @param value the value
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeInt(int value, int[] output, int offset, int strategy) {
+        value = encodeInt(value, strategy);
+        output[offset] = value & 0xFF;
+        output[offset + 1] = (value >>> 8) & 0xFF;
+        output[offset + 2] = (value >>> 16) & 0xFF;
+        output[offset + 3] = (value >>> 24) & 0xFF;
+    }
+
+    /**
+     * Writes a 64-bit number into the array of numbers, each representing a byte.
+     *
+     * @param value the value
+     * @param output the array
+     * @param offset index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeLong(long value, int[] output, int offset, int strategy) {
+        value = encodeLong(value, strategy);
+        writeInt((int) value, output, offset, Strategy.LITTLE_ENDIAN);
+        writeInt((int) (value >>> 32), output, offset + 4, Strategy.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads a 16-bit number from the buffer.
+     *
+     * Uses the buffer's own multi-byte access. Position and byte order of the buffer are not changed.
+     *
+     * @param buffer the buffer
+     * @param index index of the first byte
+     * @param strategy strategy how to deal with the buffer. See <code>Strategy</code> class for more information.
+     * @return 16-bit number combined from 2 bytes
+     */
+    public static short readShort(ByteBuffer buffer, int index, int strategy) {
+        short value = buffer.getShort(index);
+        if (buffer.order() != toByteOrder(strategy)) {
+            value = Short.reverseBytes(value);
+        }
+        return reverseBits(strategy) ? (short) reverseBitsInBytes(value) : value;
+    }
+
+    /**
+     * Reads a 32-bit number from the buffer.
+     *
+     * Uses the buffer's own multi-byte access. Position and byte order of the buffer are not changed.
+     *
+     * @param buffer the buffer
+     * @param index index of the first byte
+     * @param strategy strategy how to deal with the buffer. See <code>Strategy</code> class for more information.
+     * @return 32-bit number combined from 4 bytes
+     */
+    public static int readInt(ByteBuffer buffer, int index, int strategy) {
+        int value = buffer.getInt(index);
+        if (buffer.order() != toByteOrder(strategy)) {
+            value = Integer.reverseBytes(value);
+        }
+        return reverseBits(strategy) ? reverseBitsInBytes(value) : value;
+    }
+
+    /**
+     * Reads a 64-bit number from the buffer.
+     *
+     * Uses the buffer's own multi-byte access. Position and byte order of the buffer are not changed.
+     *
+     * @param buffer the buffer
+     * @param index index of the first byte
+     * @param strategy strategy how to deal with the buffer. See <code>Strategy</code> class for more information.
+     * @return 64-bit number combined from 8 bytes
+     */
+    public static long readLong(ByteBuffer buffer, int index, int strategy) {
+        long value = buffer.getLong(index);
+        if (buffer.order() != toByteOrder(strategy)) {
+            value = Long.reverseBytes(value);
+        }
+        return reverseBits(strategy) ? reverseBitsInBytes(value) : value;
+    }
+
+    /**
+     * Writes a 16-bit number into the buffer.
+     *
+     * Uses the buffer's own multi-byte access. Position and byte order of the buffer are not changed.
+     *
+     * @param value the value; higher bits are ignored
+     * @param buffer the buffer
+     * @param index index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeShort(int value, ByteBuffer buffer, int index, int strategy) {
+        short result = (short) (reverseBits(strategy) ? reverseBitsInBytes(value) : value);
+        if (buffer.order() != toByteOrder(strategy)) {
+            result = Short.reverseBytes(result);
+        }
+        buffer.putShort(index, result);
+    }
+
+    /**
+     * Writes a 32-bit number into the buffer.
+     *
+     * Uses the buffer's own multi-byte access. Position and byte order of the buffer are not changed.
+     *
+     * @param value the value
+     * @param buffer the buffer
+     * @param index index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeInt(int value, ByteBuffer buffer, int index, int strategy) {
+        if (reverseBits(strategy)) {
+            value = reverseBitsInBytes(value);
+        }
+        if (buffer.order() != toByteOrder(strategy)) {
+            value = Integer.reverseBytes(value);
+        }
+        buffer.putInt(index, value);
+    }
+
+    /**
+     * Writes a 64-bit number into the buffer.
+     *
+     * Uses the buffer's own multi-byte access. Position and byte order of the buffer are not changed.
+     *
+     * @param value the value
+     * @param buffer the buffer
+     * @param index index of the first byte
+     * @param strategy strategy for how to save the value. See <code>Strategy</code> class for more information.
+     */
+    public static void writeLong(long value, ByteBuffer buffer, int index, int strategy) {
+        if (reverseBits(strategy)) {
+            value = reverseBitsInBytes(value);
+        }
+        if (buffer.order() != toByteOrder(strategy)) {
+            value = Long.reverseBytes(value);
+        }
+        buffer.putLong(index, value);
+    }
+
+    private static boolean bigEndian(int strategy) {
+        return (strategy & Strategy.BIG_ENDIAN) == Strategy.BIG_ENDIAN;
+    }
+
+    private static boolean reverseBits(int strategy) {
+        return (strategy & Strategy.REVERSE_BITS) == Strategy.REVERSE_BITS;
+    }
+
+    private static ByteOrder toByteOrder(int strategy) {
+        return bigEndian(strategy) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    // Decoding takes a value assembled from bytes in little endian and applies the strategy; encoding is the inverse.
+
+    private static short decodeShort(int littleEndian, int strategy) {
+        int value = bigEndian(strategy) ? (Integer.reverseBytes(littleEndian) >>> 16) : littleEndian;
+        return (short) (reverseBits(strategy) ? reverseBitsInBytes(value) : value);
+    }
+
+    private static int encodeShort(int value, int strategy) {
+        value &= 0xFFFF;
+        if (reverseBits(strategy)) {
+            value = reverseBitsInBytes(value);
+        }
+        return bigEndian(strategy) ? (Integer.reverseBytes(value) >>> 16) : value;
+    }
+
+    private static int decodeInt(int littleEndian, int strategy) {
+        int value = bigEndian(strategy) ? Integer.reverseBytes(littleEndian) : littleEndian;
+        return reverseBits(strategy) ? reverseBitsInBytes(value) : value;
+    }
+
+    private static int encodeInt(int value, int strategy) {
+        if (reverseBits(strategy)) {
+            value = reverseBitsInBytes(value);
+        }
+        return bigEndian(strategy) ? Integer.reverseBytes(value) : value;
+    }
+
+    private static long decodeLong(long littleEndian, int strategy) {
+        long value = bigEndian(strategy) ? Long.reverseBytes(littleEndian) : littleEndian;
+        return reverseBits(strategy) ? reverseBitsInBytes(value) : value;
+    }
+
+    private static long encodeLong(long value, int strategy) {
+        if (reverseBits(strategy)) {
+            value = reverseBitsInBytes(value);
         }
+        return bigEndian(strategy) ? Long.reverseBytes(value) : value;
     }
 
 }
@@ -0,0 +1,44 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Class loader of a single plug-in JAR file.
+ *
+ * The parent class loader holds the dependencies of the plug-in, shared with plug-ins having the same set
+ * of dependencies. The class loader is registered as parallel capable, so plug-ins can be loaded concurrently.
+ */
+@ThreadSafe
+class PluginClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    PluginClassLoader(URL pluginFile, ClassLoader dependenciesClassLoader) {
+        super(new URL[] { pluginFile }, dependenciesClassLoader);
+    }
+
+}
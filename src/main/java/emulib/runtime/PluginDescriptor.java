@@ -0,0 +1,171 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.annotations.EMULIB_VERSION;
+import emulib.annotations.PLUGIN_TYPE;
+import emulib.annotations.PluginType;
+import net.jcip.annotations.Immutable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Plug-in descriptor - basic information about a plug-in, which is available without loading plug-in classes.
+ *
+ * The descriptor is generated at compile time by <code>emulib.annotations.processor.PluginDescriptorProcessor</code>
+ * from the {@link PluginType} annotation, and stored in the plug-in JAR file as {@link #DESCRIPTOR_PATH}.
+ */
+@Immutable
+public final class PluginDescriptor {
+    /**
+     * Path of the descriptor inside plug-in JAR file.
+     */
+    public final static String DESCRIPTOR_PATH = "META-INF/emustudio/plugin.properties";
+
+    private final static String MAIN_CLASS = "main-class";
+    private final static String TYPE = "type";
+    private final static String TITLE = "title";
+    private final static String EMULIB_VERSION_KEY = "emulib-version";
+
+    private final String mainClass;
+    private final PLUGIN_TYPE type;
+    private final String title;
+    private final EMULIB_VERSION emuLibVersion;
+
+    public PluginDescriptor(String mainClass, PLUGIN_TYPE type, String title, EMULIB_VERSION emuLibVersion) {
+        this.mainClass = Objects.requireNonNull(mainClass);
+        this.type = Objects.requireNonNull(type);
+        this.title = Objects.requireNonNull(title);
+        this.emuLibVersion = Objects.requireNonNull(emuLibVersion);
+    }
+
+    /**
+     * Creates descriptor of a plug-in main class.
+     *
+     * @param pluginClass plug-in main class, annotated with {@link PluginType}
+     * @return plug-in descriptor
+     * @throws IllegalArgumentException if the class is not annotated with {@link PluginType}
+     */
+    public static PluginDescriptor fromClass(Class<?> pluginClass) {
+        PluginType pluginType = pluginClass.getAnnotation(PluginType.class);
+        if (pluginType == null) {
+            throw new IllegalArgumentException("Class " + pluginClass.getName() + " is not annotated with PluginType");
+        }
+        return new PluginDescriptor(pluginClass.getName(), pluginType.type(), pluginType.title(),
+                pluginType.emuLibVersion());
+    }
+
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    public PLUGIN_TYPE getType() {
+        return type;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public EMULIB_VERSION getEmuLibVersion() {
+        return emuLibVersion;
+    }
+
+    /**
+     * Reads descriptor in properties format.
+     *
+     * @param input input stream; it is not closed
+     * @return plug-in descriptor
+     * @throws IOException if the descriptor cannot be read or is not valid
+     */
+    public static PluginDescriptor read(InputStream input) throws IOException {
+        Properties properties = new Properties();
+        properties.load(input);
+        return fromProperties(properties, "");
+    }
+
+    /**
+     * Writes descriptor in properties format.
+     *
+     * @param output output stream; it is not closed
+     * @throws IOException if the descriptor cannot be written
+     */
+    public void write(OutputStream output) throws IOException {
+        Properties properties = new Properties();
+        toProperties(properties, "");
+        properties.store(output, "emuStudio plug-in descriptor");
+    }
+
+    static PluginDescriptor fromProperties(Properties properties, String prefix) throws IOException {
+        String mainClass = getProperty(properties, prefix + MAIN_CLASS);
+        String title = getProperty(properties, prefix + TITLE);
+        try {
+            PLUGIN_TYPE type = PLUGIN_TYPE.valueOf(getProperty(properties, prefix + TYPE));
+            EMULIB_VERSION emuLibVersion = EMULIB_VERSION.valueOf(getProperty(properties, prefix + EMULIB_VERSION_KEY));
+            return new PluginDescriptor(mainClass, type, title, emuLibVersion);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid plug-in descriptor", e);
+        }
+    }
+
+    void toProperties(Properties properties, String prefix) {
+        properties.setProperty(prefix + MAIN_CLASS, mainClass);
+        properties.setProperty(prefix + TYPE, type.name());
+        properties.setProperty(prefix + TITLE, title);
+        properties.setProperty(prefix + EMULIB_VERSION_KEY, emuLibVersion.name());
+    }
+
+    private static String getProperty(Properties properties, String key) throws IOException {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IOException("Invalid plug-in descriptor: missing " + key);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        PluginDescriptor that = (PluginDescriptor) o;
+        return mainClass.equals(that.mainClass) && type == that.type && title.equals(that.title)
+                && emuLibVersion == that.emuLibVersion;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mainClass, type, title, emuLibVersion);
+    }
+
+    @Override
+    public String toString() {
+        return "PluginDescriptor{mainClass=" + mainClass + ", type=" + type + ", title=" + title
+                + ", emuLibVersion=" + emuLibVersion + "}";
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of plug-in descriptors, used to speed up emuStudio start.
+ *
+ * Entries are keyed by the absolute path of the plug-in JAR file, and they are valid only while the file has the
+ * same last-modified time and size as when the entry was stored.
+ */
+@ThreadSafe
+public class PluginDescriptorCache {
+    private final static Logger LOGGER = LoggerFactory.getLogger(PluginDescriptorCache.class);
+
+    private final static String PATH = "path";
+    private final static String MODIFIED = "modified";
+    private final static String SIZE = "size";
+
+    private final Path cacheFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+
+    /**
+     * Creates the cache and loads its content from the cache file, if it exists.
+     *
+     * A corrupted cache file is ignored.
+     *
+     * @param cacheFile cache file
+     */
+    public PluginDescriptorCache(Path cacheFile) {
+        this.cacheFile = Objects.requireNonNull(cacheFile);
+        load();
+    }
+
+    /**
+     * Get cached descriptor of a plug-in JAR file.
+     *
+     * @param pluginFile plug-in JAR file
+     * @return cached descriptor, or empty if the file is not cached or it has changed since it was cached
+     */
+    public Optional<PluginDescriptor> get(File pluginFile) {
+        Entry entry = entries.get(pluginFile.getAbsolutePath());
+        if (entry == null || entry.modified != pluginFile.lastModified() || entry.size != pluginFile.length()) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.descriptor);
+    }
+
+    /**
+     * Caches descriptor of a plug-in JAR file.
+     *
+     * @param pluginFile plug-in JAR file
+     * @param descriptor plug-in descriptor
+     */
+    public void put(File pluginFile, PluginDescriptor descriptor) {
+        Entry entry = new Entry(pluginFile.lastModified(), pluginFile.length(), Objects.requireNonNull(descriptor));
+        Entry previous = entries.put(pluginFile.getAbsolutePath(), entry);
+        if (!entry.equals(previous)) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Stores the cache into the cache file, if it was modified.
+     *
+     * If the cache cannot be stored, it stays modified, so it is stored by the next call.
+     *
+     * @throws IOException if the cache file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        // cleared before the entries are read, so a concurrent put() marks the cache as modified again
+        modified = false;
+        boolean saved = false;
+        try {
+            store();
+            saved = true;
+        } finally {
+            if (!saved) {
+                modified = true;
+            }
+        }
+    }
+
+    private void store() throws IOException {
+        Properties properties = new Properties();
+        int index = 0;
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            String prefix = index++ + ".";
+            Entry entry = mapEntry.getValue();
+
+            properties.setProperty(prefix + PATH, mapEntry.getKey());
+            properties.setProperty(prefix + MODIFIED, String.valueOf(entry.modified));
+            properties.setProperty(prefix + SIZE, String.valueOf(entry.size));
+            entry.descriptor.toProperties(properties, prefix);
+        }
+
+        Path parent = cacheFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporaryFile = Files.createTempFile(parent, cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(temporaryFile)) {
+                properties.store(output, "emuStudio plug-in descriptor cache");
+            }
+            Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private void load() {
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(cacheFile)) {
+            properties.load(input);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Could not read plug-in cache {}", cacheFile, e);
+            return;
+        }
+
+        for (int index = 0; properties.containsKey(index + "." + PATH); index++) {
+            String prefix = index + ".";
+            try {
+                String path = properties.getProperty(prefix + PATH);
+                long modified = Long.parseLong(properties.getProperty(prefix + MODIFIED));
+                long size = Long.parseLong(properties.getProperty(prefix + SIZE));
+                entries.put(path, new Entry(modified, size, PluginDescriptor.fromProperties(properties, prefix)));
+            } catch (IOException | NumberFormatException e) {
+                LOGGER.warn("Ignoring invalid plug-in cache entry {} in {}", index, cacheFile, e);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final long modified;
+        private final long size;
+        private final PluginDescriptor descriptor;
+
+        private Entry(long modified, long size, PluginDescriptor descriptor) {
+            this.modified = modified;
+            this.size = size;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return modified == entry.modified && size == entry.size && descriptor.equals(entry.descriptor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(modified, size, descriptor);
+        }
+    }
+
+}
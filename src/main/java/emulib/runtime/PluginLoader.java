@@ -31,23 +31,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.function.Function;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
 
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * This class provides methods for dynamic loading of emuStudio plug-ins (which in turn are JAR files.)
@@ -58,14 +74,78 @@ public class PluginLoader {
     private final static Logger LOGGER = LoggerFactory.getLogger(PluginLoader.class);
     private final static EMULIB_VERSION CURRENT_EMULIB_VERSION = EMULIB_VERSION.VERSION_9;
 
+    /**
+     * Name of the manifest attribute which names the plug-in main class.
+     *
+     * If the attribute is present, the main class is loaded directly instead of searching for it among all classes
+     * in the JAR file.
+     */
+    public final static String PLUGIN_CLASS_ATTRIBUTE = "Plugin-Class";
+
+    /**
+     * Class loading mode of plug-ins.
+     */
+    public enum ClassLoaderMode {
+        /**
+         * All plug-ins and their dependencies are loaded by one class loader.
+         */
+        SHARED,
+
+        /**
+         * Each plug-in has its own class loader. Its parent class loader loads dependencies of the plug-in, so
+         * plug-ins can depend on different versions of the same library. Dependency JAR files are compared by SHA-256
+         * hash of their content: files with the same content are loaded only once for a plug-in, and the parent class
+         * loader is shared by plug-ins with the same set of dependencies, regardless of their order.
+         *
+         * Single dependencies are not shared between plug-ins with different dependency sets, because classes of
+         * a dependency must be linked with the other dependencies of the same plug-in. A dependency used by plug-ins
+         * with different dependency sets is loaded once for each set.
+         */
+        ISOLATED
+    }
+
+    private final PluginDescriptorCache cache;
+    private final ClassLoaderMode classLoaderMode;
+
+    /**
+     * Creates plug-in loader without descriptor cache, in shared class loader mode.
+     */
+    public PluginLoader() {
+        this(null);
+    }
+
+    /**
+     * Creates plug-in loader in shared class loader mode.
+     *
+     * Descriptors of loaded plug-ins are put into the cache, and cached descriptors are used for finding plug-in
+     * main classes. The cache is not saved automatically.
+     *
+     * @param cache plug-in descriptor cache, or null if no cache should be used
+     */
+    public PluginLoader(PluginDescriptorCache cache) {
+        this(cache, ClassLoaderMode.SHARED);
+    }
+
+    /**
+     * Creates plug-in loader.
+     *
+     * @param cache plug-in descriptor cache, or null if no cache should be used
+     * @param classLoaderMode class loading mode of plug-ins
+     */
+    public PluginLoader(PluginDescriptorCache cache, ClassLoaderMode classLoaderMode) {
+        this.cache = cache;
+        this.classLoaderMode = Objects.requireNonNull(classLoaderMode);
+    }
+
     /**
      * Loads emuStudio plugins.
      *
-     * The plug-ins are loaded into separate class loader.
+     * The plug-ins are loaded into separate class loader, or class loaders, according to the class loader mode.
+     * Plug-in JAR files are scanned, and main classes are searched for, in parallel.
      *
      * @param password emuStudio password.
      * @param pluginFiles plugin files.
-     * @return List of plugins main classes
+     * @return List of plugins main classes, in the order of given plugin files
      * @throws InvalidPasswordException if given password is invalid
      * @throws IOException if other error happens
      */
@@ -75,19 +155,24 @@ public class PluginLoader {
 
         Objects.requireNonNull(pluginFiles);
 
-        final Set<URL> urlsToLoad = new HashSet<>();
-        for (File pluginFile : pluginFiles) {
-            urlsToLoad.add(pluginFile.toURI().toURL());
-            urlsToLoad.addAll(findDependencies(pluginFile));
-        }
+        try {
+            List<PluginJar> pluginJars = Arrays.stream(pluginFiles)
+                    .parallel()
+                    .map(this::scanJar)
+                    .collect(toList());
 
-        LOGGER.debug("Loading {} plugin files", urlsToLoad.size());
-        URLClassLoader pluginsClassLoader = new URLClassLoader(urlsToLoad.toArray(new URL[urlsToLoad.size()]));
+            Function<PluginJar, ClassLoader> classLoaders = (classLoaderMode == ClassLoaderMode.ISOLATED)
+                    ? createIsolatedClassLoaders(pluginJars)
+                    : createSharedClassLoader(pluginJars);
 
-        try {
-            return Arrays.asList(pluginFiles).stream()
-                    .map(this::findClassesInJAR)
-                    .map(l -> findMainClass(pluginsClassLoader, l))
+            return pluginJars.parallelStream()
+                    .map(pluginJar -> {
+                        Class<Plugin> mainClass = findMainClass(classLoaders.apply(pluginJar), pluginJar);
+                        if (cache != null) {
+                            cache.put(pluginJar.file, PluginDescriptor.fromClass(mainClass));
+                        }
+                        return mainClass;
+                    })
                     .collect(toList());
         } catch (Exception e) {
             if (e instanceof InvalidPluginException || e instanceof IOException) {
@@ -97,11 +182,164 @@ public class PluginLoader {
         }
     }
 
+    private static Function<PluginJar, ClassLoader> createSharedClassLoader(List<PluginJar> pluginJars)
+            throws IOException {
+        final Set<URL> urlsToLoad = new LinkedHashSet<>();
+        for (PluginJar pluginJar : pluginJars) {
+            urlsToLoad.add(pluginJar.file.toURI().toURL());
+            urlsToLoad.addAll(pluginJar.dependencies);
+        }
+
+        LOGGER.debug("Loading {} plugin files", urlsToLoad.size());
+        URLClassLoader pluginsClassLoader = new URLClassLoader(urlsToLoad.toArray(new URL[urlsToLoad.size()]));
+        return pluginJar -> pluginsClassLoader;
+    }
+
+    private static Function<PluginJar, ClassLoader> createIsolatedClassLoaders(List<PluginJar> pluginJars)
+            throws IOException {
+        final Set<URL> allDependencies = new LinkedHashSet<>();
+        for (PluginJar pluginJar : pluginJars) {
+            allDependencies.addAll(pluginJar.dependencies);
+        }
+        Map<URL, String> contentKeys = computeContentKeys(allDependencies);
+
+        Map<Set<String>, ClassLoader> dependencyClassLoaders = new HashMap<>();
+        Map<File, ClassLoader> classLoaders = new HashMap<>();
+        for (PluginJar pluginJar : pluginJars) {
+            List<URL> dependencies = removeDuplicateContent(pluginJar.dependencies, contentKeys);
+            Set<String> dependencySet = dependencies.stream().map(contentKeys::get).collect(toSet());
+
+            ClassLoader dependenciesClassLoader = dependencyClassLoaders.computeIfAbsent(
+                    dependencySet, key -> new URLClassLoader(dependencies.toArray(new URL[dependencies.size()]))
+            );
+            URL pluginUrl = pluginJar.file.toURI().toURL();
+            classLoaders.put(pluginJar.file, new PluginClassLoader(pluginUrl, dependenciesClassLoader));
+        }
+
+        LOGGER.debug("Loading {} plugin files with {} distinct dependency sets",
+                pluginJars.size(), dependencyClassLoaders.size());
+        return pluginJar -> classLoaders.get(pluginJar.file);
+    }
+
+    /**
+     * Removes JAR files with duplicate content, keeping the first occurrence.
+     *
+     * Files are compared by SHA-256 hash of their content, computed in parallel. Missing files are kept.
+     *
+     * @param jarFiles URLs of JAR files
+     * @return URLs of JAR files with unique content
+     * @throws IOException if a file cannot be read
+     */
+    static List<URL> removeDuplicateContent(Collection<URL> jarFiles) throws IOException {
+        return removeDuplicateContent(jarFiles, computeContentKeys(jarFiles));
+    }
+
+    private static List<URL> removeDuplicateContent(Collection<URL> jarFiles, Map<URL, String> contentKeys) {
+        Set<String> seenKeys = new HashSet<>();
+        List<URL> uniqueUrls = new ArrayList<>();
+        for (URL url : jarFiles) {
+            if (seenKeys.add(contentKeys.get(url))) {
+                uniqueUrls.add(url);
+            } else {
+                LOGGER.debug("Skipping dependency {} with duplicate content", url);
+            }
+        }
+        return uniqueUrls;
+    }
+
+    /**
+     * Computes content keys of JAR files, in parallel.
+     *
+     * The key of an existing file is SHA-256 hash of its content; the key of a missing file is its URL.
+     *
+     * @param jarFiles URLs of JAR files
+     * @return content key of each JAR file
+     * @throws IOException if a file cannot be read
+     */
+    private static Map<URL, String> computeContentKeys(Collection<URL> jarFiles) throws IOException {
+        List<URL> urls = new ArrayList<>(new LinkedHashSet<>(jarFiles));
+        List<String> hashes = urls.parallelStream()
+                .map(PluginLoader::hashContent)
+                .collect(toList());
+
+        Map<URL, String> contentKeys = new HashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            String hash = hashes.get(i);
+            contentKeys.put(urls.get(i), (hash == null) ? urls.get(i).toString() : hash);
+        }
+        return contentKeys;
+    }
+
+    private static String hashContent(URL url) {
+        try {
+            Path path = Paths.get(url.toURI());
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[65536];
+            try (InputStream input = Files.newInputStream(path)) {
+                int count;
+                while ((count = input.read(buffer)) != -1) {
+                    digest.update(buffer, 0, count);
+                }
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (IOException e) {
+            return Unchecked.sneakyThrow(e);
+        } catch (URISyntaxException | IllegalArgumentException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads plug-in descriptor, without loading plug-in classes.
+     *
+     * The descriptor is taken from the cache, if it is valid, or from the plug-in JAR file.
+     *
+     * @param pluginFile plugin file
+     * @return plug-in descriptor, or empty if the plug-in JAR file does not contain a descriptor
+     * @throws IOException if the file cannot be read or the descriptor is not valid
+     */
+    public Optional<PluginDescriptor> readDescriptor(File pluginFile) throws IOException {
+        Optional<PluginDescriptor> descriptor = getCachedDescriptor(pluginFile);
+        if (descriptor.isPresent()) {
+            return descriptor;
+        }
+        try (JarFile jarFile = new JarFile(pluginFile)) {
+            descriptor = readDescriptor(jarFile);
+        }
+        if (cache != null) {
+            descriptor.ifPresent(d -> cache.put(pluginFile, d));
+        }
+        return descriptor;
+    }
+
+    private Optional<PluginDescriptor> getCachedDescriptor(File pluginFile) {
+        return (cache == null) ? Optional.empty() : cache.get(pluginFile);
+    }
+
+    private static Optional<PluginDescriptor> readDescriptor(JarFile jarFile) throws IOException {
+        JarEntry descriptorEntry = jarFile.getJarEntry(PluginDescriptor.DESCRIPTOR_PATH);
+        if (descriptorEntry == null) {
+            return Optional.empty();
+        }
+        try (InputStream input = jarFile.getInputStream(descriptorEntry)) {
+            return Optional.of(PluginDescriptor.read(input));
+        }
+    }
+
     public List<URL> findDependencies(File pluginFile) throws IOException {
+        try (JarFile file = new JarFile(pluginFile)) {
+            return findDependencies(file.getManifest());
+        }
+    }
+
+    private static List<URL> findDependencies(Manifest manifest) throws IOException {
         List<URL> dependencies = new ArrayList<>();
 
-        try (JarFile file = new JarFile(pluginFile)) {
-            String classPath = file.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        if (manifest != null) {
+            String classPath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
             if (classPath != null) {
                 StringTokenizer tokenizer = new StringTokenizer(classPath);
                 while (tokenizer.hasMoreTokens()) {
@@ -137,12 +375,44 @@ public class PluginLoader {
         return false;
     }
 
-    private List<String> findClassesInJAR(File file) {
-        List<String> classes = new ArrayList<>();
+    /**
+     * Reads the manifest and finds the main class name of a plug-in JAR file, in one pass.
+     *
+     * The main class is given by the {@link #PLUGIN_CLASS_ATTRIBUTE} manifest attribute, the cached descriptor,
+     * or the plug-in descriptor in the JAR file, in this order. Only if none of them is available, names of all classes
+     * in the JAR file are collected.
+     *
+     * @param file plug-in JAR file
+     * @return scanned plug-in JAR
+     */
+    private PluginJar scanJar(File file) {
+        try (JarFile jarFile = new JarFile(file)) {
+            Manifest manifest = jarFile.getManifest();
+            List<URL> dependencies = findDependencies(manifest);
+
+            String mainClass = (manifest == null)
+                    ? null
+                    : manifest.getMainAttributes().getValue(PLUGIN_CLASS_ATTRIBUTE);
+            if (mainClass != null) {
+                return new PluginJar(file, dependencies, mainClass.trim(), Collections.emptyList());
+            }
+
+            Optional<PluginDescriptor> descriptor = getCachedDescriptor(file);
+            if (!descriptor.isPresent()) {
+                descriptor = readDescriptor(jarFile);
+            }
+            if (descriptor.isPresent()) {
+                if (descriptor.get().getEmuLibVersion() != CURRENT_EMULIB_VERSION) {
+                    throw new InvalidPluginException("Plug-in " + file + " requires unsupported emuLib version: "
+                            + descriptor.get().getEmuLibVersion());
+                }
+                return new PluginJar(file, dependencies, descriptor.get().getMainClass(), Collections.emptyList());
+            }
 
-        try (JarInputStream jis = new JarInputStream(new FileInputStream(file))) {
-            JarEntry jarEntry;
-            while ((jarEntry = jis.getNextJarEntry()) != null) {
+            List<String> classes = new ArrayList<>();
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry jarEntry = entries.nextElement();
                 if (jarEntry.isDirectory()) {
                     continue;
                 }
@@ -150,33 +420,45 @@ public class PluginLoader {
                 if (!jarEntryName.toLowerCase().endsWith(".class")) {
                     continue;
                 }
-                String className = getValidClassName(jarEntryName);
-                classes.add(className);
+                classes.add(getValidClassName(jarEntryName));
             }
-        } catch (IOException e) {
-            Unchecked.sneakyThrow(e);
+            return new PluginJar(file, dependencies, null, classes);
+        } catch (IOException | InvalidPluginException e) {
+            return Unchecked.sneakyThrow(e);
         }
-
-        return classes;
     }
 
     @SuppressWarnings("unchecked")
-    private Class<Plugin> findMainClass(ClassLoader classLoader, List<String> classes) {
-        for (String className : classes) {
-            try {
-                Class definedClass = classLoader.loadClass(className);
+    private static Class<Plugin> findMainClass(ClassLoader classLoader, PluginJar pluginJar) {
+        if (pluginJar.mainClass != null) {
+            Class<?> mainClass = loadClass(classLoader, pluginJar.mainClass);
+            if (!trustedPlugin(mainClass)) {
+                Unchecked.sneakyThrow(new InvalidPluginException(
+                        "Class " + pluginJar.mainClass + " is not a valid plug-in main class"
+                ));
+            }
+            return (Class<Plugin>) mainClass;
+        }
 
-                if (definedClass != null && trustedPlugin(definedClass)) {
-                    return (Class<Plugin>) definedClass;
-                }
-            } catch (ClassNotFoundException | NoClassDefFoundError e) {
-                Unchecked.sneakyThrow(new InvalidPluginException("Could not find loaded class: " + className, e));
+        for (String className : pluginJar.classes) {
+            Class<?> definedClass = loadClass(classLoader, className);
+
+            if (definedClass != null && trustedPlugin(definedClass)) {
+                return (Class<Plugin>) definedClass;
             }
         }
         Unchecked.sneakyThrow(new InvalidPluginException("Could not find plug-in main class"));
         return null; // never goes here
     }
 
+    private static Class<?> loadClass(ClassLoader classLoader, String className) {
+        try {
+            return classLoader.loadClass(className);
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            return Unchecked.sneakyThrow(new InvalidPluginException("Could not find loaded class: " + className, e));
+        }
+    }
+
     /**
      * Transform a relative file name into valid Java class name.
      *
@@ -190,7 +472,7 @@ public class PluginLoader {
      * @param classFileName File name defining class
      * @return valid Java class name
      */
-    private String getValidClassName(String classFileName) {
+    private static String getValidClassName(String classFileName) {
         if (classFileName.toLowerCase().endsWith(".class")) {
             classFileName = classFileName.substring(0, classFileName.length() - 6);
         }
@@ -217,4 +499,18 @@ public class PluginLoader {
         return pluginType.emuLibVersion() == CURRENT_EMULIB_VERSION && doesImplement(pluginClass, Plugin.class);
     }
 
+    private static class PluginJar {
+        private final File file;
+        private final List<URL> dependencies;
+        private final String mainClass;
+        private final List<String> classes;
+
+        private PluginJar(File file, List<URL> dependencies, String mainClass, List<String> classes) {
+            this.file = file;
+            this.dependencies = dependencies;
+            this.mainClass = mainClass;
+            this.classes = classes;
+        }
+    }
+
 }
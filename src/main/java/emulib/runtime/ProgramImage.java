@@ -0,0 +1,270 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.runtime.interfaces.ImageSink;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Sparse binary program image.
+ *
+ * The image is a sorted list of non-overlapping segments of contiguous bytes. Written data are merged with
+ * overlapping and adjacent segments, so a program written sequentially is kept in a single growing array. Later
+ * writes overwrite earlier ones.
+ *
+ * The image is also an image sink, so parsers can write directly into it.
+ */
+@NotThreadSafe
+public class ProgramImage implements ImageSink {
+    private final static int MIN_CAPACITY = 16;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private long size;
+
+    /**
+     * Consumer of image segments.
+     *
+     * @param <E> type of exception which the consumer can throw
+     */
+    @FunctionalInterface
+    public interface SegmentConsumer<E extends Exception> {
+
+        /**
+         * Accept a segment of contiguous bytes.
+         *
+         * The data array must not be modified.
+         *
+         * @param address address of the first byte
+         * @param data data bytes
+         * @param offset offset of the first byte in the data array
+         * @param length number of bytes
+         * @throws E if the segment cannot be processed
+         */
+        void accept(int address, byte[] data, int offset, int length) throws E;
+    }
+
+    private static final class Segment {
+        private final int start;
+        private byte[] data;
+        private int length;
+
+        private Segment(int start, byte[] data, int length) {
+            this.start = start;
+            this.data = data;
+            this.length = length;
+        }
+
+        private long end() {
+            return (long) start + length;
+        }
+    }
+
+    @Override
+    public void write(int address, byte[] data, int offset, int length) {
+        put(address, data, offset, length);
+    }
+
+    /**
+     * Put bytes into the image, starting at given address.
+     *
+     * @param address address of the first byte; must not be negative
+     * @param data data bytes
+     * @param offset offset of the first byte in the data array
+     * @param length number of bytes
+     */
+    public void put(int address, byte[] data, int offset, int length) {
+        Objects.requireNonNull(data);
+        if (address < 0) {
+            throw new IllegalArgumentException("Address must not be negative");
+        }
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return;
+        }
+        long end = (long) address + length;
+        if (end > (long) Integer.MAX_VALUE + 1) {
+            throw new IllegalArgumentException("Data exceed the address space");
+        }
+
+        // the first segment which overlaps or touches the new data
+        int first = findSegment(address);
+        if (first < 0 || segments.get(first).end() < address) {
+            first++;
+        }
+        // the last segment which overlaps or touches the new data
+        int last = findSegment((int) Math.min(end, Integer.MAX_VALUE));
+
+        if (first > last) {
+            byte[] copy = Arrays.copyOfRange(data, offset, offset + length);
+            segments.add(first, new Segment(address, copy, length));
+            size += length;
+            return;
+        }
+
+        Segment firstSegment = segments.get(first);
+        Segment lastSegment = segments.get(last);
+        int newStart = Math.min(firstSegment.start, address);
+        int newLength = (int) (Math.max(lastSegment.end(), end) - newStart);
+
+        long oldLength = 0;
+        for (int i = first; i <= last; i++) {
+            oldLength += segments.get(i).length;
+        }
+
+        Segment merged;
+        if (firstSegment.start == newStart) {
+            merged = firstSegment;
+            ensureCapacity(merged, newLength);
+        } else {
+            merged = new Segment(newStart, new byte[Math.max(MIN_CAPACITY, newLength)], 0);
+        }
+        for (int i = first; i <= last; i++) {
+            Segment segment = segments.get(i);
+            if (segment != merged) {
+                System.arraycopy(segment.data, 0, merged.data, segment.start - newStart, segment.length);
+            }
+        }
+        System.arraycopy(data, offset, merged.data, address - newStart, length);
+        merged.length = newLength;
+
+        segments.subList(first, last + 1).clear();
+        segments.add(first, merged);
+        size += newLength - oldLength;
+    }
+
+    /**
+     * Get byte at given address.
+     *
+     * @param address the address
+     * @return unsigned byte value, or -1 if the image does not contain the address
+     */
+    public int get(int address) {
+        int index = findSegment(address);
+        if (index < 0) {
+            return -1;
+        }
+        Segment segment = segments.get(index);
+        if (address >= segment.end()) {
+            return -1;
+        }
+        return segment.data[address - segment.start] & 0xFF;
+    }
+
+    /**
+     * Determine if the image contains no bytes.
+     *
+     * @return true if the image is empty
+     */
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Get number of bytes in the image.
+     *
+     * @return number of bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get number of segments of contiguous bytes.
+     *
+     * @return number of segments
+     */
+    public int getSegmentsCount() {
+        return segments.size();
+    }
+
+    /**
+     * Get the lowest address in the image.
+     *
+     * @return the lowest address, or -1 if the image is empty
+     */
+    public int getLowestAddress() {
+        return segments.isEmpty() ? -1 : segments.get(0).start;
+    }
+
+    /**
+     * Pass all segments, sorted by address, to given consumer.
+     *
+     * @param consumer segment consumer
+     * @param <E> type of exception which the consumer can throw
+     * @throws E if the consumer throws it
+     */
+    public <E extends Exception> void forEachSegment(SegmentConsumer<E> consumer) throws E {
+        for (Segment segment : segments) {
+            consumer.accept(segment.start, segment.data, 0, segment.length);
+        }
+    }
+
+    /**
+     * Write the whole image into an image sink, segment by segment.
+     *
+     * @param sink the image sink
+     */
+    public void writeTo(ImageSink sink) {
+        forEachSegment(sink::write);
+    }
+
+    /**
+     * Remove all bytes from the image.
+     */
+    public void clear() {
+        segments.clear();
+        size = 0;
+    }
+
+    /**
+     * Find index of the last segment starting at or before given address.
+     *
+     * @param address the address
+     * @return segment index, or -1 if all segments start after the address
+     */
+    private int findSegment(int address) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (segments.get(middle).start <= address) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private static void ensureCapacity(Segment segment, int length) {
+        if (segment.data.length < length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) segment.data.length * 2, length));
+            segment.data = Arrays.copyOf(segment.data, Math.max(capacity, length));
+        }
+    }
+
+}
@@ -19,10 +19,19 @@
  */
 package emulib.runtime;
 
-import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -33,18 +42,25 @@ import java.util.regex.Pattern;
  * in all times. This class tries to make parsing, converting and working with
  * various number radixes easier.
  *
+ * Registered number patterns can be changed and used concurrently; numbers are recognized by all patterns in one
+ * pass.
  */
-@NotThreadSafe
+@ThreadSafe
 public class RadixUtils {
-    private static final double LOG102 = 0.30102999566398114;
+    // Numbers of at most 12 digits fit into long in any radix up to 36
+    private static final int MAX_LONG_DIGITS = 12;
     private static final RadixUtils INSTANCE = new RadixUtils();
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
 
-    private final List<NumberPattern> patterns = new ArrayList<>();
+    private final Object registryLock = new Object();
+    private volatile Recognizers recognizers;
 
     /**
      * This class represents a number pattern in single radix
      */
+    @Immutable
     public static class NumberPattern {
+        private final String regex;
         private final Pattern pattern;
         private final int radix;
         private final int start;
@@ -63,6 +79,7 @@ public class RadixUtils {
          *   calling <code>prepareNumber</code> method.
          */
         public NumberPattern(String regex, int radix, int cutFromStart, int cutFromEnd) {
+            this.regex = regex;
             pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
             this.radix = radix;
             this.start = cutFromStart;
@@ -107,19 +124,143 @@ public class RadixUtils {
         public String prepareNumber(String number) {
             return number.substring(start, number.length() - end);
         }
+
+        /**
+         * Parses the number matching this pattern, without creating the prepared substring.
+         *
+         * The semantics is the same as of <code>Integer.parseInt(prepareNumber(number), getRadix())</code>.
+         */
+        private int parseInt(CharSequence number) {
+            int from = start;
+            int to = number.length() - end;
+            if (from >= to) {
+                throw new NumberFormatException("Number not recognized");
+            }
+
+            boolean negative = false;
+            char first = number.charAt(from);
+            if (first == '-' || first == '+') {
+                negative = (first == '-');
+                if (++from == to) {
+                    throw new NumberFormatException("Number not recognized");
+                }
+            }
+
+            int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+            int minBeforeMultiply = limit / radix;
+            int result = 0;
+            for (int i = from; i < to; i++) {
+                int digit = Character.digit(number.charAt(i), radix);
+                if (digit < 0 || result < minBeforeMultiply) {
+                    throw new NumberFormatException("Number out of range: " + number);
+                }
+                result *= radix;
+                if (result < limit + digit) {
+                    throw new NumberFormatException("Number out of range: " + number);
+                }
+                result -= digit;
+            }
+            return negative ? result : -result;
+        }
+    }
+
+    /**
+     * Recognizer of numbers matching any of given patterns, in one pass.
+     *
+     * All patterns are compiled into single regular expression, one named group per pattern. Alternatives are tried
+     * in the order of patterns, so the first matching pattern wins.
+     */
+    @Immutable
+    private static final class Recognizer {
+        private final NumberPattern[] patterns;
+        private final String[] groupNames;
+        private final Pattern combinedPattern;
+
+        private Recognizer(List<NumberPattern> patterns) {
+            this.patterns = patterns.toArray(new NumberPattern[patterns.size()]);
+            this.groupNames = new String[this.patterns.length];
+
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < this.patterns.length; i++) {
+                groupNames[i] = "p" + i;
+                if (i > 0) {
+                    regex.append('|');
+                }
+                regex.append("(?<").append(groupNames[i]).append('>').append(this.patterns[i].regex).append(')');
+            }
+            this.combinedPattern = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+        }
+
+        private NumberPattern recognize(String number) {
+            Matcher matcher = combinedPattern.matcher(number);
+            if (matcher.matches()) {
+                for (int i = 0; i < groupNames.length; i++) {
+                    if (matcher.start(groupNames[i]) != -1) {
+                        return patterns[i];
+                    }
+                }
+            }
+            throw new NumberFormatException("Number not recognized");
+        }
+    }
+
+    /**
+     * Immutable snapshot of registered patterns, with recognizers of all patterns and of patterns in each radix.
+     */
+    @Immutable
+    private static final class Recognizers {
+        private final List<NumberPattern> patterns;
+        private final Recognizer all;
+        private final Map<Integer, Recognizer> byRadix = new HashMap<>();
+
+        private Recognizers(List<NumberPattern> patterns) {
+            this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+            this.all = patterns.isEmpty() ? null : new Recognizer(patterns);
+
+            Map<Integer, List<NumberPattern>> patternsByRadix = new HashMap<>();
+            for (NumberPattern pattern : patterns) {
+                patternsByRadix.computeIfAbsent(pattern.getRadix(), radix -> new ArrayList<>()).add(pattern);
+            }
+            for (Map.Entry<Integer, List<NumberPattern>> entry : patternsByRadix.entrySet()) {
+                byRadix.put(entry.getKey(), new Recognizer(entry.getValue()));
+            }
+        }
+
+        private NumberPattern recognize(String number) {
+            if (all == null) {
+                throw new NumberFormatException("Number not recognized");
+            }
+            return all.recognize(number);
+        }
+
+        private NumberPattern recognize(String number, int radix) {
+            Recognizer recognizer = byRadix.get(radix);
+            if (recognizer == null) {
+                throw new NumberFormatException("Number not recognized");
+            }
+            return recognizer.recognize(number);
+        }
+
+        private Recognizers with(NumberPattern pattern) {
+            List<NumberPattern> newPatterns = new ArrayList<>(patterns);
+            newPatterns.add(pattern);
+            return new Recognizers(newPatterns);
+        }
     }
 
     private RadixUtils() {
-        initializeDefaultPatterns();
+        recognizers = createDefaultRecognizers();
     }
 
-    private void initializeDefaultPatterns() {
-        patterns.add(new NumberPattern("0x[0-9a-f]+", 16, 2, 0));
-        patterns.add(new NumberPattern("[0-9a-f]+h", 16, 0, 1));
-        patterns.add(new NumberPattern("[0-9]+", 10, 0, 0));
-        patterns.add(new NumberPattern("[0-9]+d", 10, 0, 1));
-        patterns.add(new NumberPattern("0[0-9]+", 8, 1, 0));
-        patterns.add(new NumberPattern("[0-9]+o", 8, 0, 1));
+    private static Recognizers createDefaultRecognizers() {
+        return new Recognizers(Arrays.asList(
+                new NumberPattern("0x[0-9a-f]+", 16, 2, 0),
+                new NumberPattern("[0-9a-f]+h", 16, 0, 1),
+                new NumberPattern("[0-9]+", 10, 0, 0),
+                new NumberPattern("[0-9]+d", 10, 0, 1),
+                new NumberPattern("0[0-9]+", 8, 1, 0),
+                new NumberPattern("[0-9]+o", 8, 0, 1)
+        ));
     }
 
     public static RadixUtils getInstance() {
@@ -130,8 +271,9 @@ public class RadixUtils {
      * Clears all user-defined patterns
      */
     public void setDefaults() {
-        patterns.clear();
-        initializeDefaultPatterns();
+        synchronized (registryLock) {
+            recognizers = createDefaultRecognizers();
+        }
     }
 
     /**
@@ -140,99 +282,45 @@ public class RadixUtils {
      * @param pattern NumberPattern instance
      */
     public void addNumberPattern(NumberPattern pattern) {
-        patterns.add(pattern);
+        Objects.requireNonNull(pattern);
+        synchronized (registryLock) {
+            recognizers = recognizers.with(pattern);
+        }
     }
 
     /**
      * Converts number in any length to a number with specified radix.
      *
-     * @param number any-length number. Array of number components stored in
-     *               little endian.
-     * @param toRadix the radix of converted number
+     * Numbers longer than 8 bytes are converted by <code>BigInteger</code>, which uses sub-quadratic
+     * divide-and-conquer conversion for big numbers. The input array is not modified.
+     *
+     * @param number any-length unsigned number. Array of number components (bytes).
+     * @param toRadix the radix of converted number (2-36)
      * @param littleEndian If the number is in little endian (true), or big endian (false)
      *
-     * @return String of a number in specified radix
+     * @return String of a number in specified radix, upper-case, without leading zeroes
+     * @throws IllegalArgumentException if the radix is out of range
      */
     public static String convertToRadix(byte[] number, int toRadix, boolean littleEndian) {
-        int bytes;
-        int i, j, val;
-        int temp;
-        int rem;
-        int ip;
-        char k;
-        String result = "";
-
-        int digitsCount = number.length;
-
-        bytes = (int)Math.ceil((double) digitsCount
-                * 8.0 *  LOG102 / Math.log10(toRadix)) + 2;
-
-        if (!littleEndian) {
-            for (i = 0; i < digitsCount / 2; i++) {
-                byte tmp = number[i];
-                number[i] = number[digitsCount - i - 1];
-                number[digitsCount - i - 1] = tmp;
-            }
-        }
-
-        int[] str = new int[bytes+1];
-        int[] ts = new int[bytes+1];
-
-        ts[0] = 1;
-        for (k = 0; k < digitsCount; k++) {
-            short digit = number[k];
-
-            for (i = 0; i < 8; i++) {
-                val = (digit >>> i) & 1;
-                for (j = 0; j < bytes; j++) {
-                    str[j] += ts[j] * val;
-                    temp = str[j];
-                    ip = j;
-                    do { // fix up any remainders in radix
-                        rem = temp / toRadix;
-                        str[ip++] = temp - rem * toRadix;
-                        str[ip] += rem;
-                        temp = str[ip];
-                    } while (temp >= toRadix);
-                }
+        checkRadix(toRadix);
+        int length = number.length;
 
-                //calculate the next power 2^i in radix format
-                for (j = 0; j < bytes; j++) {
-                    ts[j] = ts[j] * 2;
-                }
-                for (j = 0; j < bytes; j++) { //check for any remainders
-                    temp = ts[j];
-                    ip = j;
-                    do { //fix up any remainders
-                        rem = temp / toRadix;
-                        ts[ip++] = temp - rem * toRadix;
-                        ts[ip] += rem;
-                        temp = ts[ip];
-                    } while (temp >= toRadix);
-                }
+        if (length <= 8) {
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | (number[littleEndian ? length - i - 1 : i] & 0xFF);
             }
+            return toUpperCase(Long.toUnsignedString(value, toRadix));
         }
 
-        //convert the output to string format (digits 0,to-1 converted to 0-Z
-        //characters)
-        boolean first = false; //leading zero flag
-        for (i = bytes - 1; i >= 0; i--) {
-            if (str[i] != 0) {
-                first = true;
-            }
-            if (!first) {
-                continue;
+        byte[] bigEndian = number;
+        if (littleEndian) {
+            bigEndian = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bigEndian[i] = number[length - i - 1];
             }
-            if (str[i] < 10) {
-                result += (char)(str[i] + (int)'0');
-            } else {
-                result += (char)(str[i] + (int)'A' - 10);
-            }
-        }
-        if (!first) {
-            result += "0";
         }
-        return result;
+        return toUpperCase(new BigInteger(1, bigEndian).toString(toRadix));
     }
 
     /**
@@ -247,17 +335,11 @@ public class RadixUtils {
      * @throws NumberFormatException if the number is not in known format
      */
     public String convertToRadix(String number, int toRadix) {
-        for (NumberPattern pattern : patterns) {
-            if (pattern.matches(number)) {
-                if (pattern.getRadix() == toRadix) {
-                    return pattern.prepareNumber(number);
-                }
-                return convertToRadix(
-                        convertToNumber(pattern.prepareNumber(number), pattern.getRadix()), toRadix, true
-                );
-            }
+        NumberPattern pattern = recognizers.recognize(number);
+        if (pattern.getRadix() == toRadix) {
+            return pattern.prepareNumber(number);
         }
-        throw new NumberFormatException("Number not recognized");
+        return convertToRadix(convertToNumber(pattern.prepareNumber(number), pattern.getRadix()), toRadix, true);
     }
 
     /**
@@ -280,32 +362,40 @@ public class RadixUtils {
      * Convert a integer number in some radix (stored in String) to binary
      * components in little endian.
      *
-     * Complexity: O(n)
+     * The number can have any length; numbers which do not fit into <code>long</code> are parsed by
+     * <code>BigInteger</code>.
      *
-     * @param number number stored as String
-     * @param fromRadix the radix of the number
-     * @return Array of binary components of that number
+     * @param number non-negative number stored as String
+     * @param fromRadix the radix of the number (2-36)
+     * @return Array of binary components of that number, at least one byte long
+     * @throws NumberFormatException if the number cannot be parsed or it is negative
+     * @throws IllegalArgumentException if the radix is out of range
      */
     public static byte[] convertToNumber(String number, int fromRadix) {
-        List<Byte> bytes = new ArrayList<>();
+        checkRadix(fromRadix);
 
-        long parsed = Long.parseLong(number, fromRadix);
-        if (parsed < 0) {
-            throw new NumberFormatException("Too big number to parse");
-        }
-        while (parsed != 0) {
-            bytes.add((byte)(parsed & 0xFF));
-            parsed >>>= 8;
+        if (number.length() <= MAX_LONG_DIGITS) {
+            long parsed = Long.parseLong(number, fromRadix);
+            if (parsed < 0) {
+                throw new NumberFormatException("Negative number: " + number);
+            }
+            byte[] result = new byte[Math.max(1, (71 - Long.numberOfLeadingZeros(parsed)) >>> 3)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (byte) parsed;
+                parsed >>>= 8;
+            }
+            return result;
         }
 
-        byte[] result = new byte[bytes.size()];
-        for (int i = 0; i < result.length; i++) {
-            result[i] = bytes.get(i);
+        BigInteger parsed = new BigInteger(number, fromRadix);
+        if (parsed.signum() < 0) {
+            throw new NumberFormatException("Negative number: " + number);
         }
-        if (result.length == 0) {
-            result = new byte[] { 0 };
+        byte[] bigEndian = parsed.toByteArray();
+        byte[] result = new byte[Math.max(1, (parsed.bitLength() + 7) >>> 3)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bigEndian[bigEndian.length - i - 1];
         }
-
         return result;
     }
 
@@ -340,12 +430,7 @@ public class RadixUtils {
      * @throws NumberFormatException if the number is not in known format
      */
     public int parseRadix(String number) throws NumberFormatException {
-        for (NumberPattern pattern : patterns) {
-            if (pattern.matches(number)) {
-                return Integer.parseInt(pattern.prepareNumber(number), pattern.getRadix());
-            }
-        }
-        throw new NumberFormatException("Number not recognized");
+        return recognizers.recognize(number).parseInt(number);
     }
 
     /**
@@ -357,61 +442,123 @@ public class RadixUtils {
      * @throws NumberFormatException if there is no pattern available for given radix or the number is unparseable
      */
     public int parseRadix(String number, int radix) throws NumberFormatException {
-        for (NumberPattern pattern : patterns) {
-            if (pattern.getRadix() == radix && pattern.matches(number)) {
-                return Integer.parseInt(pattern.prepareNumber(number), radix);
-            }
-        }
-        throw new NumberFormatException("Number not recognized");
+        return recognizers.recognize(number, radix).parseInt(number);
     }
 
     /**
      * Get formatted string of a byte.
      *
-     * Formatting is using pattern "%02X".
+     * Formatting is equivalent to pattern "%02X". Strings of numbers 0-0xFF are cached.
      *
      * @param byteNumber a number, assumed size is a byte
      * @return formatted string as a hexadecimal number, with string length=2
      */
     public static String formatByteHexString(int byteNumber) {
-        return String.format("%02X", byteNumber);
+        if ((byteNumber & ~0xFF) == 0) {
+            return HexStrings.BYTES[byteNumber];
+        }
+        return formatHexString(byteNumber, 2);
     }
 
     /**
      * Get formatted string of a word.
      *
-     * Formatting is using pattern "%04X".
+     * Formatting is equivalent to pattern "%04X". Strings of numbers 0-0xFFFF are cached.
      *
      * @param wordNumber a number, assumed size is a word (2 bytes)
      * @return formatted string as a hexadecimal number, with string length=4
      */
     public static String formatWordHexString(int wordNumber) {
-        return String.format("%04X", wordNumber);
+        if ((wordNumber & ~0xFFFF) == 0) {
+            return HexStrings.WORDS[wordNumber];
+        }
+        return formatHexString(wordNumber, 4);
     }
 
     /**
      * Get formatted string of a word.
      *
-     * Formatting is using pattern "%04X".
+     * Formatting is equivalent to pattern "%04X".
      *
      * @param upper high order byte (high 8 bits)
      * @param lower low order byte (low 8bits)
      * @return formatted string as a hexadecimal number, with string length=4
      */
     public static String formatWordHexString(short upper, short lower) {
-        return String.format("%04X", ((upper << 8) | lower) & 0xFFFF);
+        return HexStrings.WORDS[((upper << 8) | lower) & 0xFFFF];
     }
 
     /**
      * Get formatted string of a dword.
      *
-     * Formatting is using pattern "%08X".
+     * Formatting is equivalent to pattern "%08X".
      *
      * @param number a number, assumed size is a double word (4 bytes)
      * @return formatted string as a hexadecimal number, with string length=8
      */
     public static String formatDwordHexString(int number) {
-        return String.format("%08X", number);
+        char[] digits = new char[8];
+        formatHex(number, 8, digits, 0);
+        return new String(digits);
+    }
+
+    /**
+     * Writes given number of lowest hexadecimal digits of a number into a char array.
+     *
+     * Digits are upper-case, the most significant digit first. Nothing is allocated.
+     *
+     * @param number the number
+     * @param digitsCount number of hexadecimal digits to write (1-8)
+     * @param destination destination array
+     * @param offset index in the destination array where the first digit is written
+     * @return index in the destination array after the last written digit
+     */
+    public static int formatHex(int number, int digitsCount, char[] destination, int offset) {
+        for (int i = offset + digitsCount - 1; i >= offset; i--) {
+            destination[i] = HEX_DIGITS[number & 0xF];
+            number >>>= 4;
+        }
+        return offset + digitsCount;
+    }
+
+    /**
+     * Appends a byte formatted as two hexadecimal digits ("%02X"), without allocation.
+     *
+     * @param builder string builder
+     * @param byteNumber a number, only the lowest 8 bits are used
+     * @return the string builder
+     */
+    public static StringBuilder appendByteHex(StringBuilder builder, int byteNumber) {
+        return builder.append(HEX_DIGITS[(byteNumber >>> 4) & 0xF]).append(HEX_DIGITS[byteNumber & 0xF]);
+    }
+
+    /**
+     * Appends a word formatted as four hexadecimal digits ("%04X"), without allocation.
+     *
+     * @param builder string builder
+     * @param wordNumber a number, only the lowest 16 bits are used
+     * @return the string builder
+     */
+    public static StringBuilder appendWordHex(StringBuilder builder, int wordNumber) {
+        return appendByteHex(appendByteHex(builder, wordNumber >>> 8), wordNumber);
+    }
+
+    /**
+     * Appends a double word formatted as eight hexadecimal digits ("%08X"), without allocation.
+     *
+     * @param builder string builder
+     * @param number a number
+     * @return the string builder
+     */
+    public static StringBuilder appendDwordHex(StringBuilder builder, int number) {
+        return appendWordHex(appendWordHex(builder, number >>> 16), number);
+    }
+
+    private static String formatHexString(int number, int minDigitsCount) {
+        int digitsCount = Math.max(minDigitsCount, (35 - Integer.numberOfLeadingZeros(number)) >>> 2);
+        char[] digits = new char[digitsCount];
+        formatHex(number, digitsCount, digits, 0);
+        return new String(digits);
     }
 
     /**
@@ -430,29 +577,36 @@ public class RadixUtils {
      * @return formatted string as a binary number, with given string length
      */
     public static String formatBinaryString(int number, int length, int spacePerBits, boolean spacesFromLeft) {
-        String binNumber = Integer.toBinaryString(number);
-        binNumber = String.format("%" + length + "s", binNumber).replace(" ", "0");
-
-        char[] resultBits = binNumber.toCharArray();
-
-        StringBuilder builder = new StringBuilder();
-        int bitsCounter = spacePerBits - 1;
-
-        for (int k = 0; k < resultBits.length; k++) {
-            char c = spacesFromLeft ? resultBits[k] : resultBits[resultBits.length - k - 1];
-            builder.append(c);
+        return appendBinary(new StringBuilder(64), number, length, spacePerBits, spacesFromLeft).toString();
+    }
 
-            if (spacePerBits > 0) {
-                if (bitsCounter == 0) {
+    /**
+     * Appends formatted binary string of given number.
+     *
+     * The output is the same as of {@link #formatBinaryString(int, int, int, boolean)}.
+     *
+     * @param builder string builder
+     * @param number number to format
+     * @param length minimal number of bits
+     * @param spacePerBits number of space-separated bits. If &lt;= 0 then bits are never separated with space.
+     * @param spacesFromLeft whether the group of bits to be space-separated should be counted from left or from right side
+     * @return the string builder
+     */
+    public static StringBuilder appendBinary(StringBuilder builder, int number, int length, int spacePerBits,
+                                             boolean spacesFromLeft) {
+        int bitsCount = Math.max(Math.max(length, 32 - Integer.numberOfLeadingZeros(number)), 1);
+
+        for (int i = 0; i < bitsCount; i++) {
+            if (i > 0 && spacePerBits > 0) {
+                int groupPosition = spacesFromLeft ? i : bitsCount - i;
+                if (groupPosition % spacePerBits == 0) {
                     builder.append(' ');
-                    bitsCounter = spacePerBits - 1;
-                } else {
-                    bitsCounter--;
                 }
             }
+            int bit = bitsCount - i - 1;
+            builder.append((bit < 32 && ((number >>> bit) & 1) != 0) ? '1' : '0');
         }
-
-        return (spacesFromLeft ? builder.toString() : builder.reverse().toString()).trim();
+        return builder;
     }
 
     /**
@@ -471,5 +625,33 @@ public class RadixUtils {
         return formatBinaryString(number, length, 0, false);
     }
 
+    private static void checkRadix(int radix) {
+        if (radix < Character.MIN_RADIX || radix > Character.MAX_RADIX) {
+            throw new IllegalArgumentException("Radix out of range: " + radix);
+        }
+    }
+
+    private static String toUpperCase(String digits) {
+        return digits.toUpperCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Cached hexadecimal strings of all bytes and words. The cache is initialized on first use.
+     */
+    private static final class HexStrings {
+        private static final String[] BYTES = new String[0x100];
+        private static final String[] WORDS = new String[0x10000];
+
+        static {
+            char[] digits = new char[4];
+            for (int i = 0; i < WORDS.length; i++) {
+                formatHex(i, 4, digits, 0);
+                WORDS[i] = new String(digits);
+            }
+            for (int i = 0; i < BYTES.length; i++) {
+                BYTES[i] = WORDS[i].substring(2);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,54 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.interfaces;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Loader of program images of some file format (e.g. Intel HEX, raw binary, ELF).
+ *
+ * Loaders stream the image into an image sink, so they do not keep the whole image in memory. Custom loaders can
+ * be provided by plug-ins as services (<code>META-INF/services/emulib.runtime.interfaces.ImageLoader</code>).
+ */
+public interface ImageLoader {
+
+    /**
+     * Determine if the file is in the format supported by this loader.
+     *
+     * The loader may check file extension or file content.
+     *
+     * @param path path to the file
+     * @return true if the loader can load the file
+     * @throws IOException if the file cannot be read
+     */
+    boolean isSupported(Path path) throws IOException;
+
+    /**
+     * Load the program image from given file into the sink.
+     *
+     * @param path path to the file
+     * @param sink receiver of the image data
+     * @throws IOException if the file cannot be read
+     * @throws emulib.runtime.exceptions.InvalidImageException if the file content is not valid
+     */
+    void load(Path path, ImageSink sink) throws IOException;
+
+}
@@ -0,0 +1,70 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.interfaces;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receiver of program image data, produced by image parsers and loaders.
+ *
+ * Data are given in the order as they appear in the image, they do not have to be sorted by address.
+ */
+public interface ImageSink {
+
+    /**
+     * Receive a block of contiguous data bytes.
+     *
+     * The data array can be reused by the caller after the method returns.
+     *
+     * @param address address of the first byte
+     * @param data data bytes
+     * @param offset offset of the first byte in the data array
+     * @param length number of bytes
+     */
+    void write(int address, byte[] data, int offset, int length);
+
+    /**
+     * Receive a block of contiguous data bytes from a buffer (e.g. memory-mapped file).
+     *
+     * All remaining bytes of the buffer are received and the buffer position is advanced. The default implementation
+     * copies the buffer by chunks into a byte array.
+     *
+     * @param address address of the first byte
+     * @param data buffer with data bytes
+     */
+    default void write(int address, ByteBuffer data) {
+        byte[] chunk = new byte[Math.min(data.remaining(), 65536)];
+        while (data.hasRemaining()) {
+            int length = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, length);
+            write(address, chunk, 0, length);
+            address += length;
+        }
+    }
+
+    /**
+     * Receive the program start address, if the image defines it.
+     *
+     * @param address program start address
+     */
+    default void startAddress(int address) {
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.loaders;
+
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.runtime.interfaces.ImageLoader;
+import emulib.runtime.interfaces.ImageSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loader of ELF32 executables.
+ *
+ * The file is memory-mapped. Loadable segments (PT_LOAD program headers) are passed to the sink at their physical
+ * addresses; the part of a segment which is not in the file (e.g. .bss) is filled with zeros. The entry point is
+ * given as the start address. Sections are not used.
+ */
+public class ElfLoader implements ImageLoader {
+    private final static byte[] MAGIC = { 0x7F, 'E', 'L', 'F' };
+
+    private final static int ELFCLASS32 = 1;
+    private final static int ELFDATA2LSB = 1;
+    private final static int ELFDATA2MSB = 2;
+    private final static int PT_LOAD = 1;
+
+    private final static int HEADER_SIZE = 52;
+    private final static int PROGRAM_HEADER_SIZE = 32;
+
+    @Override
+    public boolean isSupported(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        byte[] magic = new byte[MAGIC.length];
+        try (InputStream input = Files.newInputStream(path)) {
+            int read = 0;
+            while (read < magic.length) {
+                int count = input.read(magic, read, magic.length - read);
+                if (count == -1) {
+                    return false;
+                }
+                read += count;
+            }
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void load(Path path, ImageSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new InvalidImageException("File is too short to be ELF");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new InvalidImageException("File is too big: " + size + " bytes");
+            }
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            loadSegments(file, sink);
+        }
+    }
+
+    private static void loadSegments(ByteBuffer file, ImageSink sink) throws InvalidImageException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (file.get(i) != MAGIC[i]) {
+                throw new InvalidImageException("Not an ELF file");
+            }
+        }
+        if (file.get(4) != ELFCLASS32) {
+            throw new InvalidImageException("Only 32-bit ELF files are supported");
+        }
+        switch (file.get(5)) {
+            case ELFDATA2LSB:
+                file.order(ByteOrder.LITTLE_ENDIAN);
+                break;
+            case ELFDATA2MSB:
+                file.order(ByteOrder.BIG_ENDIAN);
+                break;
+            default:
+                throw new InvalidImageException("Unknown ELF data encoding");
+        }
+
+        int entry = file.getInt(0x18);
+        long programHeadersOffset = file.getInt(0x1C) & 0xFFFFFFFFL;
+        int programHeaderSize = file.getShort(0x2A) & 0xFFFF;
+        int programHeadersCount = file.getShort(0x2C) & 0xFFFF;
+
+        if (programHeadersCount > 0 && programHeaderSize < PROGRAM_HEADER_SIZE) {
+            throw new InvalidImageException("Invalid program header size: " + programHeaderSize);
+        }
+        if (programHeadersOffset + (long) programHeaderSize * programHeadersCount > file.capacity()) {
+            throw new InvalidImageException("Program headers are out of the file");
+        }
+
+        for (int i = 0; i < programHeadersCount; i++) {
+            int header = (int) programHeadersOffset + i * programHeaderSize;
+            if (file.getInt(header) != PT_LOAD) {
+                continue;
+            }
+            long offset = file.getInt(header + 4) & 0xFFFFFFFFL;
+            int physicalAddress = file.getInt(header + 12);
+            long fileSize = file.getInt(header + 16) & 0xFFFFFFFFL;
+            long memorySize = file.getInt(header + 20) & 0xFFFFFFFFL;
+
+            if (offset + fileSize > file.capacity()) {
+                throw new InvalidImageException("Segment " + i + " is out of the file");
+            }
+            if (fileSize > 0) {
+                ByteBuffer segment = file.duplicate();
+                ((Buffer) segment).limit((int) (offset + fileSize));
+                ((Buffer) segment).position((int) offset);
+                sink.write(physicalAddress, segment);
+            }
+            if (memorySize > fileSize) {
+                writeZeros(sink, (int) (physicalAddress + fileSize), memorySize - fileSize);
+            }
+        }
+        sink.startAddress(entry);
+    }
+
+    private static void writeZeros(ImageSink sink, int address, long length) {
+        byte[] zeros = new byte[(int) Math.min(length, 65536)];
+        while (length > 0) {
+            int count = (int) Math.min(length, zeros.length);
+            sink.write(address, zeros, 0, count);
+            address += count;
+            length -= count;
+        }
+    }
+
+}
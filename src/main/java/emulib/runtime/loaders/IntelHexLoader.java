@@ -0,0 +1,44 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.loaders;
+
+import emulib.runtime.IntelHexParser;
+import emulib.runtime.interfaces.ImageLoader;
+import emulib.runtime.interfaces.ImageSink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Loader of Intel HEX files (<code>.hex</code>, <code>.ihx</code>).
+ */
+public class IntelHexLoader implements ImageLoader {
+
+    @Override
+    public boolean isSupported(Path path) {
+        return FileExtensions.hasExtension(path, "hex", "ihx", "ihex");
+    }
+
+    @Override
+    public void load(Path path, ImageSink sink) throws IOException {
+        new IntelHexParser(sink).parse(path);
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.loaders;
+
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.runtime.interfaces.ImageLoader;
+import emulib.runtime.interfaces.ImageSink;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loader of raw binary files (<code>.bin</code>, <code>.rom</code>), e.g. ROM dumps.
+ *
+ * The file is memory-mapped and passed to the sink as a whole, starting at the base address.
+ */
+public class RawBinaryLoader implements ImageLoader {
+    private final int baseAddress;
+
+    /**
+     * Creates loader which loads files at address 0.
+     */
+    public RawBinaryLoader() {
+        this(0);
+    }
+
+    /**
+     * Creates loader.
+     *
+     * @param baseAddress address where the first byte of the file will be loaded
+     */
+    public RawBinaryLoader(int baseAddress) {
+        if (baseAddress < 0) {
+            throw new IllegalArgumentException("Base address must not be negative");
+        }
+        this.baseAddress = baseAddress;
+    }
+
+    @Override
+    public boolean isSupported(Path path) {
+        return FileExtensions.hasExtension(path, "bin", "rom");
+    }
+
+    @Override
+    public void load(Path path, ImageSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (baseAddress + size > (long) Integer.MAX_VALUE + 1) {
+                throw new InvalidImageException("File is too big: " + size + " bytes");
+            }
+            if (size == 0) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            sink.write(baseAddress, buffer);
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.loaders;
+
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.runtime.interfaces.ImageLoader;
+import emulib.runtime.interfaces.ImageSink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Loader of Motorola S-record files (S19, S28, S37).
+ *
+ * Data records S1, S2 and S3 (16, 24 and 32-bit addresses) are passed to the sink, termination records S7, S8 and S9
+ * give the start address. Header (S0) and count (S5, S6) records are ignored. Checksums are validated.
+ */
+public class SRecordLoader implements ImageLoader {
+
+    @Override
+    public boolean isSupported(Path path) {
+        return FileExtensions.hasExtension(path, "s19", "s28", "s37", "srec", "mot");
+    }
+
+    @Override
+    public void load(Path path, ImageSink sink) throws IOException {
+        byte[] record = new byte[255];
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                loadRecord(line, lineNumber, record, sink);
+            }
+        }
+    }
+
+    private static void loadRecord(String line, int lineNumber, byte[] record, ImageSink sink)
+            throws InvalidImageException {
+        if (line.length() < 4 || (line.charAt(0) != 'S' && line.charAt(0) != 's')) {
+            throw invalid(lineNumber, "Record must start with 'S'");
+        }
+        char type = line.charAt(1);
+        int count = readByte(line, 2, lineNumber);
+        if (line.length() != 4 + 2 * count) {
+            throw invalid(lineNumber, "Unexpected record length");
+        }
+
+        int sum = count;
+        for (int i = 0; i < count; i++) {
+            int value = readByte(line, 4 + 2 * i, lineNumber);
+            record[i] = (byte) value;
+            sum += value;
+        }
+        // the checksum is one's complement of the sum of all other bytes, so the sum of all bytes is 0xFF
+        if ((sum & 0xFF) != 0xFF) {
+            throw invalid(lineNumber, "Invalid checksum");
+        }
+
+        int addressLength = getAddressLength(type, lineNumber);
+        if (count < addressLength + 1) {
+            throw invalid(lineNumber, "Record is too short");
+        }
+        int address = 0;
+        for (int i = 0; i < addressLength; i++) {
+            address = (address << 8) | (record[i] & 0xFF);
+        }
+
+        switch (type) {
+            case '1':
+            case '2':
+            case '3':
+                sink.write(address, record, addressLength, count - addressLength - 1);
+                break;
+            case '7':
+            case '8':
+            case '9':
+                sink.startAddress(address);
+                break;
+            default:
+                // header and count records
+        }
+    }
+
+    private static int getAddressLength(char type, int lineNumber) throws InvalidImageException {
+        switch (type) {
+            case '0':
+            case '1':
+            case '5':
+            case '9':
+                return 2;
+            case '2':
+            case '6':
+            case '8':
+                return 3;
+            case '3':
+            case '7':
+                return 4;
+            default:
+                throw invalid(lineNumber, "Unsupported record type: S" + type);
+        }
+    }
+
+    private static int readByte(String line, int index, int lineNumber) throws InvalidImageException {
+        int high = Character.digit(line.charAt(index), 16);
+        int low = Character.digit(line.charAt(index + 1), 16);
+        if (high == -1 || low == -1) {
+            throw invalid(lineNumber, "Invalid hexadecimal digit");
+        }
+        return (high << 4) | low;
+    }
+
+    private static InvalidImageException invalid(int lineNumber, String message) {
+        return new InvalidImageException("Line " + lineNumber + ": " + message);
+    }
+
+}
@@ -19,6 +19,8 @@
  */
 package emulib;
 
+import emulib.runtime.PluginDescriptor;
+
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -30,10 +32,25 @@ import java.util.zip.ZipOutputStream;
 public class JarCreator {
 
     public void createJar(File target, File classFile, List<String> dependencies) throws IOException {
+        createJar(target, classFile, dependencies, null);
+    }
+
+    public void createJar(File target, File classFile, List<String> dependencies, String pluginClass)
+            throws IOException {
+        createJar(target, classFile, dependencies, pluginClass, null);
+    }
+
+    public void createJar(File target, File classFile, List<String> dependencies, String pluginClass,
+                          PluginDescriptor descriptor) throws IOException {
         try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(target))) {
 
             System.out.println("Creating JAR file, class=" + classFile);
-            createManifest(zos, dependencies);
+            createManifest(zos, dependencies, pluginClass);
+            if (descriptor != null) {
+                zos.putNextEntry(new ZipEntry(PluginDescriptor.DESCRIPTOR_PATH));
+                descriptor.write(zos);
+                zos.closeEntry();
+            }
 
             ZipEntry zipEntry = new ZipEntry(
                     classFile.getParentFile().getName() + File.separator + classFile.getName()
@@ -47,7 +64,8 @@ public class JarCreator {
         System.out.println();
     }
 
-    private void createManifest(ZipOutputStream zos, List<String> dependencies) throws IOException {
+    private void createManifest(ZipOutputStream zos, List<String> dependencies, String pluginClass)
+            throws IOException {
         ZipEntry zipEntry = new ZipEntry("META-INF/MANIFEST.MF");
         zos.putNextEntry(zipEntry);
 
@@ -67,6 +85,9 @@ public class JarCreator {
             classPath.append(dep).append(" ");
         }
         manifestContent += classPath.toString().concat("\n");
+        if (pluginClass != null) {
+            manifestContent += "Plugin-Class: " + pluginClass + "\n";
+        }
 
         System.out.println("Class-Path: " + classPath.toString());
 
@@ -0,0 +1,100 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.annotations.processor;
+
+import emulib.annotations.EMULIB_VERSION;
+import emulib.annotations.PLUGIN_TYPE;
+import emulib.runtime.PluginDescriptor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeNotNull;
+
+public class PluginDescriptorProcessorTest {
+    private final static String PLUGIN_SOURCE = "package test;\n"
+            + "@emulib.annotations.PluginType(title = \"My CPU\", copyright = \"\", "
+            + "type = emulib.annotations.PLUGIN_TYPE.CPU)\n"
+            + "public class %s {}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JavaCompiler compiler;
+    private Path output;
+
+    @Before
+    public void setUp() throws Exception {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+        output = folder.newFolder("classes").toPath();
+    }
+
+    private void compile(String... classNames) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", PluginDescriptorProcessor.class.getName(),
+                "-d", output.toString()
+        ));
+        for (String className : classNames) {
+            Path source = folder.getRoot().toPath().resolve(className + ".java");
+            Files.write(source, String.format(PLUGIN_SOURCE, className).getBytes(StandardCharsets.UTF_8));
+            arguments.add(source.toString());
+        }
+
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        int result = compiler.run(null, messages, messages, arguments.toArray(new String[arguments.size()]));
+        assertEquals(messages.toString(), 0, result);
+    }
+
+    @Test
+    public void testDescriptorIsGenerated() throws Exception {
+        compile("MyCPU");
+
+        try (InputStream input = Files.newInputStream(output.resolve(PluginDescriptor.DESCRIPTOR_PATH))) {
+            assertEquals(
+                    new PluginDescriptor("test.MyCPU", PLUGIN_TYPE.CPU, "My CPU", EMULIB_VERSION.VERSION_9),
+                    PluginDescriptor.read(input)
+            );
+        }
+    }
+
+    @Test
+    public void testDescriptorIsNotGeneratedForMorePlugins() throws Exception {
+        compile("FirstCPU", "SecondCPU");
+
+        assertFalse(Files.exists(output.resolve(PluginDescriptor.DESCRIPTOR_PATH)));
+    }
+
+}
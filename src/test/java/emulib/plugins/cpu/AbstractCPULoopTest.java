@@ -0,0 +1,152 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import emulib.plugins.cpu.CPU.RunState;
+import emulib.plugins.cpu.stubs.LoopingCPUStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class AbstractCPULoopTest {
+    private final static int BATCH_SIZE = 64;
+
+    private LoopingCPUStub cpu;
+    private final BlockingQueue<RunState> states = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        cpu = new LoopingCPUStub(44L, BATCH_SIZE);
+        cpu.reset();
+        cpu.addCPUListener(new CPU.CPUListener() {
+            @Override
+            public void runStateChanged(RunState runState) {
+                states.add(runState);
+            }
+
+            @Override
+            public void internalStateChanged() {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        cpu.destroy();
+    }
+
+    private RunState awaitStop() throws InterruptedException {
+        RunState state;
+        do {
+            state = states.poll(10, TimeUnit.SECONDS);
+        } while (state == RunState.STATE_RUNNING);
+        return state;
+    }
+
+    @Test
+    public void testExecuteStopsOnBreakpoint() throws Exception {
+        cpu.setBreakpoint(1000);
+        cpu.execute();
+
+        assertEquals(RunState.STATE_STOPPED_BREAK, awaitStop());
+        assertEquals(1000, cpu.getInstructionPosition());
+    }
+
+    @Test
+    public void testExecuteAfterBreakpointContinuesToNextBreakpoint() throws Exception {
+        cpu.setBreakpoint(10);
+        cpu.setBreakpoint(20);
+        cpu.execute();
+        assertEquals(RunState.STATE_STOPPED_BREAK, awaitStop());
+
+        cpu.execute();
+        assertEquals(RunState.STATE_STOPPED_BREAK, awaitStop());
+        assertEquals(20, cpu.getInstructionPosition());
+    }
+
+    @Test
+    public void testExecuteStopsOnHaltInstruction() throws Exception {
+        cpu.setHaltPosition(BATCH_SIZE * 3 + 5);
+        cpu.execute();
+
+        assertEquals(RunState.STATE_STOPPED_NORMAL, awaitStop());
+        assertEquals(BATCH_SIZE * 3 + 5, cpu.getInstructionPosition());
+    }
+
+    @Test
+    public void testExecuteStopsRightAfterWatchpointInstruction() throws Exception {
+        cpu.setWatchpointPosition(BATCH_SIZE / 2);
+        cpu.execute();
+
+        assertEquals(RunState.STATE_STOPPED_WATCHPOINT, awaitStop());
+        assertEquals(BATCH_SIZE / 2 + 1, cpu.getInstructionPosition());
+    }
+
+    @Test
+    public void testPauseStopsBetweenBatches() throws Exception {
+        cpu.execute();
+        assertEquals(RunState.STATE_RUNNING, states.poll(10, TimeUnit.SECONDS));
+
+        cpu.pause();
+
+        assertEquals(RunState.STATE_STOPPED_BREAK, awaitStop());
+        assertEquals(0, cpu.getInstructionPosition() % BATCH_SIZE);
+    }
+
+    @Test
+    public void testScheduledEventIsDispatchedInCPUThread() throws Exception {
+        AtomicLong eventCycle = new AtomicLong();
+        AtomicReference<Thread> eventThread = new AtomicReference<>();
+        CycleScheduler scheduler = cpu.getCycleScheduler();
+        scheduler.schedule(new CycleScheduler.Event((event, cycle) -> {
+            eventCycle.set(cycle);
+            eventThread.set(Thread.currentThread());
+        }), 400);
+
+        cpu.setHaltPosition(1000);
+        cpu.execute();
+
+        assertEquals(RunState.STATE_STOPPED_NORMAL, awaitStop());
+        assertEquals(400, eventCycle.get());
+        assertNotSame(Thread.currentThread(), eventThread.get());
+        assertEquals(1000 * LoopingCPUStub.CYCLES_PER_INSTRUCTION, scheduler.getCurrentCycle());
+    }
+
+    @Test
+    public void testResetResetsCycles() throws Exception {
+        cpu.setHaltPosition(10);
+        cpu.execute();
+        awaitStop();
+
+        cpu.reset();
+
+        assertEquals(0, cpu.getCycleScheduler().getCurrentCycle());
+    }
+
+}
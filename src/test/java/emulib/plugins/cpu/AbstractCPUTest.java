@@ -29,6 +29,7 @@ import org.junit.Test;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.LockSupport;
 
 import static org.easymock.EasyMock.createMock;
@@ -88,6 +89,59 @@ public class AbstractCPUTest {
         assertFalse(cpu.isBreakpointSet(3));
     }
 
+    @Test
+    public void testUnconditionalBreakpointIsAlwaysTriggered() {
+        assertFalse(cpu.testBreakpoint(3));
+
+        cpu.setBreakpoint(3);
+        assertTrue(cpu.testBreakpoint(3));
+        assertTrue(cpu.testBreakpoint(3));
+        assertFalse(cpu.testBreakpoint(4));
+    }
+
+    @Test
+    public void testConditionalBreakpointIsTriggeredOnlyWhenConditionHolds() {
+        AtomicBoolean condition = new AtomicBoolean();
+        cpu.setBreakpoint(3, condition::get, 1);
+
+        assertTrue(cpu.isBreakpointSet(3));
+        assertFalse(cpu.testBreakpoint(3));
+        condition.set(true);
+        assertTrue(cpu.testBreakpoint(3));
+    }
+
+    @Test
+    public void testHitCountBreakpointIsTriggeredAfterHits() {
+        cpu.setBreakpoint(3, null, 3);
+
+        assertFalse(cpu.testBreakpoint(3));
+        assertFalse(cpu.testBreakpoint(3));
+        assertTrue(cpu.testBreakpoint(3));
+        assertTrue(cpu.testBreakpoint(3));
+    }
+
+    @Test
+    public void testSettingPlainBreakpointRemovesCondition() {
+        cpu.setBreakpoint(3, () -> false, 1);
+        cpu.setBreakpoint(3);
+
+        assertTrue(cpu.testBreakpoint(3));
+    }
+
+    @Test
+    public void testUnsetConditionalBreakpoint() {
+        cpu.setBreakpoint(3, () -> true, 1);
+        cpu.unsetBreakpoint(3);
+
+        assertFalse(cpu.isBreakpointSet(3));
+        assertFalse(cpu.testBreakpoint(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroHitCountThrows() {
+        cpu.setBreakpoint(3, null, 0);
+    }
+
     @Test
     public void testNotifyChange() {
         CPUListener listener = createCPUListenerMock(RunState.STATE_RUNNING);
@@ -198,6 +252,31 @@ public class AbstractCPUTest {
         verify(listener);
     }
 
+    @Test(timeout = 10000)
+    public void testPauseDoesNotBlockForeverWhenCPUIgnoresInterrupts() throws Exception {
+        CPUListener listener = createMock(CPUListener.class);
+        listener.internalStateChanged();
+        expectLastCall().anyTimes();
+        listener.runStateChanged(eq(RunState.STATE_RUNNING));
+        expectLastCall().atLeastOnce();
+        listener.runStateChanged(eq(RunState.STATE_STOPPED_BREAK));
+        expectLastCall().once();
+        replay(listener);
+
+        cpu.reset();
+        cpu.setInterruptsIgnored(true);
+        cpu.addCPUListener(listener);
+        try {
+            cpu.execute();
+            assertTrue(cpu.wasRunCalled());
+            cpu.pause();
+        } finally {
+            cpu.setInterruptsIgnored(false);
+        }
+
+        verify(listener);
+    }
+
     @Test
     public void testPauseOnBreakpointStateHasNoEffect() throws Exception {
         CPUListener listener = createMock(CPUListener.class);
@@ -439,6 +518,93 @@ public class AbstractCPUTest {
         verify(listener);
     }
 
+    @Test
+    public void testStepWithWatchpointHitSetsWatchpointState() throws Exception {
+        CPUListener listener = createCPUListenerMock(RunState.STATE_STOPPED_WATCHPOINT);
+
+        cpu.setRunStateToReturn(RunState.STATE_STOPPED_BREAK);
+        cpu.setHitWatchpoint(true);
+        cpu.reset();
+        cpu.addCPUListener(listener);
+        cpu.step();
+
+        verify(listener);
+    }
+
+    @Test
+    public void testStepWithWatchpointHitKeepsNormalStopState() throws Exception {
+        CPUListener listener = createCPUListenerMock(RunState.STATE_STOPPED_NORMAL);
+
+        cpu.setRunStateToReturn(RunState.STATE_STOPPED_NORMAL);
+        cpu.setHitWatchpoint(true);
+        cpu.reset();
+        cpu.addCPUListener(listener);
+        cpu.step();
+
+        verify(listener);
+    }
+
+    @Test
+    public void testExecuteWithWatchpointHitStopsInWatchpointState() throws Exception {
+        CPUListener listener = createMock(CPUListener.class);
+        listener.internalStateChanged();
+        expectLastCall().times(2);
+        listener.runStateChanged(eq(RunState.STATE_RUNNING));
+        expectLastCall().once();
+        listener.runStateChanged(eq(RunState.STATE_STOPPED_WATCHPOINT));
+        expectLastCall().once();
+        replay(listener);
+
+        cpu.setRunStateToReturn(RunState.STATE_STOPPED_BREAK);
+        cpu.setHitWatchpoint(true);
+        cpu.reset();
+        cpu.addCPUListener(listener);
+        cpu.execute();
+
+        LockSupport.parkNanos(100000000);
+
+        verify(listener);
+    }
+
+    @Test
+    public void testWatchpointHitOutsideOfCPUThreadDoesNotStopCPU() throws Exception {
+        CPUListener listener = createMock(CPUListener.class);
+        listener.internalStateChanged();
+        expectLastCall().once();
+        listener.runStateChanged(eq(RunState.STATE_RUNNING));
+        expectLastCall().once();
+        listener.runStateChanged(eq(RunState.STATE_STOPPED_BREAK));
+        expectLastCall().once();
+        replay(listener);
+
+        cpu.reset();
+        cpu.addCPUListener(listener);
+        cpu.execute();
+        assertTrue(cpu.wasRunCalled());
+
+        // e.g. a debugger reading the memory
+        cpu.hitWatchpointInCurrentThread();
+        LockSupport.parkNanos(100000000);
+        cpu.pause();
+
+        verify(listener);
+    }
+
+    @Test
+    public void testStepAfterWatchpointStateIsAllowed() throws Exception {
+        cpu.setRunStateToReturn(RunState.STATE_STOPPED_BREAK);
+        cpu.setHitWatchpoint(true);
+        cpu.reset();
+        cpu.step();
+
+        CPUListener listener = createCPUListenerMock(RunState.STATE_STOPPED_BREAK);
+        cpu.addCPUListener(listener);
+        cpu.setHitWatchpoint(false);
+        cpu.step();
+
+        verify(listener);
+    }
+
     @Test
     public void testShowSettingsDoesNothing() throws Exception {
         assertFalse(cpu.isShowSettingsSupported());
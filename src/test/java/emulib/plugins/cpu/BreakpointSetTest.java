@@ -0,0 +1,51 @@
+package emulib.plugins.cpu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BreakpointSetTest {
+    private final BreakpointSet breakpoints = new BreakpointSet();
+
+    @Test
+    public void testEmptySetContainsNothing() {
+        assertTrue(breakpoints.isEmpty());
+        assertFalse(breakpoints.contains(0));
+        assertFalse(breakpoints.contains(-1));
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        assertTrue(breakpoints.add(0x1234));
+        assertFalse(breakpoints.add(0x1234));
+        assertTrue(breakpoints.contains(0x1234));
+        assertFalse(breakpoints.contains(0x1235));
+        assertFalse(breakpoints.isEmpty());
+
+        assertTrue(breakpoints.remove(0x1234));
+        assertFalse(breakpoints.remove(0x1234));
+        assertFalse(breakpoints.contains(0x1234));
+        assertTrue(breakpoints.isEmpty());
+    }
+
+    @Test
+    public void testLocationsInDifferentPages() {
+        breakpoints.add(63);
+        breakpoints.add(1 << 20);
+        breakpoints.add(Integer.MAX_VALUE);
+        breakpoints.add(-1);
+
+        assertTrue(breakpoints.contains(63));
+        assertTrue(breakpoints.contains(1 << 20));
+        assertTrue(breakpoints.contains(Integer.MAX_VALUE));
+        assertTrue(breakpoints.contains(-1));
+        assertFalse(breakpoints.contains(64));
+        assertFalse(breakpoints.contains(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void testRemoveFromUnallocatedPage() {
+        assertFalse(breakpoints.remove(1 << 25));
+    }
+}
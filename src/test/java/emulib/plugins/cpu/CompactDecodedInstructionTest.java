@@ -0,0 +1,228 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactDecodedInstructionTest {
+    private CompactDecodedInstruction instruction;
+
+    @Before
+    public void setUp() {
+        instruction = new CompactDecodedInstruction(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveCapacityThrows() {
+        new CompactDecodedInstruction(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeKeyThrows() {
+        instruction.add(-1, "A", 1);
+    }
+
+    @Test
+    public void testStringAndConstant() {
+        instruction.add(1, "A", 5);
+
+        assertTrue(instruction.hasKey(1));
+        assertEquals(5, instruction.get(1));
+        assertEquals("A", instruction.getString(1));
+        assertFalse(instruction.hasBits(1));
+    }
+
+    @Test
+    public void testMissingKeys() {
+        assertFalse(instruction.hasKey(0));
+        assertFalse(instruction.hasKey(100));
+        assertFalse(instruction.hasKey(-1));
+        assertEquals(-1, instruction.get(0));
+        assertNull(instruction.getString(0));
+        assertNull(instruction.getBits(0));
+        assertEquals(-1, instruction.getBitsOffset(0));
+        assertEquals(-1, instruction.getBitsLength(0));
+        assertEquals(-1, instruction.getBitsValue(0, false));
+    }
+
+    @Test
+    public void testBitsAreAccessibleWithoutCopy() {
+        instruction.add(0, new byte[] { 1, 2 });
+        instruction.add(1, new byte[] { 9, 3, 4, 5, 9 }, 1, 3);
+
+        byte[] data = instruction.getBitsData();
+        assertEquals(2, instruction.getBitsOffset(1));
+        assertEquals(3, instruction.getBitsLength(1));
+        assertEquals(3, data[instruction.getBitsOffset(1)]);
+        assertArrayEquals(new byte[] { 3, 4, 5 }, instruction.getBits(1));
+        assertSame(data, instruction.getBitsData());
+    }
+
+    @Test
+    public void testBitsValue() {
+        instruction.add(0, new byte[] { 0x12, (byte) 0xF4 });
+
+        assertEquals(0x12F4, instruction.getBitsValue(0, false));
+        assertEquals(0xF412, instruction.getBitsValue(0, true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTooLongBitsValueThrows() {
+        instruction.add(0, new byte[8]);
+        instruction.getBitsValue(0, false);
+    }
+
+    @Test
+    public void testKeysGrowBeyondCapacity() {
+        for (int key = 0; key < 50; key++) {
+            instruction.add(key, "K" + key, key);
+            instruction.add(key, new byte[] { (byte) key });
+        }
+
+        assertEquals(50, instruction.getKeysCount());
+        assertEquals(49, instruction.getKey(49));
+        assertEquals("K30", instruction.getString(30));
+        assertEquals(30, instruction.getBitsValue(30, false));
+    }
+
+    @Test
+    public void testKeyIsListedOnce() {
+        instruction.add(3, "A", 1);
+        instruction.add(3, new byte[] { 1 });
+        instruction.add(0, "B", 2);
+
+        assertEquals(2, instruction.getKeysCount());
+        assertEquals(3, instruction.getKey(0));
+        assertEquals(0, instruction.getKey(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidKeyIndexThrows() {
+        instruction.getKey(0);
+    }
+
+    @Test
+    public void testResetClearsContentAndKeepsArrays() {
+        instruction.add(0, "A", 1);
+        instruction.add(1, new byte[] { 1, 2, 3 });
+        instruction.setImage(new byte[] { 1, 2, 3 }, 0, 3);
+        byte[] bitsData = instruction.getBitsData();
+        byte[] image = instruction.getImage();
+
+        instruction.reset();
+
+        assertEquals(0, instruction.getKeysCount());
+        assertFalse(instruction.hasKey(0));
+        assertFalse(instruction.hasKey(1));
+        assertNull(instruction.getString(0));
+        assertEquals(0, instruction.getLength());
+
+        instruction.add(1, new byte[] { 7 });
+        assertEquals(0, instruction.getBitsOffset(1));
+        assertSame(bitsData, instruction.getBitsData());
+        instruction.setImage(new byte[] { 4 }, 0, 1);
+        assertSame(image, instruction.getImage());
+    }
+
+    @Test
+    public void testImage() {
+        byte[] source = new byte[20];
+        source[19] = 5;
+        instruction.setImage(source, 10, 10);
+
+        assertEquals(10, instruction.getLength());
+        assertEquals(5, instruction.getImage()[9]);
+    }
+
+    @Test
+    public void testCopyFromDecodedInstruction() {
+        DecodedInstruction decoded = new DecodedInstruction();
+        decoded.add(2, "MOV", 7);
+        decoded.add(5, new byte[] { 1, 2 });
+        decoded.setImage(new byte[] { 0x10, 0x20 });
+        instruction.add(0, "old", 0);
+
+        instruction.copyFrom(decoded);
+
+        assertFalse(instruction.hasKey(0));
+        assertEquals("MOV", instruction.getString(2));
+        assertEquals(7, instruction.get(2));
+        assertArrayEquals(new byte[] { 1, 2 }, instruction.getBits(5));
+        assertEquals(2, instruction.getLength());
+        assertEquals(0x20, instruction.getImage()[1]);
+    }
+
+    @Test
+    public void testCopyFromDecodedInstructionCopiesConstantWithoutString() {
+        DecodedInstruction decoded = new DecodedInstruction();
+        decoded.add(3, null, 42);
+        decoded.setImage(new byte[] { 0 });
+
+        instruction.copyFrom(decoded);
+
+        assertTrue(instruction.hasKey(3));
+        assertEquals(42, instruction.get(3));
+        assertNull(instruction.getString(3));
+    }
+
+    @Test
+    public void testCopyFromCompactDecodedInstruction() {
+        CompactDecodedInstruction source = new CompactDecodedInstruction();
+        source.add(2, "MOV", 7);
+        source.add(3, null, 42);
+        source.add(5, new byte[] { 1, 2 });
+        source.setImage(new byte[] { 0x10, 0x20 }, 0, 2);
+        instruction.add(0, "old", 0);
+
+        instruction.copyFrom(source);
+
+        assertFalse(instruction.hasKey(0));
+        assertEquals("MOV", instruction.getString(2));
+        assertEquals(7, instruction.get(2));
+        assertEquals(42, instruction.get(3));
+        assertArrayEquals(new byte[] { 1, 2 }, instruction.getBits(5));
+        assertEquals(2, instruction.getLength());
+        assertEquals(0x20, instruction.getImage()[1]);
+    }
+
+    @Test
+    public void testDefaultDecoderMethodCopiesDecodedInstruction() throws Exception {
+        Decoder decoder = memoryPosition -> {
+            DecodedInstruction decoded = new DecodedInstruction();
+            decoded.add(1, "NOP", memoryPosition);
+            decoded.setImage(new byte[] { 0 });
+            return decoded;
+        };
+
+        decoder.decode(42, instruction);
+
+        assertEquals(42, instruction.get(1));
+        assertEquals(1, instruction.getLength());
+    }
+
+}
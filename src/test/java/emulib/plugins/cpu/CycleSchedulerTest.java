@@ -0,0 +1,203 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CycleSchedulerTest {
+    private CycleScheduler scheduler;
+    private List<String> dispatched;
+
+    @Before
+    public void setUp() {
+        scheduler = new CycleScheduler();
+        dispatched = new ArrayList<>();
+    }
+
+    private CycleScheduler.Event recordingEvent(String name) {
+        return new CycleScheduler.Event((event, cycle) -> dispatched.add(name + "@" + cycle));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testEventWithNullHandlerThrows() throws Exception {
+        new CycleScheduler.Event(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testScheduleWithNegativeCyclesThrows() throws Exception {
+        scheduler.schedule(recordingEvent("a"), -1);
+    }
+
+    @Test
+    public void testAdvanceCountsCycles() throws Exception {
+        scheduler.advance(3);
+        scheduler.advance(4);
+
+        assertEquals(7, scheduler.getCurrentCycle());
+    }
+
+    @Test
+    public void testEventIsDispatchedWhenDue() throws Exception {
+        scheduler.schedule(recordingEvent("a"), 10);
+
+        scheduler.advance(9);
+        assertTrue(dispatched.isEmpty());
+
+        scheduler.advance(2);
+        assertEquals(Arrays.asList("a@11"), dispatched);
+    }
+
+    @Test
+    public void testEventsAreDispatchedInOrderOfCycles() throws Exception {
+        scheduler.schedule(recordingEvent("c"), 30);
+        scheduler.schedule(recordingEvent("a"), 10);
+        scheduler.schedule(recordingEvent("b"), 20);
+
+        scheduler.advance(100);
+
+        assertEquals(Arrays.asList("a@100", "b@100", "c@100"), dispatched);
+    }
+
+    @Test
+    public void testEventsForSameCycleAreDispatchedInOrderOfScheduling() throws Exception {
+        scheduler.schedule(recordingEvent("a"), 10);
+        scheduler.schedule(recordingEvent("b"), 10);
+        scheduler.schedule(recordingEvent("c"), 10);
+
+        scheduler.advance(10);
+
+        assertEquals(Arrays.asList("a@10", "b@10", "c@10"), dispatched);
+    }
+
+    @Test
+    public void testEventCanBeRescheduledFromHandler() throws Exception {
+        List<Long> ticks = new ArrayList<>();
+        CycleScheduler.Event timer = new CycleScheduler.Event((event, cycle) -> {
+            ticks.add(cycle);
+            scheduler.schedule(event, 5);
+        });
+        scheduler.schedule(timer, 5);
+
+        for (int i = 0; i < 20; i++) {
+            scheduler.advance(1);
+        }
+
+        assertEquals(Arrays.asList(5L, 10L, 15L, 20L), ticks);
+        assertEquals(25, scheduler.getScheduledCycle(timer));
+    }
+
+    @Test
+    public void testReschedulingMovesTheEvent() throws Exception {
+        CycleScheduler.Event event = recordingEvent("a");
+        scheduler.schedule(event, 10);
+        scheduler.schedule(event, 20);
+
+        scheduler.advance(15);
+        assertTrue(dispatched.isEmpty());
+
+        scheduler.advance(5);
+        assertEquals(Arrays.asList("a@20"), dispatched);
+    }
+
+    @Test
+    public void testCancelledEventIsNotDispatched() throws Exception {
+        CycleScheduler.Event event = recordingEvent("a");
+        scheduler.schedule(event, 10);
+
+        assertTrue(scheduler.cancel(event));
+        assertFalse(scheduler.cancel(event));
+        assertFalse(scheduler.isScheduled(event));
+        assertEquals(-1, scheduler.getScheduledCycle(event));
+
+        scheduler.advance(20);
+        assertTrue(dispatched.isEmpty());
+    }
+
+    @Test
+    public void testEventScheduledInThePastIsDispatchedByNextAdvance() throws Exception {
+        scheduler.advance(100);
+        scheduler.scheduleAt(recordingEvent("a"), 50);
+
+        scheduler.advance(0);
+
+        assertEquals(Arrays.asList("a@100"), dispatched);
+    }
+
+    @Test
+    public void testResetCyclesKeepsRemainingCycles() throws Exception {
+        CycleScheduler.Event event = recordingEvent("a");
+        scheduler.advance(100);
+        scheduler.schedule(event, 30);
+
+        scheduler.resetCycles();
+
+        assertEquals(0, scheduler.getCurrentCycle());
+        assertEquals(30, scheduler.getScheduledCycle(event));
+    }
+
+    @Test
+    public void testClearCancelsAllEvents() throws Exception {
+        CycleScheduler.Event event = recordingEvent("a");
+        scheduler.schedule(event, 10);
+        scheduler.schedule(recordingEvent("b"), 20);
+
+        scheduler.clear();
+        scheduler.advance(100);
+
+        assertFalse(scheduler.isScheduled(event));
+        assertTrue(dispatched.isEmpty());
+    }
+
+    @Test
+    public void testManyEventsAreDispatchedInOrder() throws Exception {
+        Random random = new Random(42);
+        List<Long> cycles = new ArrayList<>();
+        CycleScheduler.Handler handler = (event, cycle) -> cycles.add(scheduler.getCurrentCycle());
+
+        CycleScheduler.Event[] events = new CycleScheduler.Event[1000];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new CycleScheduler.Event(handler);
+            scheduler.schedule(events[i], random.nextInt(10000));
+        }
+        for (int i = 0; i < events.length; i += 3) {
+            scheduler.cancel(events[i]);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            scheduler.advance(1);
+        }
+
+        assertEquals(666, cycles.size());
+        for (int i = 1; i < cycles.size(); i++) {
+            assertTrue(cycles.get(i - 1) <= cycles.get(i));
+        }
+    }
+
+}
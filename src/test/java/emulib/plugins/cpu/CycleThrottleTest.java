@@ -0,0 +1,127 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CycleThrottleTest {
+    private final static int UNLIMITED_CYCLES_TO_CHECK = 1 << 20;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeFrequencyThrows() throws Exception {
+        new CycleThrottle(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveSliceThrows() throws Exception {
+        new CycleThrottle(1000, 0);
+    }
+
+    @Test
+    public void testFrequencyIsTakenFromCPUContext() throws Exception {
+        CPUContext context = createMock(CPUContext.class);
+        expect(context.getCPUFrequency()).andReturn(2000).once();
+        replay(context);
+
+        CycleThrottle throttle = new CycleThrottle(context);
+
+        assertEquals(2000, throttle.getFrequency());
+        assertFalse(throttle.isUnlimited());
+        verify(context);
+    }
+
+    @Test
+    public void testZeroFrequencyIsUnlimited() throws Exception {
+        CycleThrottle throttle = new CycleThrottle(0);
+        assertTrue(throttle.isUnlimited());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10000000; i++) {
+            throttle.addCycles(4);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(40000000L, throttle.getCycles());
+        // 40 MHz would take 1 second
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void testStartResetsCycles() throws Exception {
+        CycleThrottle throttle = new CycleThrottle(0);
+        throttle.addCycles(10);
+        throttle.start();
+
+        assertEquals(0, throttle.getCycles());
+    }
+
+    @Test
+    public void testThrottledSpeedIsAchieved() throws Exception {
+        // 1 MHz; 600 ms of emulated time
+        CycleThrottle throttle = new CycleThrottle(1000);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 150000; i++) {
+            throttle.addCycles(4);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(590));
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(1.0, throttle.getAchievedMHz(), 0.2);
+    }
+
+    @Test
+    public void testFrequencyChangeIsApplied() throws Exception {
+        CycleThrottle throttle = new CycleThrottle(0);
+        throttle.setFrequency(1000);
+        assertFalse(throttle.isUnlimited());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < UNLIMITED_CYCLES_TO_CHECK + 100000; i++) {
+            throttle.addCycles(1);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // at least 100000 cycles at 1 MHz after the change
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(95));
+    }
+
+    @Test
+    public void testCyclesToNanosDoesNotOverflowAfterLongRun() throws Exception {
+        int frequencyKHz = 100000;
+        long hours = 30;
+        long cycleCount = hours * 3600 * 100000000L;
+
+        assertEquals(TimeUnit.HOURS.toNanos(hours), CycleThrottle.cyclesToNanos(cycleCount, frequencyKHz));
+        assertEquals(TimeUnit.HOURS.toNanos(hours) + 10, CycleThrottle.cyclesToNanos(cycleCount + 1, frequencyKHz));
+    }
+
+}
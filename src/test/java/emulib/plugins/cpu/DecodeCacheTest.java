@@ -0,0 +1,309 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu;
+
+import emulib.plugins.memory.AbstractByteMemoryContext;
+import emulib.runtime.exceptions.InvalidInstructionException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class DecodeCacheTest {
+    private final static int INVALID_OPCODE = 0xFF;
+
+    private AbstractByteMemoryContext memory;
+    private CountingDecoder decoder;
+    private DecodeCache cache;
+
+    // decodes two-byte instructions: opcode, operand
+    private class CountingDecoder implements Decoder {
+        private int decodings;
+        private int compactDecodings;
+        private boolean imageSet = true;
+
+        @Override
+        public DecodedInstruction decode(int memoryPosition) throws InvalidInstructionException {
+            decodings++;
+            byte opcode = memory.readByte(memoryPosition);
+            if ((opcode & 0xFF) == INVALID_OPCODE) {
+                throw new InvalidInstructionException("Invalid opcode");
+            }
+            DecodedInstruction instruction = new DecodedInstruction();
+            instruction.add(0, "OP", opcode);
+            instruction.add(1, "ARG", memory.readByte(memoryPosition + 1));
+            if (imageSet) {
+                instruction.setImage(new byte[] { opcode, memory.readByte(memoryPosition + 1) });
+            }
+            return instruction;
+        }
+
+        @Override
+        public void decode(int memoryPosition, CompactDecodedInstruction instruction)
+                throws InvalidInstructionException {
+            compactDecodings++;
+            byte opcode = memory.readByte(memoryPosition);
+            if ((opcode & 0xFF) == INVALID_OPCODE) {
+                throw new InvalidInstructionException("Invalid opcode");
+            }
+            instruction.reset();
+            instruction.add(0, "OP", opcode);
+            instruction.add(1, "ARG", memory.readByte(memoryPosition + 1));
+            if (imageSet) {
+                instruction.setImage(new byte[] { opcode, memory.readByte(memoryPosition + 1) }, 0, 2);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        memory = new AbstractByteMemoryContext(64) {};
+        decoder = new CountingDecoder();
+        cache = new DecodeCache(decoder, memory, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyPageBitsThrows() {
+        new DecodeCache(decoder, memory, 17);
+    }
+
+    @Test
+    public void testRepeatedDecodeIsCached() throws Exception {
+        DecodedInstruction instruction = cache.decode(10);
+
+        assertSame(instruction, cache.decode(10));
+        assertEquals(1, decoder.decodings);
+    }
+
+    @Test
+    public void testInstructionsInDifferentPagesAreCached() throws Exception {
+        DecodedInstruction first = cache.decode(0);
+        DecodedInstruction second = cache.decode(40);
+
+        assertSame(first, cache.decode(0));
+        assertSame(second, cache.decode(40));
+        assertEquals(2, decoder.decodings);
+    }
+
+    @Test
+    public void testSinglePageBitsWork() throws Exception {
+        cache = new DecodeCache(decoder, memory, 0);
+        DecodedInstruction instruction = cache.decode(62);
+
+        assertSame(instruction, cache.decode(62));
+        assertEquals(1, decoder.decodings);
+    }
+
+    @Test
+    public void testWriteToOperandInvalidatesInstruction() throws Exception {
+        memory.writeByte(11, (byte) 5);
+        DecodedInstruction instruction = cache.decode(10);
+
+        memory.writeByte(11, (byte) 6);
+        DecodedInstruction modified = cache.decode(10);
+
+        assertNotSame(instruction, modified);
+        assertEquals(6, modified.get(1));
+        assertEquals(2, decoder.decodings);
+    }
+
+    @Test
+    public void testWriteAcrossPageBoundaryInvalidatesInstruction() throws Exception {
+        DecodedInstruction instruction = cache.decode(15);
+
+        memory.writeByte(16, (byte) 1);
+
+        assertNotSame(instruction, cache.decode(15));
+    }
+
+    @Test
+    public void testWriteOutsideInstructionKeepsIt() throws Exception {
+        DecodedInstruction instruction = cache.decode(10);
+
+        memory.writeByte(9, (byte) 1);
+        memory.writeByte(12, (byte) 1);
+
+        assertSame(instruction, cache.decode(10));
+        assertEquals(1, decoder.decodings);
+    }
+
+    @Test
+    public void testClearInvalidatesEverything() throws Exception {
+        DecodedInstruction first = cache.decode(0);
+        DecodedInstruction second = cache.decode(50);
+
+        memory.clear();
+
+        assertNotSame(first, cache.decode(0));
+        assertNotSame(second, cache.decode(50));
+    }
+
+    @Test
+    public void testMemorySizeChangeInvalidatesEverything() throws Exception {
+        DecodedInstruction instruction = cache.decode(20);
+
+        memory.notifyMemorySizeChanged();
+
+        assertNotSame(instruction, cache.decode(20));
+    }
+
+    @Test
+    public void testManualInvalidation() throws Exception {
+        DecodedInstruction first = cache.decode(20);
+        DecodedInstruction second = cache.decode(30);
+
+        cache.invalidate(21, 22);
+        assertNotSame(first, cache.decode(20));
+        assertSame(second, cache.decode(30));
+
+        cache.invalidateAll();
+        assertNotSame(second, cache.decode(30));
+    }
+
+    @Test
+    public void testPositionsOutsideMemoryAreNotCached() throws Exception {
+        memory = new AbstractByteMemoryContext(64) {
+            @Override
+            public byte readByte(int memoryPosition) {
+                return 0;
+            }
+        };
+        cache = new DecodeCache(decoder, memory, 4);
+
+        cache.decode(64);
+        cache.decode(64);
+        cache.decode(-1);
+
+        assertEquals(3, decoder.decodings);
+    }
+
+    @Test
+    public void testInvalidInstructionIsNotCached() throws Exception {
+        memory.writeByte(5, (byte) INVALID_OPCODE);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.decode(5);
+                fail("Expected InvalidInstructionException");
+            } catch (InvalidInstructionException e) {
+                // expected
+            }
+        }
+        assertEquals(2, decoder.decodings);
+    }
+
+    @Test
+    public void testCloseUnregistersAndDropsInstructions() throws Exception {
+        DecodedInstruction instruction = cache.decode(10);
+
+        cache.close();
+        DecodedInstruction decodedAgain = cache.decode(10);
+        memory.writeByte(10, (byte) 1);
+        DecodedInstruction decodedAfterWrite = cache.decode(10);
+
+        assertNotSame(instruction, decodedAgain);
+        assertNotSame(decodedAgain, decodedAfterWrite);
+        assertEquals(1, decodedAfterWrite.get(0));
+        assertEquals(3, decoder.decodings);
+    }
+
+    @Test
+    public void testCompactDecodeUsesCompactMethodOfDecoder() throws Exception {
+        memory.writeByte(10, (byte) 5);
+        memory.writeByte(11, (byte) 6);
+        CompactDecodedInstruction instruction = new CompactDecodedInstruction();
+
+        cache.decode(10, instruction);
+
+        assertEquals(1, decoder.compactDecodings);
+        assertEquals(0, decoder.decodings);
+        assertEquals(5, instruction.get(0));
+        assertEquals(6, instruction.get(1));
+    }
+
+    @Test
+    public void testRepeatedCompactDecodeIsCached() throws Exception {
+        memory.writeByte(10, (byte) 5);
+        CompactDecodedInstruction instruction = new CompactDecodedInstruction();
+        cache.decode(10, new CompactDecodedInstruction());
+
+        cache.decode(10, instruction);
+
+        assertEquals(1, decoder.compactDecodings);
+        assertEquals(5, instruction.get(0));
+        assertEquals("OP", instruction.getString(0));
+        assertEquals(2, instruction.getLength());
+    }
+
+    @Test
+    public void testWriteToOperandInvalidatesCompactInstruction() throws Exception {
+        CompactDecodedInstruction instruction = new CompactDecodedInstruction();
+        cache.decode(10, instruction);
+
+        memory.writeByte(11, (byte) 7);
+        cache.decode(10, instruction);
+
+        assertEquals(2, decoder.compactDecodings);
+        assertEquals(7, instruction.get(1));
+    }
+
+    @Test
+    public void testInstructionWithoutImageIsNotCached() throws Exception {
+        decoder.imageSet = false;
+        cache.decode(10);
+
+        memory.writeByte(11, (byte) 7);
+        DecodedInstruction instruction = cache.decode(10);
+
+        assertEquals(2, decoder.decodings);
+        assertEquals(7, instruction.get(1));
+    }
+
+    @Test
+    public void testWriteToOperandOfCompactInstructionWithoutImageIsSeen() throws Exception {
+        decoder.imageSet = false;
+        CompactDecodedInstruction instruction = new CompactDecodedInstruction();
+        cache.decode(10, instruction);
+
+        memory.writeByte(11, (byte) 7);
+        cache.decode(10, instruction);
+
+        assertEquals(2, decoder.compactDecodings);
+        assertEquals(7, instruction.get(1));
+    }
+
+    @Test
+    public void testClosedCacheDoesNotCacheCompactInstructions() throws Exception {
+        CompactDecodedInstruction instruction = new CompactDecodedInstruction();
+        cache.decode(10, instruction);
+
+        cache.close();
+        memory.writeByte(10, (byte) 1);
+        cache.decode(10, instruction);
+        cache.decode(10, instruction);
+
+        assertEquals(3, decoder.compactDecodings);
+        assertEquals(1, instruction.get(0));
+    }
+
+}
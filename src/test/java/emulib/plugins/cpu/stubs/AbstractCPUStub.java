@@ -25,6 +25,7 @@ import emulib.emustudio.SettingsManager;
 import emulib.runtime.exceptions.PluginInitializationException;
 import emulib.plugins.cpu.AbstractCPU;
 import emulib.plugins.cpu.Disassembler;
+import emulib.plugins.memory.Watchpoint;
 
 import javax.swing.*;
 import java.util.concurrent.CountDownLatch;
@@ -42,6 +43,8 @@ public class AbstractCPUStub extends AbstractCPU {
 
     private RunState runStateToReturn = RunState.STATE_STOPPED_NORMAL;
     private RuntimeException exceptionToThrow;
+    private volatile boolean hitWatchpoint;
+    private volatile boolean interruptsIgnored;
 
     public AbstractCPUStub(Long id) {
         super(id);
@@ -59,9 +62,28 @@ public class AbstractCPUStub extends AbstractCPU {
         this.exceptionToThrow = exceptionToThrow;
     }
 
+    public void setHitWatchpoint(boolean hitWatchpoint) {
+        this.hitWatchpoint = hitWatchpoint;
+    }
+
+    public void setInterruptsIgnored(boolean interruptsIgnored) {
+        this.interruptsIgnored = interruptsIgnored;
+    }
+
+    private void hitWatchpointIfSet() {
+        if (hitWatchpoint) {
+            hitWatchpointInCurrentThread();
+        }
+    }
+
+    public void hitWatchpointInCurrentThread() {
+        getWatchpointListener().watchpointHit(new Watchpoint(0, 1, Watchpoint.Type.READ), 0, 0);
+    }
+
     @Override
     protected RunState stepInternal() {
         throwIfSet();
+        hitWatchpointIfSet();
         return runStateToReturn;
     }
 
@@ -108,8 +130,9 @@ public class AbstractCPUStub extends AbstractCPU {
         runCalled = true;
         latch.countDown();
         throwIfSet();
+        hitWatchpointIfSet();
 
-        while (!Thread.currentThread().isInterrupted()) {
+        while (interruptsIgnored || !Thread.currentThread().isInterrupted()) {
 
         }
 
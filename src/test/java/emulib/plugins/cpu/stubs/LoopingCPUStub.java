@@ -0,0 +1,120 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.plugins.cpu.stubs;
+
+import emulib.annotations.PLUGIN_TYPE;
+import emulib.annotations.PluginType;
+import emulib.emustudio.SettingsManager;
+import emulib.plugins.cpu.AbstractCPU;
+import emulib.plugins.cpu.Disassembler;
+import emulib.plugins.memory.Watchpoint;
+
+import javax.swing.*;
+
+/**
+ * CPU which does not override the emulation loop. Every instruction just increments the instruction position.
+ */
+@PluginType(
+        type = PLUGIN_TYPE.CPU,
+        title = "title",
+        copyright = "copyright",
+        description = "description"
+)
+public class LoopingCPUStub extends AbstractCPU {
+    public final static int CYCLES_PER_INSTRUCTION = 4;
+
+    private final int batchSize;
+
+    private volatile int position;
+    private volatile int haltPosition = -1;
+    private volatile int watchpointPosition = -1;
+
+    public LoopingCPUStub(Long id, int batchSize) {
+        super(id);
+        this.batchSize = batchSize;
+    }
+
+    public void setHaltPosition(int haltPosition) {
+        this.haltPosition = haltPosition;
+    }
+
+    public void setWatchpointPosition(int watchpointPosition) {
+        this.watchpointPosition = watchpointPosition;
+    }
+
+    @Override
+    protected RunState stepInternal() {
+        int current = position;
+        if (current == haltPosition) {
+            return RunState.STATE_STOPPED_NORMAL;
+        }
+        if (current == watchpointPosition) {
+            getWatchpointListener().watchpointHit(new Watchpoint(0, 1, Watchpoint.Type.READ), 0, 0);
+        }
+        position = current + 1;
+        advanceCycles(CYCLES_PER_INSTRUCTION);
+        return RunState.STATE_STOPPED_BREAK;
+    }
+
+    @Override
+    protected int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int getInstructionPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean setInstructionPosition(int pos) {
+        position = pos;
+        return true;
+    }
+
+    @Override
+    protected void resetInternal(int startPos) {
+        position = startPos;
+    }
+
+    @Override
+    protected void destroyInternal() {
+    }
+
+    @Override
+    public JPanel getStatusPanel() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Disassembler getDisassembler() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void initialize(SettingsManager settingsManager) {
+    }
+
+    @Override
+    public String getVersion() {
+        throw new UnsupportedOperationException();
+    }
+
+}
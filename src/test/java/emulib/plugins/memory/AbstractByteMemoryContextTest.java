@@ -0,0 +1,282 @@
+package emulib.plugins.memory;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.same;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractByteMemoryContextTest {
+    private AbstractByteMemoryContext memory;
+
+    @Before
+    public void setUp() {
+        memory = new AbstractByteMemoryContext(16) {};
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSizeThrows() {
+        new AbstractByteMemoryContext(-1) {};
+    }
+
+    @Test
+    public void testGetSizeAndDataType() {
+        assertEquals(16, memory.getSize());
+        assertEquals(Byte.class, memory.getDataType());
+    }
+
+    @Test
+    public void testWriteByteIsReadBackByBoxedRead() {
+        memory.writeByte(3, (byte) 0xAB);
+        assertEquals(Byte.valueOf((byte) 0xAB), memory.read(3));
+    }
+
+    @Test
+    public void testBoxedWriteIsReadBackByReadByte() {
+        memory.write(4, (byte) 0x12);
+        assertEquals((byte) 0x12, memory.readByte(4));
+    }
+
+    @Test
+    public void testReadWordIntoBufferIsZeroExtended() {
+        memory.writeWord(5, 0xFE, 0x81);
+
+        int[] buffer = new int[2];
+        memory.readWord(5, buffer);
+
+        assertArrayEquals(new int[] { 0xFE, 0x81 }, buffer);
+        assertArrayEquals(new Byte[] { (byte) 0xFE, (byte) 0x81 }, memory.readWord(5));
+    }
+
+    @Test
+    public void testBoxedWriteWord() {
+        memory.writeWord(0, new Byte[] { 1, 2 });
+        assertEquals(1, memory.readByte(0));
+        assertEquals(2, memory.readByte(1));
+    }
+
+    @Test
+    public void testWriteByteNotifiesListeners() {
+        Memory.MemoryListener listener = EasyMock.createNiceMock(Memory.MemoryListener.class);
+        listener.memoryChanged(eq(7));
+        expectLastCall().once();
+        replay(listener);
+
+        memory.addMemoryListener(listener);
+        memory.writeByte(7, (byte) 1);
+
+        verify(listener);
+    }
+
+    @Test
+    public void testClearZeroesMemory() {
+        memory.writeByte(2, (byte) 5);
+        memory.clear();
+        assertEquals(0, memory.readByte(2));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testReadOutOfBoundsThrows() {
+        memory.readByte(16);
+    }
+
+    @Test
+    public void testWriteBlockIsReadBackByReadBlock() {
+        memory.writeBlock(2, new byte[] { 9, 1, 2, 3, 9 }, 1, 3);
+
+        byte[] result = new byte[3];
+        memory.readBlock(2, result, 0, 3);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, result);
+    }
+
+    @Test
+    public void testWriteBlockNotifiesListenersOnceForWholeRange() {
+        Memory.MemoryListener listener = EasyMock.createStrictMock(Memory.MemoryListener.class);
+        listener.memoryRangeChanged(eq(2), eq(5));
+        expectLastCall().once();
+        replay(listener);
+
+        memory.addMemoryListener(listener);
+        memory.writeBlock(2, new byte[] { 1, 2, 3 }, 0, 3);
+
+        verify(listener);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testWriteBlockOutOfBoundsThrows() {
+        memory.writeBlock(15, new byte[] { 1, 2 }, 0, 2);
+    }
+
+    @Test
+    public void testByteBufferBlockTransfer() {
+        memory.writeBlock(4, ByteBuffer.wrap(new byte[] { 5, 6, 7 }));
+
+        ByteBuffer result = ByteBuffer.allocate(3);
+        memory.readBlock(4, result);
+        assertArrayEquals(new byte[] { 5, 6, 7 }, result.array());
+        assertEquals(0, result.remaining());
+    }
+
+    @Test
+    public void testBoxedBlockTransfer() {
+        memory.writeBlock(0, new Byte[] { 1, 2 }, 0, 2);
+
+        Byte[] result = new Byte[2];
+        memory.readBlock(0, result, 0, 2);
+        assertArrayEquals(new Byte[] { 1, 2 }, result);
+    }
+
+    @Test
+    public void testFill() {
+        memory.fill(3, 4, (byte) 7);
+
+        assertEquals(0, memory.readByte(2));
+        assertEquals(7, memory.readByte(3));
+        assertEquals(7, memory.readByte(6));
+        assertEquals(0, memory.readByte(7));
+    }
+
+    @Test
+    public void testMoveOverlappingRanges() {
+        memory.writeBlock(0, new byte[] { 1, 2, 3, 4 }, 0, 4);
+        memory.move(0, 2, 4);
+
+        byte[] result = new byte[6];
+        memory.readBlock(0, result, 0, 6);
+        assertArrayEquals(new byte[] { 1, 2, 1, 2, 3, 4 }, result);
+    }
+
+    @Test
+    public void testClearNotifiesWholeRange() {
+        Memory.MemoryListener listener = EasyMock.createStrictMock(Memory.MemoryListener.class);
+        listener.memoryRangeChanged(eq(0), eq(16));
+        expectLastCall().once();
+        replay(listener);
+
+        memory.addMemoryListener(listener);
+        memory.clear();
+
+        verify(listener);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testReadBlockOutOfBoundsThrows() {
+        memory.readBlock(15, new byte[2], 0, 2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testMoveOutOfBoundsThrows() {
+        memory.move(0, 15, 2);
+    }
+
+    @Test
+    public void testBlockOperationsGoThroughOverriddenWriteByte() {
+        // cells 0-3 are ROM
+        memory = new AbstractByteMemoryContext(16) {
+            @Override
+            public void writeByte(int memoryPosition, byte value) {
+                if (memoryPosition >= 4) {
+                    super.writeByte(memoryPosition, value);
+                }
+            }
+        };
+
+        memory.writeBlock(0, new byte[] { 1, 2, 3, 4, 5, 6 }, 0, 6);
+        memory.writeBlock(0, ByteBuffer.wrap(new byte[] { 1, 2 }));
+        memory.writeBlock(0, new Byte[] { 1, 2 }, 0, 2);
+        memory.fill(2, 4, (byte) 7);
+        memory.move(4, 0, 4);
+
+        byte[] result = new byte[6];
+        memory.readBlock(0, result, 0, 6);
+        assertArrayEquals(new byte[] { 0, 0, 0, 0, 7, 7 }, result);
+
+        memory.clear();
+        assertEquals(0, memory.readByte(4));
+    }
+
+    @Test
+    public void testBlockReadGoesThroughOverriddenReadByte() {
+        // a bank switched into cells 0-7
+        memory = new AbstractByteMemoryContext(16) {
+            @Override
+            public byte readByte(int memoryPosition) {
+                return (memoryPosition < 8) ? (byte) 0x55 : super.readByte(memoryPosition);
+            }
+        };
+        memory.writeBlock(6, new byte[] { 1, 2, 3 }, 0, 3);
+
+        byte[] result = new byte[4];
+        memory.readBlock(6, result, 0, 4);
+        assertArrayEquals(new byte[] { 0x55, 0x55, 3, 0 }, result);
+
+        ByteBuffer buffer = ByteBuffer.allocate(2);
+        memory.readBlock(7, buffer);
+        assertArrayEquals(new byte[] { 0x55, 3 }, buffer.array());
+
+        memory.move(6, 10, 2);
+        assertEquals(0x55, memory.readByte(10));
+    }
+
+    @Test
+    public void testWatchpointsAreSupported() {
+        assertTrue(memory.isWatchpointSupported());
+    }
+
+    @Test
+    public void testWriteWatchpointIsHitWithZeroExtendedValue() {
+        Watchpoint watchpoint = new Watchpoint(4, 6, Watchpoint.Type.WRITE, 0x80);
+        Memory.WatchpointListener listener = EasyMock.createStrictMock(Memory.WatchpointListener.class);
+        listener.watchpointHit(same(watchpoint), eq(5), eq(0x80));
+        expectLastCall().once();
+        replay(listener);
+
+        memory.setWatchpoint(watchpoint);
+        memory.addWatchpointListener(listener);
+        memory.writeByte(5, (byte) 0x7F);
+        memory.writeByte(5, (byte) 0x80);
+        memory.readByte(5);
+        memory.writeByte(6, (byte) 0x80);
+
+        verify(listener);
+    }
+
+    @Test
+    public void testReadWatchpointIsHitByBlockRead() {
+        Watchpoint watchpoint = new Watchpoint(4, 5, Watchpoint.Type.READ);
+        Memory.WatchpointListener listener = EasyMock.createStrictMock(Memory.WatchpointListener.class);
+        listener.watchpointHit(same(watchpoint), eq(4), eq(0));
+        expectLastCall().once();
+        replay(listener);
+
+        memory.setWatchpoint(watchpoint);
+        memory.addWatchpointListener(listener);
+        memory.readBlock(0, new byte[8], 0, 8);
+
+        verify(listener);
+    }
+
+    @Test
+    public void testUnsetWatchpointIsNotHit() {
+        Watchpoint watchpoint = new Watchpoint(0, 16, Watchpoint.Type.ACCESS);
+        Memory.WatchpointListener listener = EasyMock.createStrictMock(Memory.WatchpointListener.class);
+        replay(listener);
+
+        memory.setWatchpoint(watchpoint);
+        memory.unsetWatchpoint(watchpoint);
+        memory.addWatchpointListener(listener);
+        memory.writeByte(1, (byte) 1);
+        memory.readByte(1);
+
+        verify(listener);
+    }
+}
@@ -0,0 +1,39 @@
+package emulib.plugins.memory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AbstractIntMemoryContextTest {
+    private AbstractIntMemoryContext memory;
+
+    @Before
+    public void setUp() {
+        memory = new AbstractIntMemoryContext(16) {};
+    }
+
+    @Test
+    public void testGetSizeAndDataType() {
+        assertEquals(16, memory.getSize());
+        assertEquals(Integer.class, memory.getDataType());
+    }
+
+    @Test
+    public void testReadWordIntoBufferKeepsWholeValues() {
+        memory.writeWord(5, -1, 0x12345678);
+
+        int[] buffer = new int[2];
+        memory.readWord(5, buffer);
+
+        assertArrayEquals(new int[] { -1, 0x12345678 }, buffer);
+        assertArrayEquals(new Integer[] { -1, 0x12345678 }, memory.readWord(5));
+    }
+
+    @Test
+    public void testBoxedWriteIsReadBackByReadInt() {
+        memory.write(4, 0xCAFE);
+        assertEquals(0xCAFE, memory.readInt(4));
+    }
+}
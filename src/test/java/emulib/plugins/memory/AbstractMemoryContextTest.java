@@ -4,11 +4,16 @@ import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.easymock.EasyMock.anyInt;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 
 public class AbstractMemoryContextTest {
     private AbstractMemoryContext memory;
@@ -71,4 +76,47 @@ public class AbstractMemoryContextTest {
         verify(listener);
     }
 
+
+    @Test
+    public void testListenerIsCalledAfterNotifyRangeChange() {
+        Memory.MemoryListener listener = EasyMock.createNiceMock(Memory.MemoryListener.class);
+        listener.memoryRangeChanged(eq(10), eq(20));
+        expectLastCall().once();
+        replay(listener);
+
+        memory.addMemoryListener(listener);
+        memory.notifyMemoryRangeChanged(10, 20);
+
+        verify(listener);
+    }
+
+    @Test
+    public void testEmptyRangeIsNotNotified() {
+        Memory.MemoryListener listener = EasyMock.createNiceMock(Memory.MemoryListener.class);
+        replay(listener);
+
+        memory.addMemoryListener(listener);
+        memory.notifyMemoryRangeChanged(10, 10);
+
+        verify(listener);
+    }
+
+    @Test
+    public void testDefaultRangeChangeCallsSingleChanges() {
+        List<Integer> changes = new ArrayList<>();
+        memory.addMemoryListener(new Memory.MemoryListener() {
+            @Override
+            public void memoryChanged(int memoryPosition) {
+                changes.add(memoryPosition);
+            }
+
+            @Override
+            public void memorySizeChanged() {
+            }
+        });
+        memory.notifyMemoryRangeChanged(3, 6);
+
+        assertEquals(Arrays.asList(3, 4, 5), changes);
+    }
+
 }
@@ -0,0 +1,85 @@
+package emulib.plugins.memory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AbstractShortMemoryContextTest {
+    private AbstractShortMemoryContext memory;
+
+    @Before
+    public void setUp() {
+        memory = new AbstractShortMemoryContext(16) {};
+    }
+
+    @Test
+    public void testGetSizeAndDataType() {
+        assertEquals(16, memory.getSize());
+        assertEquals(Short.class, memory.getDataType());
+    }
+
+    @Test
+    public void testWriteShortIsReadBackByBoxedRead() {
+        memory.writeShort(3, (short) 0xAB);
+        assertEquals(Short.valueOf((short) 0xAB), memory.read(3));
+    }
+
+    @Test
+    public void testReadWordIntoBufferIsZeroExtended() {
+        memory.writeWord(5, 0xFFFE, 0x81);
+
+        int[] buffer = new int[2];
+        memory.readWord(5, buffer);
+
+        assertArrayEquals(new int[] { 0xFFFE, 0x81 }, buffer);
+        assertArrayEquals(new Short[] { (short) 0xFFFE, (short) 0x81 }, memory.readWord(5));
+    }
+
+    @Test
+    public void testBoxedWriteWord() {
+        memory.writeWord(0, new Short[] { 1, 2 });
+        assertEquals(1, memory.readShort(0));
+        assertEquals(2, memory.readShort(1));
+    }
+
+    @Test
+    public void testWriteBlockOfBytesIsZeroExtended() {
+        memory.writeBlock(0, new byte[] { (byte) 0xFF, 1 }, 0, 2);
+
+        short[] result = new short[2];
+        memory.readBlock(0, result, 0, 2);
+        assertArrayEquals(new short[] { 0xFF, 1 }, result);
+    }
+
+    @Test
+    public void testReadBlockOfBytesTakesLowerBits() {
+        memory.writeBlock(0, new short[] { 0x1234, 0x56 }, 0, 2);
+
+        byte[] result = new byte[2];
+        memory.readBlock(0, result, 0, 2);
+        assertArrayEquals(new byte[] { 0x34, 0x56 }, result);
+    }
+
+    @Test
+    public void testBlockWritesGoThroughOverriddenWriteShort() {
+        // cell 0 is ROM
+        memory = new AbstractShortMemoryContext(4) {
+            @Override
+            public void writeShort(int memoryPosition, short value) {
+                if (memoryPosition > 0) {
+                    super.writeShort(memoryPosition, value);
+                }
+            }
+        };
+
+        memory.writeBlock(0, new short[] { 1, 2 }, 0, 2);
+        memory.writeBlock(0, new byte[] { 1, 3 }, 0, 2);
+        memory.fill(0, 1, (short) 7);
+
+        short[] result = new short[2];
+        memory.readBlock(0, result, 0, 2);
+        assertArrayEquals(new short[] { 0, 3 }, result);
+    }
+}
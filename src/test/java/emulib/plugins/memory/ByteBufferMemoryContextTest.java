@@ -0,0 +1,162 @@
+package emulib.plugins.memory;
+
+import org.easymock.EasyMock;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ByteBufferMemoryContextTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test(expected = NullPointerException.class)
+    public void testNullBufferThrows() {
+        new ByteBufferMemoryContext(null);
+    }
+
+    @Test
+    public void testDirectMemoryReadWrite() {
+        ByteBufferMemoryContext memory = ByteBufferMemoryContext.allocateDirect(32);
+
+        memory.writeByte(10, (byte) 0x7F);
+        memory.write(11, (byte) 0x80);
+
+        assertEquals(32, memory.getSize());
+        assertFalse(memory.isReadOnly());
+        assertEquals(Byte.valueOf((byte) 0x7F), memory.read(10));
+
+        int[] buffer = new int[2];
+        memory.readWord(10, buffer);
+        assertArrayEquals(new int[] { 0x7F, 0x80 }, buffer);
+    }
+
+    @Test
+    public void testPositionOfBufferIsIgnored() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.position(4);
+        ByteBufferMemoryContext memory = new ByteBufferMemoryContext(buffer);
+
+        memory.writeByte(0, (byte) 1);
+        assertEquals(1, buffer.get(0));
+        assertEquals(8, memory.getSize());
+    }
+
+    @Test
+    public void testWriteNotifiesListeners() {
+        Memory.MemoryListener listener = EasyMock.createNiceMock(Memory.MemoryListener.class);
+        listener.memoryChanged(eq(3));
+        expectLastCall().once();
+        replay(listener);
+
+        ByteBufferMemoryContext memory = ByteBufferMemoryContext.allocateDirect(8);
+        memory.addMemoryListener(listener);
+        memory.writeByte(3, (byte) 3);
+
+        verify(listener);
+    }
+
+    @Test
+    public void testClearZeroesWholeMemory() {
+        ByteBufferMemoryContext memory = ByteBufferMemoryContext.allocateDirect(10000);
+        memory.writeByte(0, (byte) 1);
+        memory.writeByte(9999, (byte) 1);
+
+        memory.clear();
+
+        assertEquals(0, memory.readByte(0));
+        assertEquals(0, memory.readByte(9999));
+    }
+
+    @Test
+    public void testMapReadOnlySeesFileContent() throws Exception {
+        File rom = temporaryFolder.newFile();
+        Files.write(rom.toPath(), new byte[] { 1, 2, 3 });
+
+        ByteBufferMemoryContext memory = ByteBufferMemoryContext.mapReadOnly(rom.toPath());
+
+        assertTrue(memory.isReadOnly());
+        assertEquals(3, memory.getSize());
+        assertEquals(3, memory.readByte(2));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testWriteIntoReadOnlyMemoryThrows() throws Exception {
+        File rom = temporaryFolder.newFile();
+        Files.write(rom.toPath(), new byte[] { 1, 2, 3 });
+
+        ByteBufferMemoryContext.mapReadOnly(rom.toPath()).writeByte(0, (byte) 0);
+    }
+
+    @Test
+    public void testBlockWritesIntoRomWithOverriddenWriteByteAreIgnored() {
+        ByteBufferMemoryContext memory = new ByteBufferMemoryContext(ByteBuffer.wrap(new byte[] { 1, 2, 3 })
+                .asReadOnlyBuffer()) {
+            @Override
+            public void writeByte(int memoryPosition, byte value) {
+                // ROM ignores writes
+            }
+        };
+        memory.writeBlock(0, new byte[] { 9, 9 }, 0, 2);
+        memory.fill(0, 3, (byte) 9);
+        memory.move(0, 1, 2);
+        memory.clear();
+
+        byte[] result = new byte[3];
+        memory.readBlock(0, result, 0, 3);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, result);
+    }
+
+    @Test
+    public void testMapReadWritePersistsChanges() throws Exception {
+        File snapshot = new File(temporaryFolder.getRoot(), "ram.bin");
+
+        ByteBufferMemoryContext memory = ByteBufferMemoryContext.mapReadWrite(snapshot.toPath(), 16);
+        memory.writeByte(15, (byte) 0x55);
+        memory.flush();
+
+        byte[] content = Files.readAllBytes(snapshot.toPath());
+        assertEquals(16, content.length);
+        assertEquals(0x55, content[15]);
+    }
+
+    @Test
+    public void testBlockTransfer() {
+        ByteBufferMemoryContext memory = ByteBufferMemoryContext.allocateDirect(16);
+        memory.writeBlock(3, new byte[] { 1, 2, 3 }, 0, 3);
+        memory.move(3, 4, 3);
+
+        byte[] result = new byte[5];
+        memory.readBlock(2, result, 0, 5);
+        assertArrayEquals(new byte[] { 0, 1, 1, 2, 3 }, result);
+    }
+
+    @Test
+    public void testByteBufferBlockTransfer() {
+        ByteBufferMemoryContext memory = ByteBufferMemoryContext.allocateDirect(16);
+        memory.writeBlock(14, ByteBuffer.wrap(new byte[] { 8, 9 }));
+
+        ByteBuffer result = ByteBuffer.allocate(2);
+        memory.readBlock(14, result);
+        assertArrayEquals(new byte[] { 8, 9 }, result.array());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBlockTransferOutOfBoundsThrows() {
+        ByteBufferMemoryContext.allocateDirect(16).writeBlock(15, ByteBuffer.wrap(new byte[] { 8, 9 }));
+    }
+}
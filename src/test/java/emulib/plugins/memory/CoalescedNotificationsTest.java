@@ -0,0 +1,136 @@
+package emulib.plugins.memory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescedNotificationsTest {
+    private AbstractByteMemoryContext memory;
+    private final List<List<Integer>> ranges = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch notified = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        memory = new AbstractByteMemoryContext(1024) {};
+        memory.addMemoryListener(new Memory.MemoryListener() {
+            @Override
+            public void memoryChanged(int memoryPosition) {
+                memoryRangeChanged(memoryPosition, memoryPosition + 1);
+            }
+
+            @Override
+            public void memoryRangeChanged(int fromPosition, int toPosition) {
+                ranges.add(Arrays.asList(fromPosition, toPosition));
+                threads.add(Thread.currentThread().getName());
+                notified.countDown();
+            }
+
+            @Override
+            public void memorySizeChanged() {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        memory.disableCoalescedNotifications();
+    }
+
+    @Test
+    public void testNotificationsAreSynchronousByDefault() {
+        assertFalse(memory.areNotificationsCoalesced());
+
+        memory.writeByte(1, (byte) 1);
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2)), ranges);
+    }
+
+    @Test
+    public void testWritesAreNotifiedAsRangesInSeparateThread() throws Exception {
+        memory.enableCoalescedNotifications(1, TimeUnit.HOURS);
+        assertTrue(memory.areNotificationsCoalesced());
+
+        memory.setMemoryNotificationsEnabled(false);
+        memory.writeByte(1, (byte) 1);
+        memory.setMemoryNotificationsEnabled(true);
+        for (int i = 10; i < 20; i++) {
+            memory.writeByte(i, (byte) i);
+        }
+        assertTrue(ranges.isEmpty());
+
+        memory.enableCoalescedNotifications(10, TimeUnit.MILLISECONDS);
+        assertTrue(notified.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(Arrays.asList(10, 20)), ranges);
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void testDisableDeliversPendingChanges() {
+        memory.enableCoalescedNotifications(1, TimeUnit.HOURS);
+        memory.writeBlock(5, new byte[] { 1, 2, 3 }, 0, 3);
+        memory.disableCoalescedNotifications();
+
+        assertFalse(memory.areNotificationsCoalesced());
+        assertEquals(Collections.singletonList(Arrays.asList(5, 8)), ranges);
+    }
+
+    @Test
+    public void testNoChangeIsLostWhenDisablingConcurrentlyWithWrites() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            AbstractByteMemoryContext tmpMemory = new AbstractByteMemoryContext(1024) {};
+            BitSet changed = new BitSet();
+            tmpMemory.addMemoryListener(new Memory.MemoryListener() {
+                @Override
+                public void memoryChanged(int memoryPosition) {
+                    memoryRangeChanged(memoryPosition, memoryPosition + 1);
+                }
+
+                @Override
+                public void memoryRangeChanged(int fromPosition, int toPosition) {
+                    synchronized (changed) {
+                        changed.set(fromPosition, toPosition);
+                    }
+                }
+
+                @Override
+                public void memorySizeChanged() {
+                }
+            });
+
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < tmpMemory.getSize(); i++) {
+                    tmpMemory.writeByte(i, (byte) 1);
+                }
+            });
+            tmpMemory.enableCoalescedNotifications(1, TimeUnit.HOURS);
+            writer.start();
+            while (writer.isAlive()) {
+                tmpMemory.disableCoalescedNotifications();
+                tmpMemory.enableCoalescedNotifications(1, TimeUnit.HOURS);
+            }
+            writer.join();
+            tmpMemory.disableCoalescedNotifications();
+
+            synchronized (changed) {
+                assertEquals(tmpMemory.getSize(), changed.cardinality());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositivePeriodThrows() {
+        memory.enableCoalescedNotifications(0, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,65 @@
+package emulib.plugins.memory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DirtyBitmapTest {
+
+    private static List<List<Integer>> drain(DirtyBitmap bitmap, int memorySize) {
+        List<List<Integer>> ranges = new ArrayList<>();
+        bitmap.drain((from, to) -> ranges.add(Arrays.asList(from, to)), memorySize);
+        return ranges;
+    }
+
+    @Test
+    public void testSinglePositionsAreCoalesced() {
+        DirtyBitmap bitmap = new DirtyBitmap(256);
+        bitmap.mark(5);
+        bitmap.mark(6);
+        bitmap.mark(7);
+        bitmap.mark(100);
+
+        assertEquals(Arrays.asList(Arrays.asList(5, 8), Arrays.asList(100, 101)), drain(bitmap, 256));
+    }
+
+    @Test
+    public void testDrainClearsBitmap() {
+        DirtyBitmap bitmap = new DirtyBitmap(256);
+        bitmap.mark(5);
+        drain(bitmap, 256);
+
+        assertEquals(Collections.emptyList(), drain(bitmap, 256));
+    }
+
+    @Test
+    public void testRangeAcrossWordBoundaries() {
+        DirtyBitmap bitmap = new DirtyBitmap(300);
+        bitmap.mark(60, 200);
+
+        assertEquals(Collections.singletonList(Arrays.asList(60, 200)), drain(bitmap, 300));
+    }
+
+    @Test
+    public void testRangeUpToEnd() {
+        DirtyBitmap bitmap = new DirtyBitmap(128);
+        bitmap.mark(64, 128);
+
+        assertEquals(Collections.singletonList(Arrays.asList(64, 128)), drain(bitmap, 128));
+    }
+
+    @Test
+    public void testPositionOutOfBitmapMarksEverything() {
+        DirtyBitmap bitmap = new DirtyBitmap(128);
+        bitmap.mark(3);
+        bitmap.mark(500);
+
+        assertEquals(Collections.singletonList(Arrays.asList(0, 1000)), drain(bitmap, 1000));
+        assertEquals(Collections.emptyList(), drain(bitmap, 1000));
+    }
+}
@@ -0,0 +1,49 @@
+package emulib.plugins.memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WatchpointTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyRangeThrows() {
+        new Watchpoint(5, 5, Watchpoint.Type.READ);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullTypeThrows() {
+        new Watchpoint(0, 5, null);
+    }
+
+    @Test
+    public void testRangeIsHalfOpen() {
+        Watchpoint watchpoint = new Watchpoint(2, 4, Watchpoint.Type.ACCESS);
+
+        assertFalse(watchpoint.matches(1, 0, true));
+        assertTrue(watchpoint.matches(2, 0, true));
+        assertTrue(watchpoint.matches(3, 0, false));
+        assertFalse(watchpoint.matches(4, 0, false));
+    }
+
+    @Test
+    public void testTypeIsMatched() {
+        Watchpoint read = new Watchpoint(0, 1, Watchpoint.Type.READ);
+        Watchpoint write = new Watchpoint(0, 1, Watchpoint.Type.WRITE);
+
+        assertTrue(read.matches(0, 0, false));
+        assertFalse(read.matches(0, 0, true));
+        assertTrue(write.matches(0, 0, true));
+        assertFalse(write.matches(0, 0, false));
+    }
+
+    @Test
+    public void testValueIsMatched() {
+        Watchpoint watchpoint = new Watchpoint(0, 1, Watchpoint.Type.WRITE, 0xFF);
+
+        assertTrue(watchpoint.isValueMatched());
+        assertTrue(watchpoint.matches(0, 0xFF, true));
+        assertFalse(watchpoint.matches(0, 0xFE, true));
+    }
+}
@@ -43,12 +43,19 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ContextPoolTest {
     private CPUContextStub cpuContextMock;
@@ -71,6 +78,16 @@ public class ContextPoolTest {
         }
     }
 
+    private class CountingComputerStub implements PluginConnections {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public boolean isConnected(long pluginID, long toPluginID) {
+            calls.incrementAndGet();
+            return pluginID != toPluginID;
+        }
+    }
+
     @ContextType
     private interface DifferentCPUContextStubWithEqualHash extends CPUContextStub {
 
@@ -418,4 +435,142 @@ public class ContextPoolTest {
         );
     }
 
+    @Test
+    public void testComputeHashIsComputedOncePerClass() throws Exception {
+        String hash = ContextPool.computeHash(CPUContextStub.class);
+
+        assertSame(hash, ContextPool.computeHash(CPUContextStub.class));
+        assertEquals(hash, ContextPool.computeHash(DifferentCPUContextStubWithEqualHash.class));
+    }
+
+    @Test(expected = ContextNotFoundException.class)
+    public void testUnregisteredContextIsNotFound() throws Exception {
+        contextPool.register(0, cpuContextMock, CPUContext.class);
+        assertTrue(contextPool.unregister(0, CPUContext.class));
+
+        contextPool.getCPUContext(1, CPUContext.class);
+    }
+
+    @Test
+    public void testContextOwnedByOtherPluginIsStillAccessibleAfterUnregister() throws Exception {
+        contextPool.register(0, cpuContextMock, CPUContext.class);
+        contextPool.register(2, memContextMock, MemoryContext.class);
+        assertTrue(contextPool.unregister(0, CPUContext.class));
+
+        assertEquals(memContextMock, contextPool.getMemoryContext(1, MemoryContext.class));
+    }
+
+    @Test
+    public void testGetContextWhileRegisteringOtherContexts() throws Exception {
+        contextPool.register(0, cpuContextMock, CPUContext.class);
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    assertEquals(cpuContextMock, contextPool.getCPUContext(1, CPUContext.class));
+                }
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                contextPool.register(2, devContextMock, DeviceContext.class);
+                assertTrue(contextPool.unregister(2, DeviceContext.class));
+            }
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+
+        assertNull(error.get());
+    }
+
+    @Test
+    public void testPermissionDecisionIsCached() throws Exception {
+        CountingComputerStub computer = new CountingComputerStub();
+        assertTrue(contextPool.setComputer(APITest.getEmuStudioPassword(), computer));
+        contextPool.register(0, cpuContextMock, CPUContext.class);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(cpuContextMock, contextPool.getCPUContext(1, CPUContext.class));
+        }
+        assertEquals(1, computer.calls.get());
+
+        assertEquals(cpuContextMock, contextPool.getCPUContext(2, CPUContext.class));
+        assertEquals(2, computer.calls.get());
+    }
+
+    @Test
+    public void testPermissionDecisionsOfManyPluginsAreCached() throws Exception {
+        CountingComputerStub computer = new CountingComputerStub();
+        assertTrue(contextPool.setComputer(APITest.getEmuStudioPassword(), computer));
+        long owner = 1000000000L;
+        contextPool.register(owner, cpuContextMock, CPUContext.class);
+
+        long[] pluginIDs = { 5000000000L, 7, 3000000000L, -1, owner };
+        for (int i = 0; i < 3; i++) {
+            for (long pluginID : pluginIDs) {
+                try {
+                    assertEquals(cpuContextMock, contextPool.getCPUContext(pluginID, CPUContext.class));
+                    assertTrue(pluginID != owner);
+                } catch (ContextNotFoundException e) {
+                    // the owner is not connected to itself
+                    assertEquals(owner, pluginID);
+                }
+            }
+        }
+        assertEquals(pluginIDs.length, computer.calls.get());
+    }
+
+    @Test
+    public void testPermissionCacheIsInvalidatedBySetComputer() throws Exception {
+        contextPool.register(0, cpuContextMock, CPUContext.class);
+        assertEquals(cpuContextMock, contextPool.getCPUContext(1, CPUContext.class));
+
+        assertTrue(contextPool.setComputer(APITest.getEmuStudioPassword(), new ComputerStub(false)));
+
+        try {
+            contextPool.getCPUContext(1, CPUContext.class);
+            fail("Expected ContextNotFoundException");
+        } catch (ContextNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPermissionCacheIsInvalidatedByRegister() throws Exception {
+        CountingComputerStub computer = new CountingComputerStub();
+        assertTrue(contextPool.setComputer(APITest.getEmuStudioPassword(), computer));
+        contextPool.register(0, cpuContextMock, CPUContext.class);
+        assertEquals(cpuContextMock, contextPool.getCPUContext(1, CPUContext.class));
+
+        contextPool.register(2, devContextMock, DeviceContext.class);
+        assertEquals(cpuContextMock, contextPool.getCPUContext(1, CPUContext.class));
+
+        assertEquals(2, computer.calls.get());
+    }
+
+    @Test
+    public void testContextRegisteredByTwoOwnersKeepsSecondOwnerAfterUnregister() throws Exception {
+        CountingComputerStub computer = new CountingComputerStub();
+        assertTrue(contextPool.setComputer(APITest.getEmuStudioPassword(), computer));
+        contextPool.register(0, cpuContextMock, CPUContextStub.class);
+        contextPool.register(1, cpuContextMock, CPUContext.class);
+
+        assertTrue(contextPool.unregister(0, CPUContextStub.class));
+
+        // plug-in 1 is the owner now, so it cannot access its own context
+        try {
+            contextPool.getCPUContext(1, CPUContext.class);
+            fail("Expected ContextNotFoundException");
+        } catch (ContextNotFoundException e) {
+            // expected
+        }
+        assertEquals(cpuContextMock, contextPool.getCPUContext(0, CPUContext.class));
+    }
+
 }
@@ -29,12 +29,14 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class HEXFileManagerTest {
@@ -100,6 +102,28 @@ public class HEXFileManagerTest {
         assertEquals("02", codeTable.get(0));
     }
     
+    @Test
+    public void testPutIntoCodeTableWritesThroughToProgram() {
+        hexFile.putCode("0102");
+        Map<Integer, String> codeTable = hexFile.getTable();
+
+        assertEquals("01", codeTable.put(0, "AB"));
+        codeTable.put(5, "0C");
+        codeTable.entrySet().iterator().next().setValue("CD");
+
+        assertEquals(0xCD, hexFile.getProgramImage().get(0));
+        assertEquals(0x0C, hexFile.getProgramImage().get(5));
+        assertEquals(3, codeTable.size());
+        assertEquals("CD", hexFile.getTable().get(0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveFromCodeTableThrows() {
+        hexFile.putCode("01");
+
+        hexFile.getTable().remove(0);
+    }
+
     @Test
     public void testProgramStartOnEmptyCode() {
         assertEquals(0, hexFile.getProgramStart());
@@ -185,6 +209,52 @@ public class HEXFileManagerTest {
         hexFile = HEXFileManager.parseFromFile(toFile(INVALID6_HEX_FILE));
     }
 
+    private File writeHexWithBadChecksum() throws Exception {
+        File file = File.createTempFile("bad-checksum", ".hex");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList(":0300040001020300", ":00000001FF"));
+        return file;
+    }
+
+    @Test(expected = Exception.class)
+    public void testParsingFileWithBadChecksumThrows() throws Exception {
+        HEXFileManager.parseFromFile(writeHexWithBadChecksum());
+    }
+
+    @Test(expected = Exception.class)
+    public void testLoadingFileWithBadChecksumThrows() throws Exception {
+        HEXFileManager.loadIntoMemory(writeHexWithBadChecksum(), new MemoryContextStub());
+    }
+
+    @Test
+    public void testFileWithThreeDigitChecksumsOfOlderVersionsRoundTrips() throws Exception {
+        File oldFile = File.createTempFile("old-checksum", ".hex");
+        oldFile.deleteOnExit();
+        Files.write(oldFile.toPath(), Arrays.asList(":01001000EF100", ":00000001FF"));
+
+        hexFile = HEXFileManager.parseFromFile(oldFile);
+        assertEquals("EF", hexFile.getTable().get(0x10));
+
+        File newFile = File.createTempFile("new-checksum", ".hex");
+        newFile.deleteOnExit();
+        hexFile.generateFile(newFile.getAbsolutePath());
+        assertEquals(hexFile.getTable(), HEXFileManager.parseFromFile(newFile).getTable());
+
+        MemoryContext<Short> mc = new MemoryContextStub();
+        assertEquals(0x10, HEXFileManager.loadIntoMemory(oldFile, mc));
+        assertEquals(0xEF, (int) mc.read(0x10));
+    }
+
+    @Test
+    public void testChecksumValidationCanBeTurnedOff() throws Exception {
+        hexFile = HEXFileManager.parseFromFile(writeHexWithBadChecksum(), false);
+        assertEquals("03", hexFile.getTable().get(6));
+
+        MemoryContext<Short> mc = new MemoryContextStub();
+        assertEquals(4, HEXFileManager.loadIntoMemory(writeHexWithBadChecksum(), mc, false));
+        assertEquals(3, (int)mc.read(6));
+    }
+
     @Test
     public void testAddTable() {
         Map<Integer, String> codeTable = new HashMap<>();
@@ -267,6 +337,45 @@ public class HEXFileManagerTest {
         assertEquals(3, (int)mc.read(6));
     }
     
+    @Test
+    public void testLoadIntoMemoryWritesCellByCellRegardlessOfDataType() throws Exception {
+        MemoryContext<Short> mc = new MemoryContextStub() {
+            @Override
+            public Class<?> getDataType() {
+                return null;
+            }
+
+            @Override
+            public void writeBlock(int memoryPosition, Short[] source, int offset, int length) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        hexFile.setNextAddress(4);
+        hexFile.putCode("0102");
+        hexFile.loadIntoMemory(mc);
+
+        assertEquals(1, (int)mc.read(4));
+        assertEquals(2, (int)mc.read(5));
+
+        int programStart = HEXFileManager.loadIntoMemory(toFile(VALID_HEX_FILE), mc);
+        assertEquals(HEXFileManager.parseFromFile(toFile(VALID_HEX_FILE)).getProgramStart(), programStart);
+    }
+
+    @Test
+    public void testLoadIntoMemoryWithGaps() {
+        MemoryContext<Short> mc = new MemoryContextStub();
+        hexFile.setNextAddress(0);
+        hexFile.putCode("0102");
+        hexFile.setNextAddress(10);
+        hexFile.putCode("FF");
+        hexFile.loadIntoMemory(mc);
+
+        assertEquals(1, (int)mc.read(0));
+        assertEquals(2, (int)mc.read(1));
+        assertEquals(0xFF, (int)mc.read(10));
+        assertNull(mc.read(2));
+    }
+
     @Test
     public void testStaticLoadIntoMemory() throws Exception {
         hexFile = HEXFileManager.parseFromFile(toFile(VALID_HEX_FILE));
@@ -0,0 +1,72 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.plugins.memory.AbstractByteMemoryContext;
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.runtime.loaders.IntelHexLoader;
+import emulib.runtime.loaders.RawBinaryLoader;
+import emulib.runtime.loaders.SRecordLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ImageLoadersTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoadersAreFoundByExtension() throws Exception {
+        Path root = folder.getRoot().toPath();
+
+        assertTrue(ImageLoaders.findLoader(root.resolve("a.hex")).get() instanceof IntelHexLoader);
+        assertTrue(ImageLoaders.findLoader(root.resolve("a.s19")).get() instanceof SRecordLoader);
+        assertTrue(ImageLoaders.findLoader(root.resolve("a.bin")).get() instanceof RawBinaryLoader);
+        assertFalse(ImageLoaders.findLoader(root.resolve("a.txt")).isPresent());
+    }
+
+    @Test
+    public void testHexFileIsLoadedIntoMemory() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("test.hex");
+        Files.write(file, ":0200100001FFEE\n:00000001FF\n".getBytes(StandardCharsets.US_ASCII));
+
+        AbstractByteMemoryContext memory = new AbstractByteMemoryContext(32) {};
+
+        assertEquals(0x10, ImageLoaders.loadIntoMemory(file, memory));
+        assertEquals(1, memory.readByte(0x10));
+        assertEquals(-1, memory.readByte(0x11));
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testUnsupportedFileThrows() throws Exception {
+        Path file = folder.newFile("test.txt").toPath();
+        ImageLoaders.loadIntoMemory(file, new AbstractByteMemoryContext(32) {});
+    }
+
+}
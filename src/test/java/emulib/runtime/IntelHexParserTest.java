@@ -0,0 +1,197 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.runtime.interfaces.ImageSink;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IntelHexParserTest {
+    private RecordingSink sink;
+
+    private static class RecordingSink implements ImageSink {
+        private final List<String> records = new ArrayList<>();
+        private Integer startAddress;
+
+        @Override
+        public void write(int address, byte[] data, int offset, int length) {
+            records.add(Integer.toHexString(address) + ":" + Arrays.toString(Arrays.copyOfRange(data, offset, offset + length)));
+        }
+
+        @Override
+        public void startAddress(int address) {
+            startAddress = address;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        sink = new RecordingSink();
+    }
+
+    private void parse(String content) throws Exception {
+        parse(content, true);
+    }
+
+    private void parse(String content, boolean checksumValidated) throws Exception {
+        new IntelHexParser(sink, checksumValidated).parse(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1))
+        );
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullSinkThrows() throws Exception {
+        new IntelHexParser(null);
+    }
+
+    @Test
+    public void testDataRecordsAreWrittenToSink() throws Exception {
+        parse(":0300100001020FDB\n:02002000FF805F\n:00000001FF\n");
+
+        assertEquals(Arrays.asList("10:[1, 2, 15]", "20:[-1, -128]"), sink.records);
+    }
+
+    @Test
+    public void testCommentsWhitespaceAndLowerCaseDigitsAreAccepted() throws Exception {
+        parse("; comment\r\n   :02002000ff805f  \r\n\n\t; another\n");
+
+        assertEquals(Arrays.asList("20:[-1, -128]"), sink.records);
+    }
+
+    @Test
+    public void testParsingStopsAtEndOfFileRecord() throws Exception {
+        parse(":00000001FF\n:0100000001FE\n");
+
+        assertTrue(sink.records.isEmpty());
+    }
+
+    @Test
+    public void testExtendedLinearAddressIsApplied() throws Exception {
+        parse(":020000040001F9\n:0100100001EE\n");
+
+        assertEquals(Arrays.asList("10010:[1]"), sink.records);
+    }
+
+    @Test
+    public void testExtendedSegmentAddressIsApplied() throws Exception {
+        parse(":020000021000EC\n:0100100001EE\n");
+
+        assertEquals(Arrays.asList("10010:[1]"), sink.records);
+    }
+
+    @Test
+    public void testStartSegmentAddressIsReported() throws Exception {
+        parse(":0400000310000100E8\n");
+
+        assertEquals(0x10100, (int) sink.startAddress);
+    }
+
+    @Test
+    public void testStartLinearAddressIsReported() throws Exception {
+        parse(":0400000500010203F1\n");
+
+        assertEquals(0x10203, (int) sink.startAddress);
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testInvalidChecksumThrows() throws Exception {
+        parse(":0100100001EF\n");
+    }
+
+    @Test
+    public void testInvalidChecksumIsIgnoredIfValidationIsOff() throws Exception {
+        parse(":0100100001100\n", false);
+
+        assertEquals(Arrays.asList("10:[1]"), sink.records);
+    }
+
+    @Test
+    public void testThreeDigitZeroChecksumOfOlderVersionsIsAccepted() throws Exception {
+        parse(":01001000EF100\n:00000001FF\n");
+
+        assertEquals(Arrays.asList("10:[-17]"), sink.records);
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testThreeDigitChecksumOfNonZeroSumThrows() throws Exception {
+        parse(":0100100001100\n");
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testCharactersAfterChecksumThrow() throws Exception {
+        parse(":0100100001EEAB\n");
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testInvalidHexDigitThrows() throws Exception {
+        parse(":01001000G1EE\n");
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testUnexpectedEndOfInputThrows() throws Exception {
+        parse(":010010");
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testUnsupportedRecordTypeThrows() throws Exception {
+        parse(":00000006FA\n");
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testExtendedAddressWithWrongLengthThrows() throws Exception {
+        parse(":0100000401FA\n");
+    }
+
+    @Test
+    public void testErrorMessageContainsLineNumber() throws Exception {
+        try {
+            parse(":0100100001EE\n; comment\nX\n");
+            fail("Expected InvalidImageException");
+        } catch (InvalidImageException e) {
+            assertTrue(e.getMessage().startsWith("Line 3:"));
+        }
+    }
+
+    @Test
+    public void testLongRecordsAreParsed() throws Exception {
+        StringBuilder content = new StringBuilder(":FF000000");
+        int sum = 0xFF;
+        for (int i = 0; i < 255; i++) {
+            content.append(String.format("%02X", i));
+            sum += i;
+        }
+        content.append(String.format("%02X", (0x100 - (sum & 0xFF)) & 0xFF));
+        parse(content.toString());
+
+        assertEquals(1, sink.records.size());
+    }
+
+}
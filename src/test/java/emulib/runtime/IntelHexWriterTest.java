@@ -0,0 +1,169 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.runtime.interfaces.ImageSink;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class IntelHexWriterTest {
+
+    private static List<String> lines(StringWriter output) {
+        return Arrays.asList(output.toString().split("\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroRecordLengthThrows() throws Exception {
+        new IntelHexWriter(new StringWriter(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLongRecordLengthThrows() throws Exception {
+        new IntelHexWriter(new StringWriter(), 256);
+    }
+
+    @Test
+    public void testEmptyImageHasJustEndOfFileRecord() throws Exception {
+        StringWriter output = new StringWriter();
+        new IntelHexWriter(output).finish();
+
+        assertEquals(":00000001FF\n", output.toString());
+    }
+
+    @Test
+    public void testDataAreSplitByRecordLength() throws Exception {
+        StringWriter output = new StringWriter();
+        IntelHexWriter writer = new IntelHexWriter(output, 2);
+
+        writer.write(0x10, new byte[] { 1, 2, 15 }, 0, 3);
+        writer.finish();
+
+        assertEquals(Arrays.asList(":020010000102EB", ":010012000FDE", ":00000001FF"), lines(output));
+    }
+
+    @Test
+    public void testZeroChecksumHasTwoDigits() throws Exception {
+        StringWriter output = new StringWriter();
+        IntelHexWriter writer = new IntelHexWriter(output);
+
+        // 01 + 00 + 00 + 00 + FF = 0x100
+        writer.write(0, new byte[] { (byte) 0xFF }, 0, 1);
+        writer.finish();
+
+        assertEquals(":01000000FF00", lines(output).get(0));
+    }
+
+    @Test
+    public void testExtendedLinearAddressIsWrittenAbove64K() throws Exception {
+        StringWriter output = new StringWriter();
+        IntelHexWriter writer = new IntelHexWriter(output);
+
+        writer.write(0xFFFF, new byte[] { 1, 2 }, 0, 2);
+        writer.finish();
+
+        assertEquals(
+                Arrays.asList(":01FFFF000100", ":020000040001F9", ":0100000002FD", ":00000001FF"),
+                lines(output)
+        );
+    }
+
+    @Test
+    public void testStartAddressIsWritten() throws Exception {
+        StringWriter output = new StringWriter();
+        IntelHexWriter writer = new IntelHexWriter(output);
+
+        writer.startAddress(0x10203);
+        writer.finish();
+
+        assertEquals(":0400000500010203F1", lines(output).get(0));
+    }
+
+    @Test
+    public void testWrittenImageIsParsedBack() throws Exception {
+        ProgramImage image = new ProgramImage();
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        image.put(0xFF00, data, 0, data.length);
+        image.put(0x30000, data, 10, 20);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IntelHexWriter writer = new IntelHexWriter(output, 32);
+        writer.write(image);
+        writer.finish();
+
+        ProgramImage parsed = new ProgramImage();
+        new IntelHexParser(parsed).parse(new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(2, parsed.getSegmentsCount());
+        byte[] parsedData = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            parsedData[i] = (byte) parsed.get(0xFF00 + i);
+        }
+        assertArrayEquals(data, parsedData);
+        assertEquals(data[10] & 0xFF, parsed.get(0x30000));
+    }
+
+    @Test
+    public void testImageSinkViewWritesIntoWriter() throws Exception {
+        StringWriter output = new StringWriter();
+        IntelHexWriter writer = new IntelHexWriter(output);
+
+        ImageSink sink = writer.asImageSink();
+        sink.write(0, new byte[] { (byte) 0xFF }, 0, 1);
+        sink.startAddress(0x10203);
+        writer.finish();
+
+        assertEquals(Arrays.asList(":01000000FF00", ":0400000500010203F1", ":00000001FF"), lines(output));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testImageSinkViewThrowsUncheckedIOException() throws Exception {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        new IntelHexWriter(failing).asImageSink().write(0, new byte[] { 1 }, 0, 1);
+    }
+
+}
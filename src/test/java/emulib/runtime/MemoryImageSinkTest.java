@@ -0,0 +1,144 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.plugins.memory.AbstractByteMemoryContext;
+import emulib.plugins.memory.AbstractShortMemoryContext;
+import emulib.plugins.memory.MemoryContext;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+public class MemoryImageSinkTest {
+
+    @Test(expected = NullPointerException.class)
+    public void testNullMemoryThrows() throws Exception {
+        new MemoryImageSink(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedCellTypeThrows() throws Exception {
+        MemoryContext<?> memory = createNiceMock(MemoryContext.class);
+        expect(memory.getDataType()).andReturn((Class) String.class).anyTimes();
+        replay(memory);
+
+        new MemoryImageSink(memory);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testShortCellsAreWrittenOneByOne() throws Exception {
+        MemoryContext<Short> memory = createStrictMock(MemoryContext.class);
+        memory.write(4, (short) 1);
+        memory.write(5, (short) 0xFF);
+        replay(memory);
+
+        MemoryImageSink sink = MemoryImageSink.writingShortCells(memory);
+        sink.write(4, new byte[] { 1, (byte) 0xFF }, 0, 2);
+
+        verify(memory);
+        assertEquals(4, sink.getLowestAddress());
+    }
+
+    @Test
+    public void testBytesAreWrittenToByteMemory() throws Exception {
+        AbstractByteMemoryContext memory = new AbstractByteMemoryContext(16) {};
+        MemoryImageSink sink = new MemoryImageSink(memory);
+
+        sink.write(4, new byte[] { 9, 1, 2, (byte) 0xFF }, 1, 3);
+
+        assertEquals(1, memory.readByte(4));
+        assertEquals(2, memory.readByte(5));
+        assertEquals(-1, memory.readByte(6));
+    }
+
+    @Test
+    public void testBytesAreZeroExtendedInShortMemory() throws Exception {
+        AbstractShortMemoryContext memory = new AbstractShortMemoryContext(16) {};
+        MemoryImageSink sink = new MemoryImageSink(memory);
+
+        sink.write(0, new byte[] { (byte) 0x80 }, 0, 1);
+
+        assertEquals(0x80, memory.readShort(0));
+    }
+
+    @Test
+    public void testProgramStartIsLowestAddressIfNotDefined() throws Exception {
+        MemoryImageSink sink = new MemoryImageSink(new AbstractByteMemoryContext(16) {});
+
+        sink.write(10, new byte[] { 1 }, 0, 1);
+        sink.write(3, new byte[] { 1 }, 0, 1);
+        sink.write(0, new byte[0], 0, 0);
+
+        assertEquals(3, sink.getLowestAddress());
+        assertEquals(3, sink.getProgramStart());
+    }
+
+    @Test
+    public void testProgramStartIsStartAddressIfDefined() throws Exception {
+        MemoryImageSink sink = new MemoryImageSink(new AbstractByteMemoryContext(16) {});
+
+        sink.write(3, new byte[] { 1 }, 0, 1);
+        sink.startAddress(8);
+
+        assertEquals(8, sink.getProgramStart());
+    }
+
+    @Test
+    public void testProgramStartIsZeroForEmptyImage() throws Exception {
+        MemoryImageSink sink = new MemoryImageSink(new AbstractByteMemoryContext(16) {});
+
+        assertEquals(-1, sink.getLowestAddress());
+        assertEquals(0, sink.getProgramStart());
+    }
+
+    @Test
+    public void testByteBufferIsWrittenToByteMemory() throws Exception {
+        AbstractByteMemoryContext memory = new AbstractByteMemoryContext(16) {};
+        MemoryImageSink sink = new MemoryImageSink(memory);
+
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 9, 1, 2, 3 });
+        buffer.position(1);
+        sink.write(2, buffer);
+
+        assertEquals(1, memory.readByte(2));
+        assertEquals(3, memory.readByte(4));
+        assertEquals(2, sink.getLowestAddress());
+    }
+
+    @Test
+    public void testByteBufferIsZeroExtendedInShortMemory() throws Exception {
+        AbstractShortMemoryContext memory = new AbstractShortMemoryContext(16) {};
+        MemoryImageSink sink = new MemoryImageSink(memory);
+
+        sink.write(1, ByteBuffer.wrap(new byte[] { (byte) 0x80, 1 }));
+
+        assertEquals(0x80, memory.readShort(1));
+        assertEquals(1, memory.readShort(2));
+    }
+
+}
@@ -22,6 +22,9 @@ package emulib.runtime;
 import emulib.runtime.NumberUtils.Strategy;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
@@ -112,4 +115,134 @@ public class NumberUtilsTest {
 
         assertArrayEquals(objVals, NumberUtils.toObjectArray(vals));
     }
+
+    @Test
+    public void testReverseBitsEdgeCases() {
+        assertEquals(0, NumberUtils.reverseBits(0xFF, 0));
+        assertEquals(1, NumberUtils.reverseBits(0xFFFF, 1));
+        assertEquals(0x80000000, NumberUtils.reverseBits(1, 32));
+    }
+
+    @Test
+    public void testReverseBitsInBytes() {
+        assertEquals(0xD06090D0, NumberUtils.reverseBitsInBytes(0x0B06090B));
+        assertEquals(0x80C0E0F0D0B09010L, NumberUtils.reverseBitsInBytes(0x0103070F0B0D0908L));
+    }
+
+    @Test
+    public void testReadPrimitiveArraysWithOffset() {
+        byte[] bytes = new byte[] { 0, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, 0x12, 0x34, 0x56, 0x78, (byte) 0x9A };
+        short[] shorts = new short[] { 0, 0x1AB, 0xCD, 0xEF, 0x12, 0x34, 0x56, 0x78, 0x9A };
+        int[] ints = new int[] { 0, 0x7FAB, 0xCD, 0xEF, 0x12, 0x34, 0x56, 0x78, 0x9A };
+
+        assertEquals((short) 0xCDAB, NumberUtils.readShort(bytes, 1, Strategy.LITTLE_ENDIAN));
+        assertEquals((short) 0xABCD, NumberUtils.readShort(shorts, 1, Strategy.BIG_ENDIAN));
+        assertEquals((short) 0xCDAB, NumberUtils.readShort(ints, 1, Strategy.LITTLE_ENDIAN));
+
+        assertEquals(0x12EFCDAB, NumberUtils.readInt(bytes, 1, Strategy.LITTLE_ENDIAN));
+        assertEquals(0xABCDEF12, NumberUtils.readInt(shorts, 1, Strategy.BIG_ENDIAN));
+        assertEquals(0x12EFCDAB, NumberUtils.readInt(ints, 1, Strategy.LITTLE_ENDIAN));
+
+        assertEquals(0x9A78563412EFCDABL, NumberUtils.readLong(bytes, 1, Strategy.LITTLE_ENDIAN));
+        assertEquals(0xABCDEF123456789AL, NumberUtils.readLong(shorts, 1, Strategy.BIG_ENDIAN));
+        assertEquals(0x9A78563412EFCDABL, NumberUtils.readLong(ints, 1, Strategy.LITTLE_ENDIAN));
+    }
+
+    @Test
+    public void testReadPrimitiveArrayMatchesBoxedArray() {
+        Byte[] boxed = new Byte[] { 0xB, 6, 9, 0xB };
+        byte[] bytes = new byte[] { 0xB, 6, 9, 0xB };
+
+        for (int strategy = 0; strategy < 8; strategy++) {
+            assertEquals(NumberUtils.readInt(boxed, strategy), NumberUtils.readInt(bytes, 0, strategy));
+        }
+    }
+
+    @Test
+    public void testWritePrimitiveArraysWithOffset() {
+        byte[] bytes = new byte[9];
+        NumberUtils.writeShort(0x1CDAB, bytes, 1, Strategy.LITTLE_ENDIAN);
+        NumberUtils.writeInt(0x12345678, bytes, 3, Strategy.BIG_ENDIAN);
+        assertArrayEquals(new byte[] { 0, (byte) 0xAB, (byte) 0xCD, 0x12, 0x34, 0x56, 0x78, 0, 0 }, bytes);
+
+        short[] shorts = new short[8];
+        NumberUtils.writeLong(0x0102030405060708L, shorts, 0, Strategy.BIG_ENDIAN);
+        assertArrayEquals(new short[] { 1, 2, 3, 4, 5, 6, 7, 8 }, shorts);
+
+        int[] ints = new int[4];
+        NumberUtils.writeInt(0xD06090D0, ints, 0, Strategy.REVERSE_BITS);
+        assertArrayEquals(new int[] { 0xB, 9, 6, 0xB }, ints);
+    }
+
+    @Test
+    public void testWriteThenReadPrimitiveGivesBackTheSameResult() {
+        byte[] bytes = new byte[8];
+        short[] shorts = new short[8];
+        int[] ints = new int[8];
+
+        for (int strategy = 0; strategy < 8; strategy++) {
+            NumberUtils.writeShort(0xA5C3, bytes, 0, strategy);
+            assertEquals((short) 0xA5C3, NumberUtils.readShort(bytes, 0, strategy));
+            NumberUtils.writeShort(0xA5C3, shorts, 0, strategy);
+            assertEquals((short) 0xA5C3, NumberUtils.readShort(shorts, 0, strategy));
+            NumberUtils.writeShort(0xA5C3, ints, 0, strategy);
+            assertEquals((short) 0xA5C3, NumberUtils.readShort(ints, 0, strategy));
+
+            NumberUtils.writeInt(0x89ABCDEF, bytes, 0, strategy);
+            assertEquals(0x89ABCDEF, NumberUtils.readInt(bytes, 0, strategy));
+            NumberUtils.writeInt(0x89ABCDEF, shorts, 0, strategy);
+            assertEquals(0x89ABCDEF, NumberUtils.readInt(shorts, 0, strategy));
+            NumberUtils.writeInt(0x89ABCDEF, ints, 0, strategy);
+            assertEquals(0x89ABCDEF, NumberUtils.readInt(ints, 0, strategy));
+
+            NumberUtils.writeLong(0x0123456789ABCDEFL, bytes, 0, strategy);
+            assertEquals(0x0123456789ABCDEFL, NumberUtils.readLong(bytes, 0, strategy));
+            NumberUtils.writeLong(0x0123456789ABCDEFL, shorts, 0, strategy);
+            assertEquals(0x0123456789ABCDEFL, NumberUtils.readLong(shorts, 0, strategy));
+            NumberUtils.writeLong(0x0123456789ABCDEFL, ints, 0, strategy);
+            assertEquals(0x0123456789ABCDEFL, NumberUtils.readLong(ints, 0, strategy));
+        }
+    }
+
+    @Test
+    public void testByteBufferMatchesByteArray() {
+        byte[] bytes = new byte[] { 1, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, 0x12, 0x34, 0x56, 0x78, (byte) 0x9A };
+
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+            for (int strategy = 0; strategy < 8; strategy++) {
+                assertEquals(NumberUtils.readShort(bytes, 1, strategy), NumberUtils.readShort(buffer, 1, strategy));
+                assertEquals(NumberUtils.readInt(bytes, 1, strategy), NumberUtils.readInt(buffer, 1, strategy));
+                assertEquals(NumberUtils.readLong(bytes, 1, strategy), NumberUtils.readLong(buffer, 1, strategy));
+            }
+            assertEquals(order, buffer.order());
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void testWriteByteBufferMatchesByteArray() {
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            for (int strategy = 0; strategy < 8; strategy++) {
+                byte[] expected = new byte[14];
+                NumberUtils.writeShort(0x1234, expected, 0, strategy);
+                NumberUtils.writeInt(0x89ABCDEF, expected, 2, strategy);
+                NumberUtils.writeLong(0x0123456789ABCDEFL, expected, 6, strategy);
+
+                ByteBuffer buffer = ByteBuffer.allocate(14).order(order);
+                NumberUtils.writeShort(0x1234, buffer, 0, strategy);
+                NumberUtils.writeInt(0x89ABCDEF, buffer, 2, strategy);
+                NumberUtils.writeLong(0x0123456789ABCDEFL, buffer, 6, strategy);
+
+                assertArrayEquals(expected, buffer.array());
+            }
+        }
+    }
+
+    @Test
+    public void testWriteIntToLargerShortArray() {
+        Short[] word = new Short[] { 1, 2, 3, 4, 5, 6 };
+        NumberUtils.writeInt(0x0B06090B, word, Strategy.BIG_ENDIAN);
+        assertArrayEquals(new Short[] { 0xB, 6, 9, 0xB, 5, 6 }, word);
+    }
 }
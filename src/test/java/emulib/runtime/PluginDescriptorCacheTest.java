@@ -0,0 +1,124 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.annotations.EMULIB_VERSION;
+import emulib.annotations.PLUGIN_TYPE;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class PluginDescriptorCacheTest {
+    private final static PluginDescriptor DESCRIPTOR = new PluginDescriptor(
+            "some.Plugin", PLUGIN_TYPE.DEVICE, "Device", EMULIB_VERSION.VERSION_9
+    );
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheFile;
+    private File pluginFile;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = folder.getRoot().toPath().resolve("cache/plugins.properties");
+        pluginFile = folder.newFile("plugin.jar");
+        Files.write(pluginFile.toPath(), new byte[] { 1, 2, 3 });
+    }
+
+    @Test
+    public void testCachedDescriptorIsReturned() throws Exception {
+        PluginDescriptorCache cache = new PluginDescriptorCache(cacheFile);
+        cache.put(pluginFile, DESCRIPTOR);
+
+        assertEquals(Optional.of(DESCRIPTOR), cache.get(pluginFile));
+    }
+
+    @Test
+    public void testUnknownFileIsNotCached() throws Exception {
+        assertFalse(new PluginDescriptorCache(cacheFile).get(pluginFile).isPresent());
+    }
+
+    @Test
+    public void testChangedFileIsNotCached() throws Exception {
+        PluginDescriptorCache cache = new PluginDescriptorCache(cacheFile);
+        cache.put(pluginFile, DESCRIPTOR);
+
+        Files.write(pluginFile.toPath(), new byte[] { 1, 2, 3, 4 });
+
+        assertFalse(cache.get(pluginFile).isPresent());
+    }
+
+    @Test
+    public void testSavedCacheIsLoaded() throws Exception {
+        PluginDescriptorCache cache = new PluginDescriptorCache(cacheFile);
+        cache.put(pluginFile, DESCRIPTOR);
+        cache.save();
+
+        assertEquals(Optional.of(DESCRIPTOR), new PluginDescriptorCache(cacheFile).get(pluginFile));
+    }
+
+    @Test
+    public void testCacheIsSavedAgainAfterFailedSave() throws Exception {
+        Path blocker = cacheFile.resolve("blocker");
+        Files.createDirectories(blocker);
+        PluginDescriptorCache cache = new PluginDescriptorCache(cacheFile);
+        cache.put(pluginFile, DESCRIPTOR);
+        try {
+            cache.save();
+            fail();
+        } catch (IOException e) {
+            // the cache file is a non-empty directory, so it cannot be replaced
+        }
+
+        Files.delete(blocker);
+        Files.delete(cacheFile);
+        cache.save();
+
+        assertEquals(Optional.of(DESCRIPTOR), new PluginDescriptorCache(cacheFile).get(pluginFile));
+    }
+
+    @Test
+    public void testUnmodifiedCacheIsNotSaved() throws Exception {
+        new PluginDescriptorCache(cacheFile).save();
+
+        assertFalse(Files.exists(cacheFile));
+    }
+
+    @Test
+    public void testInvalidEntriesAreIgnored() throws Exception {
+        Files.createDirectories(cacheFile.getParent());
+        Files.write(cacheFile, "0.path=x\n0.modified=abc\n".getBytes("ISO-8859-1"));
+
+        assertFalse(new PluginDescriptorCache(cacheFile).get(new File("x")).isPresent());
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import emulib.annotations.EMULIB_VERSION;
+import emulib.annotations.PLUGIN_TYPE;
+import emulib.runtime.stubs.CPUImplStub;
+import emulib.runtime.stubs.UnannotatedCPUStub;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class PluginDescriptorTest {
+
+    private static PluginDescriptor read(String content) throws IOException {
+        return PluginDescriptor.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void testWrittenDescriptorIsReadBack() throws Exception {
+        PluginDescriptor descriptor = new PluginDescriptor(
+                "some.Plugin", PLUGIN_TYPE.MEMORY, "Title: with = special chars", EMULIB_VERSION.VERSION_9
+        );
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        descriptor.write(output);
+
+        assertEquals(descriptor, PluginDescriptor.read(new ByteArrayInputStream(output.toByteArray())));
+    }
+
+    @Test
+    public void testDescriptorIsCreatedFromAnnotation() throws Exception {
+        PluginDescriptor descriptor = PluginDescriptor.fromClass(CPUImplStub.class);
+
+        assertEquals(CPUImplStub.class.getName(), descriptor.getMainClass());
+        assertEquals(PLUGIN_TYPE.CPU, descriptor.getType());
+        assertEquals("CPU", descriptor.getTitle());
+        assertEquals(EMULIB_VERSION.VERSION_9, descriptor.getEmuLibVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDescriptorOfUnannotatedClassThrows() throws Exception {
+        PluginDescriptor.fromClass(UnannotatedCPUStub.class);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingPropertyThrows() throws Exception {
+        read("main-class=a.B\ntype=CPU\ntitle=T\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownTypeThrows() throws Exception {
+        read("main-class=a.B\ntype=PRINTER\ntitle=T\nemulib-version=VERSION_9\n");
+    }
+
+}
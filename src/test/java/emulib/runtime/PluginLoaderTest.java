@@ -20,6 +20,8 @@
 package emulib.runtime;
 
 import emulib.JarCreator;
+import emulib.annotations.EMULIB_VERSION;
+import emulib.annotations.PLUGIN_TYPE;
 import emulib.emustudio.APITest;
 import emulib.plugins.Plugin;
 import emulib.plugins.cpu.CPU;
@@ -35,18 +37,55 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
 
 public class PluginLoaderTest {
+    private final static String VERSION_SOURCE = "package versioned;\n"
+            + "public class Version {\n"
+            + "    public static String get() { return \"%s\"; }\n"
+            + "}\n";
+
+    private final static String VERSIONED_PLUGIN_SOURCE = "package versioned;\n"
+            + "@emulib.annotations.PluginType(title = \"V\", description = \"V\", copyright = \"V\",\n"
+            + "        type = emulib.annotations.PLUGIN_TYPE.COMPILER,\n"
+            + "        emuLibVersion = emulib.annotations.EMULIB_VERSION.VERSION_9)\n"
+            + "public class VersionedPlugin implements emulib.plugins.Plugin {\n"
+            + "    public VersionedPlugin(Long pid, emulib.runtime.ContextPool contextPool) {}\n"
+            + "    public static String version() { return Version.get(); }\n"
+            + "    public void reset() {}\n"
+            + "    public void initialize(emulib.emustudio.SettingsManager settingsManager) {}\n"
+            + "    public void destroy() {}\n"
+            + "    public void showSettings() {}\n"
+            + "    public boolean isShowSettingsSupported() { return false; }\n"
+            + "    public String getTitle() { return null; }\n"
+            + "    public String getVersion() { return null; }\n"
+            + "}\n";
+
     private static final String GOOD_PLUGIN_PATH = "plugin-valid.jar";
     private static final String BAD_PLUGIN_PATH = "plugin-invalid.jar";
     private static final String NOT_A_PLUGIN_PATH = "not-a-plugin.jar";
@@ -134,16 +173,38 @@ public class PluginLoaderTest {
     }
 
     private File createJar(String className, String... dependsOn) throws IOException, URISyntaxException {
+        return createPluginJar(className, null, dependsOn);
+    }
+
+    private File createPluginJar(String className, String pluginClass, String... dependsOn)
+            throws IOException, URISyntaxException {
+        return createPluginJar(className, pluginClass, null, dependsOn);
+    }
+
+    private File createPluginJar(String className, String pluginClass, PluginDescriptor descriptor,
+                                 String... dependsOn) throws IOException, URISyntaxException {
         File file = temporaryFolder.newFile(className.replaceAll("/",".").concat(".jar"));
         JarCreator jarCreator = new JarCreator();
 
         file.getParentFile().mkdirs();
         file.createNewFile();
-        jarCreator.createJar(file, toFile(className), Arrays.asList(dependsOn));
+        jarCreator.createJar(file, toFile(className), Arrays.asList(dependsOn), pluginClass, descriptor);
 
         return file;
     }
 
+    private File createPluginWithDependencies(PluginDescriptor descriptor) throws IOException, URISyntaxException {
+        File lastDep = createJar("dependencies/hidden/C.class", "");
+        File secondDep = createJar("dependencies/hidden/BdependsOnC.class", lastDep.getAbsolutePath());
+        return createPluginJar(
+                "dependencies/APluginDependsOnB.class", null, descriptor, secondDep.getAbsolutePath()
+        );
+    }
+
+    private static PluginDescriptor descriptor(String mainClass) {
+        return new PluginDescriptor(mainClass, PLUGIN_TYPE.COMPILER, "A", EMULIB_VERSION.VERSION_9);
+    }
+
     @Test
     public void testDependenciesAreLoadedCorrectly() throws Exception {
         System.setProperty("sun.misc.URLClassPath.debugLookupCache", "true");
@@ -165,4 +226,233 @@ public class PluginLoaderTest {
         pluginLoader.loadPlugins(APITest.getEmuStudioPassword() + "hahaha", toFile(GOOD_PLUGIN_PATH));
 
     }
+
+    @Test
+    public void testMainClassNamedInManifestIsLoaded() throws Exception {
+        File lastDep = createJar("dependencies/hidden/C.class", "");
+        File secondDep = createJar("dependencies/hidden/BdependsOnC.class", lastDep.getAbsolutePath());
+        File plugin = createPluginJar(
+                "dependencies/APluginDependsOnB.class", "dependencies.APluginDependsOnB", secondDep.getAbsolutePath()
+        );
+
+        Class<Plugin> cl = pluginLoader.loadPlugins(APITest.getEmuStudioPassword(), plugin).iterator().next();
+
+        assertEquals("dependencies.APluginDependsOnB", cl.getName());
+    }
+
+    @Test(expected = InvalidPluginException.class)
+    public void testMissingMainClassNamedInManifestThrows() throws Exception {
+        File plugin = createPluginJar("dependencies/hidden/C.class", "dependencies.Missing");
+
+        pluginLoader.loadPlugins(APITest.getEmuStudioPassword(), plugin);
+    }
+
+    @Test(expected = InvalidPluginException.class)
+    public void testUntrustedMainClassNamedInManifestThrows() throws Exception {
+        File plugin = createPluginJar("dependencies/hidden/C.class", "dependencies.hidden.C");
+
+        pluginLoader.loadPlugins(APITest.getEmuStudioPassword(), plugin);
+    }
+
+    @Test
+    public void testPluginsAreReturnedInOrderOfFiles() throws Exception {
+        File lastDep = createJar("dependencies/hidden/C.class", "");
+        File secondDep = createJar("dependencies/hidden/BdependsOnC.class", lastDep.getAbsolutePath());
+        File plugin = createJar("dependencies/APluginDependsOnB.class", secondDep.getAbsolutePath());
+        File validPlugin = toFile(GOOD_PLUGIN_PATH);
+
+        List<Class<Plugin>> result = pluginLoader.loadPlugins(APITest.getEmuStudioPassword(), plugin, validPlugin);
+
+        assertEquals(2, result.size());
+        assertEquals("dependencies.APluginDependsOnB", result.get(0).getName());
+    }
+
+    @Test
+    public void testMainClassFromDescriptorIsLoaded() throws Exception {
+        File plugin = createPluginWithDependencies(descriptor("dependencies.APluginDependsOnB"));
+
+        Class<Plugin> cl = pluginLoader.loadPlugins(APITest.getEmuStudioPassword(), plugin).iterator().next();
+
+        assertEquals("dependencies.APluginDependsOnB", cl.getName());
+    }
+
+    @Test(expected = InvalidPluginException.class)
+    public void testClassesAreNotSearchedIfDescriptorIsPresent() throws Exception {
+        File plugin = createPluginWithDependencies(descriptor("dependencies.Missing"));
+
+        pluginLoader.loadPlugins(APITest.getEmuStudioPassword(), plugin);
+    }
+
+    @Test
+    public void testReadDescriptor() throws Exception {
+        PluginDescriptor descriptor = descriptor("dependencies.APluginDependsOnB");
+        File plugin = createPluginWithDependencies(descriptor);
+
+        assertEquals(Optional.of(descriptor), pluginLoader.readDescriptor(plugin));
+    }
+
+    @Test
+    public void testReadDescriptorOfPluginWithoutDescriptorReturnsEmpty() throws Exception {
+        assertFalse(pluginLoader.readDescriptor(toFile(GOOD_PLUGIN_PATH)).isPresent());
+    }
+
+    @Test
+    public void testLoadedPluginIsCached() throws Exception {
+        File plugin = createPluginWithDependencies(null);
+        PluginDescriptorCache cache = new PluginDescriptorCache(temporaryFolder.getRoot().toPath().resolve("cache"));
+
+        new PluginLoader(cache).loadPlugins(APITest.getEmuStudioPassword(), plugin);
+
+        assertEquals(Optional.of(descriptor("dependencies.APluginDependsOnB")), cache.get(plugin));
+        assertEquals(cache.get(plugin), new PluginLoader(cache).readDescriptor(plugin));
+    }
+
+    @Test(expected = InvalidPluginException.class)
+    public void testCachedDescriptorIsUsed() throws Exception {
+        File plugin = createPluginWithDependencies(null);
+        PluginDescriptorCache cache = new PluginDescriptorCache(temporaryFolder.getRoot().toPath().resolve("cache"));
+        cache.put(plugin, descriptor("dependencies.Missing"));
+
+        new PluginLoader(cache).loadPlugins(APITest.getEmuStudioPassword(), plugin);
+    }
+
+    @Test
+    public void testIsolatedPluginHasOwnClassLoader() throws Exception {
+        File plugin = createPluginWithDependencies(null);
+        PluginLoader isolatedLoader = new PluginLoader(null, PluginLoader.ClassLoaderMode.ISOLATED);
+
+        List<Class<Plugin>> result = isolatedLoader.loadPlugins(
+                APITest.getEmuStudioPassword(), plugin, toFile(GOOD_PLUGIN_PATH)
+        );
+
+        // dependencies/* classes are also on the test class path, so only the second plug-in is really isolated
+        ClassLoader classLoader = result.get(1).getClassLoader();
+        assertTrue(classLoader instanceof PluginClassLoader);
+        assertNotSame(ClassLoader.getSystemClassLoader(), classLoader.getParent());
+
+        Class<Plugin> cl = result.get(0);
+        Constructor<Plugin> constructor = cl.getDeclaredConstructor(Long.class, ContextPool.class);
+        cl.getDeclaredMethod("hi").invoke(constructor.newInstance(0L, new ContextPool()));
+    }
+
+    @Test
+    public void testIsolatedPluginLoadsDependenciesWithSameContentOnce() throws Exception {
+        assumeNotNull(ToolProvider.getSystemJavaCompiler());
+        Path classes = compileVersioned("1");
+        File dep = createJar(classes, "versioned/Version.class", "version.jar");
+        File depCopy = temporaryFolder.newFile("version-copy.jar");
+        Files.copy(dep.toPath(), depCopy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File plugin = createJar(classes, "versioned/VersionedPlugin.class", "plugin.jar", dep, depCopy);
+        PluginLoader isolatedLoader = new PluginLoader(null, PluginLoader.ClassLoaderMode.ISOLATED);
+
+        Class<Plugin> cl = isolatedLoader.loadPlugins(APITest.getEmuStudioPassword(), plugin).get(0);
+
+        URL[] dependencyUrls = ((URLClassLoader) cl.getClassLoader().getParent()).getURLs();
+        assertArrayEquals(new URL[] { dep.toURI().toURL() }, dependencyUrls);
+    }
+
+    @Test
+    public void testIsolatedPluginsCanDependOnDifferentVersionsOfSameClass() throws Exception {
+        assumeNotNull(ToolProvider.getSystemJavaCompiler());
+        Path firstVersion = compileVersioned("1");
+        Path secondVersion = compileVersioned("2");
+        File firstDep = createJar(firstVersion, "versioned/Version.class", "first-version.jar");
+        File secondDep = createJar(secondVersion, "versioned/Version.class", "second-version.jar");
+        File firstPlugin = createJar(firstVersion, "versioned/VersionedPlugin.class", "first-plugin.jar", firstDep);
+        File secondPlugin = createJar(firstVersion, "versioned/VersionedPlugin.class", "second-plugin.jar", secondDep);
+        PluginLoader isolatedLoader = new PluginLoader(null, PluginLoader.ClassLoaderMode.ISOLATED);
+
+        List<Class<Plugin>> result = isolatedLoader.loadPlugins(
+                APITest.getEmuStudioPassword(), firstPlugin, secondPlugin
+        );
+
+        assertEquals("1", result.get(0).getMethod("version").invoke(null));
+        assertEquals("2", result.get(1).getMethod("version").invoke(null));
+    }
+
+    @Test
+    public void testIsolatedPluginsWithSameDependencyContentShareClassLoader() throws Exception {
+        assumeNotNull(ToolProvider.getSystemJavaCompiler());
+        Path classes = compileVersioned("1");
+        File dep = createJar(classes, "versioned/Version.class", "version.jar");
+        File depCopy = temporaryFolder.newFile("version-copy.jar");
+        Files.copy(dep.toPath(), depCopy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File firstPlugin = createJar(classes, "versioned/VersionedPlugin.class", "first-plugin.jar", dep);
+        File secondPlugin = createJar(classes, "versioned/VersionedPlugin.class", "second-plugin.jar", depCopy);
+        PluginLoader isolatedLoader = new PluginLoader(null, PluginLoader.ClassLoaderMode.ISOLATED);
+
+        List<Class<Plugin>> result = isolatedLoader.loadPlugins(
+                APITest.getEmuStudioPassword(), firstPlugin, secondPlugin
+        );
+
+        assertNotSame(result.get(0).getClassLoader(), result.get(1).getClassLoader());
+        assertSame(result.get(0).getClassLoader().getParent(), result.get(1).getClassLoader().getParent());
+    }
+
+    @Test
+    public void testIsolatedPluginsWithSameDependenciesInDifferentOrderShareClassLoader() throws Exception {
+        assumeNotNull(ToolProvider.getSystemJavaCompiler());
+        Path classes = compileVersioned("1");
+        File firstDep = createJar(classes, "versioned/Version.class", "first-version.jar");
+        File secondDep = createJar(compileVersioned("2"), "versioned/Version.class", "second-version.jar");
+        File firstPlugin = createJar(
+                classes, "versioned/VersionedPlugin.class", "first-plugin.jar", firstDep, secondDep
+        );
+        File secondPlugin = createJar(
+                classes, "versioned/VersionedPlugin.class", "second-plugin.jar", secondDep, firstDep
+        );
+        PluginLoader isolatedLoader = new PluginLoader(null, PluginLoader.ClassLoaderMode.ISOLATED);
+
+        List<Class<Plugin>> result = isolatedLoader.loadPlugins(
+                APITest.getEmuStudioPassword(), firstPlugin, secondPlugin
+        );
+
+        assertSame(result.get(0).getClassLoader().getParent(), result.get(1).getClassLoader().getParent());
+    }
+
+    private Path compileVersioned(String version) throws IOException {
+        Path sources = temporaryFolder.newFolder("sources-" + version, "versioned").toPath();
+        Path classes = temporaryFolder.newFolder("classes-" + version).toPath();
+        Path versionSource = sources.resolve("Version.java");
+        Path pluginSource = sources.resolve("VersionedPlugin.java");
+        Files.write(versionSource, String.format(VERSION_SOURCE, version).getBytes(StandardCharsets.UTF_8));
+        Files.write(pluginSource, VERSIONED_PLUGIN_SOURCE.getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        int result = ToolProvider.getSystemJavaCompiler().run(null, messages, messages,
+                "-classpath", System.getProperty("java.class.path"), "-d", classes.toString(),
+                versionSource.toString(), pluginSource.toString()
+        );
+        assertEquals(messages.toString(), 0, result);
+        return classes;
+    }
+
+    private File createJar(Path classes, String className, String jarName, File... dependsOn) throws IOException {
+        File file = temporaryFolder.newFile(jarName);
+        List<String> dependencies = new ArrayList<>();
+        for (File dependency : dependsOn) {
+            dependencies.add(dependency.getAbsolutePath());
+        }
+        new JarCreator().createJar(
+                file, classes.resolve(className).toFile(), dependencies, "versioned.VersionedPlugin"
+        );
+        return file;
+    }
+
+    @Test
+    public void testRemoveDuplicateContent() throws Exception {
+        File first = temporaryFolder.newFile("first.jar");
+        File second = temporaryFolder.newFile("second.jar");
+        File third = temporaryFolder.newFile("third.jar");
+        Files.write(first.toPath(), new byte[] { 1, 2 });
+        Files.write(second.toPath(), new byte[] { 1, 2 });
+        Files.write(third.toPath(), new byte[] { 3 });
+        URL missing = new File(temporaryFolder.getRoot(), "missing.jar").toURI().toURL();
+
+        List<URL> result = PluginLoader.removeDuplicateContent(Arrays.asList(
+                first.toURI().toURL(), second.toURI().toURL(), missing, third.toURI().toURL()
+        ));
+
+        assertEquals(Arrays.asList(first.toURI().toURL(), missing, third.toURI().toURL()), result);
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProgramImageTest {
+    private ProgramImage image;
+
+    @Before
+    public void setUp() {
+        image = new ProgramImage();
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    private void put(int address, int... values) {
+        image.put(address, bytes(values), 0, values.length);
+    }
+
+    private List<String> segments() {
+        List<String> result = new ArrayList<>();
+        image.forEachSegment((address, data, offset, length) -> result.add(
+                address + ":" + Arrays.toString(Arrays.copyOfRange(data, offset, offset + length))
+        ));
+        return result;
+    }
+
+    @Test
+    public void testEmptyImage() throws Exception {
+        assertTrue(image.isEmpty());
+        assertEquals(0, image.getSize());
+        assertEquals(-1, image.getLowestAddress());
+        assertEquals(-1, image.get(0));
+    }
+
+    @Test
+    public void testGetReturnsWrittenBytes() throws Exception {
+        put(10, 1, 2, 0xFF);
+
+        assertEquals(-1, image.get(9));
+        assertEquals(1, image.get(10));
+        assertEquals(2, image.get(11));
+        assertEquals(0xFF, image.get(12));
+        assertEquals(-1, image.get(13));
+    }
+
+    @Test
+    public void testSequentialWritesAreMergedIntoOneSegment() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            put(i, i);
+        }
+
+        assertEquals(1, image.getSegmentsCount());
+        assertEquals(1000, image.getSize());
+        assertEquals(999 & 0xFF, image.get(999));
+    }
+
+    @Test
+    public void testSeparateWritesAreKeptSorted() throws Exception {
+        put(20, 3);
+        put(0, 1);
+        put(10, 2);
+
+        assertEquals(Arrays.asList("0:[1]", "10:[2]", "20:[3]"), segments());
+        assertEquals(0, image.getLowestAddress());
+    }
+
+    @Test
+    public void testWriteBridgingSegmentsMergesThem() throws Exception {
+        put(0, 1, 2);
+        put(5, 6, 7);
+        put(10, 11);
+
+        put(2, 3, 4, 5);
+
+        assertEquals(Arrays.asList("0:[1, 2, 3, 4, 5, 6, 7]", "10:[11]"), segments());
+        assertEquals(8, image.getSize());
+    }
+
+    @Test
+    public void testWriteOverwritesExistingBytes() throws Exception {
+        put(0, 1, 2, 3, 4);
+
+        put(1, 9, 9);
+
+        assertEquals(Arrays.asList("0:[1, 9, 9, 4]"), segments());
+        assertEquals(4, image.getSize());
+    }
+
+    @Test
+    public void testWriteBeforeSegmentExtendsIt() throws Exception {
+        put(5, 5, 6);
+
+        put(2, 2, 3, 4, 9);
+
+        assertEquals(Arrays.asList("2:[2, 3, 4, 9, 6]"), segments());
+        assertEquals(5, image.getSize());
+    }
+
+    @Test
+    public void testWriteCoveringManySegments() throws Exception {
+        put(1, 1);
+        put(3, 3);
+        put(5, 5);
+
+        put(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        assertEquals(Arrays.asList("0:[0, 0, 0, 0, 0, 0, 0, 0]"), segments());
+        assertEquals(8, image.getSize());
+    }
+
+    @Test
+    public void testWriteWithOffset() throws Exception {
+        image.write(0, bytes(1, 2, 3, 4), 1, 2);
+
+        assertEquals(Arrays.asList("0:[2, 3]"), segments());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeAddressThrows() throws Exception {
+        put(-1, 1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidLengthThrows() throws Exception {
+        image.put(0, new byte[2], 1, 2);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        put(0, 1);
+        image.clear();
+
+        assertTrue(image.isEmpty());
+        assertEquals(0, image.getSize());
+    }
+
+}
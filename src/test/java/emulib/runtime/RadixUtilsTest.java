@@ -22,8 +22,16 @@ package emulib.runtime;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class RadixUtilsTest {
 
@@ -224,5 +232,204 @@ public class RadixUtilsTest {
         assertEquals("00000000", RadixUtils.formatBinaryString(0,8));
         assertEquals("0000101111", RadixUtils.formatBinaryString(0x2F,10));
     }
-}
 
+    @Test
+    public void testFormattingMatchesStringFormat() throws Exception {
+        for (int i = 0; i <= 0xFFFF; i++) {
+            assertEquals(String.format("%04X", i), RadixUtils.formatWordHexString(i));
+        }
+        for (int number : new int[] { 0, 0xFF, 0x100, 0x1FF, 0xFFFF, 0x10000, 0x7FFFFFFF, -1, Integer.MIN_VALUE }) {
+            assertEquals(String.format("%02X", number), RadixUtils.formatByteHexString(number));
+            assertEquals(String.format("%04X", number), RadixUtils.formatWordHexString(number));
+            assertEquals(String.format("%08X", number), RadixUtils.formatDwordHexString(number));
+        }
+    }
+
+    @Test
+    public void testFormatHexIntoArray() throws Exception {
+        char[] destination = "[    ]".toCharArray();
+
+        assertEquals(5, RadixUtils.formatHex(0x12AB, 4, destination, 1));
+        assertEquals("[12AB]", new String(destination));
+    }
+
+    @Test
+    public void testAppendHex() throws Exception {
+        StringBuilder builder = new StringBuilder();
+
+        RadixUtils.appendByteHex(builder, 0x1A5).append(' ');
+        RadixUtils.appendWordHex(builder, 0xC).append(' ');
+        RadixUtils.appendDwordHex(builder, 0xFE5A231F);
+
+        assertEquals("A5 000C FE5A231F", builder.toString());
+    }
+
+    @Test
+    public void testFormatBinaryStringLongerThanLength() throws Exception {
+        assertEquals("101", RadixUtils.formatBinaryString(5, 2));
+        assertEquals("0", RadixUtils.formatBinaryString(0, 0));
+        assertEquals("1111 1111 1111 1111 1111 1111 1111 1111", RadixUtils.formatBinaryString(-1, 0, 4, true));
+        assertEquals("000000000000000000000000000000000001", RadixUtils.formatBinaryString(1, 36));
+    }
+
+    @Test
+    public void testAppendBinary() throws Exception {
+        StringBuilder builder = new StringBuilder("bits: ");
+
+        RadixUtils.appendBinary(builder, 0x2F, 10, 4, false);
+
+        assertEquals("bits: 00 0010 1111", builder.toString());
+    }
+
+    @Test
+    public void testConvertBigEndianDoesNotModifyInput() throws Exception {
+        byte[] number = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        byte[] shortNumber = new byte[] { 2, 1 };
+
+        RadixUtils.convertToRadix(number, 16, false);
+        RadixUtils.convertToRadix(shortNumber, 16, false);
+
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 }, number);
+        assertArrayEquals(new byte[] { 2, 1 }, shortNumber);
+    }
+
+    @Test
+    public void testConvertLongNumbersToRadix() throws Exception {
+        byte[] bigEndian = new byte[64];
+        for (int i = 0; i < bigEndian.length; i++) {
+            bigEndian[i] = (byte) (i * 37 + 200);
+        }
+        byte[] littleEndian = new byte[bigEndian.length];
+        for (int i = 0; i < bigEndian.length; i++) {
+            littleEndian[i] = bigEndian[bigEndian.length - i - 1];
+        }
+        BigInteger expected = new BigInteger(1, bigEndian);
+
+        for (int radix = 2; radix <= 36; radix++) {
+            String expectedString = expected.toString(radix).toUpperCase();
+            assertEquals(expectedString, RadixUtils.convertToRadix(bigEndian, radix, false));
+            assertEquals(expectedString, RadixUtils.convertToRadix(littleEndian, radix, true));
+            assertArrayEquals(littleEndian, RadixUtils.convertToNumber(expectedString, radix));
+        }
+    }
+
+    @Test
+    public void testConvertUnsigned64BitNumber() throws Exception {
+        byte[] number = new byte[] { -1, -1, -1, -1, -1, -1, -1, -1 };
+
+        assertEquals("FFFFFFFFFFFFFFFF", RadixUtils.convertToRadix(number, 16, true));
+        assertEquals("18446744073709551615", RadixUtils.convertToRadix(number, 10, true));
+        assertArrayEquals(number, RadixUtils.convertToNumber("18446744073709551615", 10));
+    }
+
+    @Test
+    public void testConvertEmptyNumberIsZero() throws Exception {
+        assertEquals("0", RadixUtils.convertToRadix(new byte[0], 10, true));
+        assertEquals("0", RadixUtils.convertToRadix(new byte[12], 10, true));
+    }
+
+    @Test
+    public void testConvert128BitNumberBetweenRadixes() throws Exception {
+        assertEquals(
+                "340282366920938463463374607431768211455",
+                RadixUtils.convertToRadix("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16, 10)
+        );
+        assertEquals("245", RadixUtils.getInstance().convertToRadix("0x000000000000000000000000000000F5", 10));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testConvertNegativeNumberThrows() throws Exception {
+        RadixUtils.convertToNumber("-1", 10);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testConvertLongNegativeNumberThrows() throws Exception {
+        RadixUtils.convertToNumber("-123456789012345678901234567890", 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertToInvalidRadixThrows() throws Exception {
+        RadixUtils.convertToRadix(new byte[] { 1 }, 37, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertFromInvalidRadixThrows() throws Exception {
+        RadixUtils.convertToNumber("1", 1);
+    }
+
+    @Test
+    public void testFirstMatchingPatternWins() throws Exception {
+        RadixUtils radixUtils = RadixUtils.getInstance();
+
+        assertEquals(10, radixUtils.parseRadix("010"));
+        assertEquals(8, radixUtils.parseRadix("010", 8));
+        assertEquals(8, radixUtils.parseRadix("10o"));
+        assertEquals(0x10, radixUtils.parseRadix("10H"));
+        assertEquals(0xAB, radixUtils.parseRadix("0XaB"));
+    }
+
+    @Test
+    public void testParseRadixHasSameLimitsAsParseInt() throws Exception {
+        RadixUtils radixUtils = RadixUtils.getInstance();
+        radixUtils.addNumberPattern(new RadixUtils.NumberPattern("-?[0-9]+s", 10, 0, 1));
+
+        assertEquals(Integer.MAX_VALUE, radixUtils.parseRadix("2147483647"));
+        assertEquals(Integer.MIN_VALUE, radixUtils.parseRadix("-2147483648s"));
+        assertEquals(-5, radixUtils.parseRadix("-5s"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseRadixOverflowThrows() throws Exception {
+        RadixUtils.getInstance().parseRadix("0xFFFFFFFF");
+    }
+
+    @Test
+    public void testPatternsWithOwnGroupsAreRecognized() throws Exception {
+        RadixUtils radixUtils = RadixUtils.getInstance();
+        radixUtils.addNumberPattern(new RadixUtils.NumberPattern("(%|0b)([01]+)", 2, 1, 0));
+
+        assertEquals(5, radixUtils.parseRadix("%101"));
+        assertEquals(0x16, radixUtils.parseRadix("0x16"));
+    }
+
+    @Test
+    public void testSetDefaultsRemovesAddedPatterns() throws Exception {
+        RadixUtils radixUtils = RadixUtils.getInstance();
+        radixUtils.addNumberPattern(new RadixUtils.NumberPattern("[01]+b", 2, 0, 1));
+        assertEquals(2, radixUtils.parseRadix("10b"));
+
+        radixUtils.setDefaults();
+        try {
+            radixUtils.parseRadix("10b");
+            fail("Expected NumberFormatException");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPatternsCanBeAddedWhileParsing() throws Exception {
+        RadixUtils radixUtils = RadixUtils.getInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        assertEquals(i, radixUtils.parseRadix(Integer.toString(i)));
+                        assertEquals(i, radixUtils.parseRadix(Integer.toHexString(i) + "h"));
+                    }
+                }));
+            }
+            for (int i = 0; i < 50; i++) {
+                radixUtils.addNumberPattern(new RadixUtils.NumberPattern("[01]+b" + i, 2, 0, ("b" + i).length()));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(3, radixUtils.parseRadix("11b49"));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.loaders;
+
+import emulib.runtime.MemoryImageSink;
+import emulib.runtime.ProgramImage;
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.plugins.memory.AbstractByteMemoryContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ElfLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] createElf(ByteOrder order, int type, byte[] segment, int address, int memorySize, int entry) {
+        ByteBuffer buffer = ByteBuffer.allocate(52 + 32 + segment.length).order(order);
+        buffer.put(new byte[] { 0x7F, 'E', 'L', 'F', 1, (byte) (order == ByteOrder.LITTLE_ENDIAN ? 1 : 2), 1 });
+        buffer.putInt(0x18, entry);
+        buffer.putInt(0x1C, 52);
+        buffer.putShort(0x28, (short) 52);
+        buffer.putShort(0x2A, (short) 32);
+        buffer.putShort(0x2C, (short) 1);
+
+        buffer.putInt(52, type);
+        buffer.putInt(52 + 4, 84);
+        buffer.putInt(52 + 8, address);
+        buffer.putInt(52 + 12, address);
+        buffer.putInt(52 + 16, segment.length);
+        buffer.putInt(52 + 20, memorySize);
+
+        buffer.position(84);
+        buffer.put(segment);
+        return buffer.array();
+    }
+
+    private Path write(String name, byte[] content) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content);
+        return file;
+    }
+
+    @Test
+    public void testFileIsRecognizedByMagic() throws Exception {
+        ElfLoader loader = new ElfLoader();
+
+        assertTrue(loader.isSupported(write("program", createElf(ByteOrder.BIG_ENDIAN, 1, new byte[0], 0, 0, 0))));
+        assertFalse(loader.isSupported(write("text.elf", new byte[] { 'E', 'L', 'F' })));
+        assertFalse(loader.isSupported(folder.getRoot().toPath().resolve("missing.elf")));
+    }
+
+    @Test
+    public void testLittleEndianSegmentIsLoadedWithBss() throws Exception {
+        Path file = write("le.elf", createElf(ByteOrder.LITTLE_ENDIAN, 1, new byte[] { 1, 2 }, 0x10, 4, 0x11));
+
+        AbstractByteMemoryContext memory = new AbstractByteMemoryContext(32) {};
+        memory.writeByte(0x12, (byte) 7);
+        memory.writeByte(0x13, (byte) 7);
+        MemoryImageSink sink = new MemoryImageSink(memory);
+        new ElfLoader().load(file, sink);
+
+        assertEquals(1, memory.readByte(0x10));
+        assertEquals(2, memory.readByte(0x11));
+        assertEquals(0, memory.readByte(0x12));
+        assertEquals(0, memory.readByte(0x13));
+        assertEquals(0x11, sink.getProgramStart());
+    }
+
+    @Test
+    public void testBigEndianSegmentIsLoaded() throws Exception {
+        Path file = write("be.elf", createElf(ByteOrder.BIG_ENDIAN, 1, new byte[] { 5, 6, 7 }, 0x2000, 3, 0));
+
+        ProgramImage image = new ProgramImage();
+        new ElfLoader().load(file, image);
+
+        assertEquals(0x2000, image.getLowestAddress());
+        assertEquals(3, image.getSize());
+        assertEquals(7, image.get(0x2002));
+    }
+
+    @Test
+    public void testNonLoadableSegmentsAreSkipped() throws Exception {
+        Path file = write("note.elf", createElf(ByteOrder.BIG_ENDIAN, 4, new byte[] { 5 }, 0x10, 1, 0));
+
+        ProgramImage image = new ProgramImage();
+        new ElfLoader().load(file, image);
+
+        assertTrue(image.isEmpty());
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testElf64Throws() throws Exception {
+        byte[] content = createElf(ByteOrder.BIG_ENDIAN, 1, new byte[0], 0, 0, 0);
+        content[4] = 2;
+        new ElfLoader().load(write("64.elf", content), new ProgramImage());
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testSegmentOutOfFileThrows() throws Exception {
+        byte[] content = createElf(ByteOrder.BIG_ENDIAN, 1, new byte[] { 1 }, 0, 1, 0);
+        content[52 + 19] = 100;
+        new ElfLoader().load(write("bad.elf", content), new ProgramImage());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.loaders;
+
+import emulib.runtime.ProgramImage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RawBinaryLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSupportedExtensions() throws Exception {
+        RawBinaryLoader loader = new RawBinaryLoader();
+
+        assertTrue(loader.isSupported(folder.getRoot().toPath().resolve("a.bin")));
+        assertTrue(loader.isSupported(folder.getRoot().toPath().resolve("A.ROM")));
+        assertFalse(loader.isSupported(folder.getRoot().toPath().resolve("a.hex")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBaseAddressThrows() throws Exception {
+        new RawBinaryLoader(-1);
+    }
+
+    @Test
+    public void testFileIsLoadedAtBaseAddress() throws Exception {
+        Path file = folder.newFile("test.bin").toPath();
+        Files.write(file, new byte[] { 1, 2, 3 });
+
+        ProgramImage image = new ProgramImage();
+        new RawBinaryLoader(0x100).load(file, image);
+
+        assertEquals(1, image.getSegmentsCount());
+        assertEquals(0x100, image.getLowestAddress());
+        assertEquals(1, image.get(0x100));
+        assertEquals(3, image.get(0x102));
+    }
+
+    @Test
+    public void testEmptyFileLoadsNothing() throws Exception {
+        Path file = folder.newFile("empty.bin").toPath();
+
+        ProgramImage image = new ProgramImage();
+        new RawBinaryLoader().load(file, image);
+
+        assertTrue(image.isEmpty());
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * KISS, YAGNI, DRY
+ *
+ * (c) Copyright 2006-2017, Peter Jakubčo
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package emulib.runtime.loaders;
+
+import emulib.runtime.MemoryImageSink;
+import emulib.runtime.ProgramImage;
+import emulib.runtime.exceptions.InvalidImageException;
+import emulib.plugins.memory.AbstractByteMemoryContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SRecordLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String name, String content) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    @Test
+    public void testSupportedExtensions() throws Exception {
+        SRecordLoader loader = new SRecordLoader();
+
+        assertTrue(loader.isSupported(folder.getRoot().toPath().resolve("a.s19")));
+        assertTrue(loader.isSupported(folder.getRoot().toPath().resolve("a.S28")));
+        assertTrue(loader.isSupported(folder.getRoot().toPath().resolve("a.s37")));
+        assertTrue(loader.isSupported(folder.getRoot().toPath().resolve("a.srec")));
+        assertFalse(loader.isSupported(folder.getRoot().toPath().resolve("a.bin")));
+        // assembler source files
+        assertFalse(loader.isSupported(folder.getRoot().toPath().resolve("a.s")));
+    }
+
+    @Test
+    public void testS19RecordsAreLoaded() throws Exception {
+        Path file = write("test.s19",
+                "S00600004844521B\n" +
+                "S1060100010203F2\n" +
+                "S5030001FB\n" +
+                "S9030100FB\n");
+
+        AbstractByteMemoryContext memory = new AbstractByteMemoryContext(0x200) {};
+        MemoryImageSink sink = new MemoryImageSink(memory);
+        new SRecordLoader().load(file, sink);
+
+        assertEquals(1, memory.readByte(0x100));
+        assertEquals(2, memory.readByte(0x101));
+        assertEquals(3, memory.readByte(0x102));
+        assertEquals(0x100, sink.getProgramStart());
+    }
+
+    @Test
+    public void testS28AndS37AddressesAreLoaded() throws Exception {
+        Path file = write("test.s37",
+                "S2050100001FDA\n" +
+                "S3060001000120D7\n" +
+                "S70500010000F9\n");
+
+        ProgramImage image = new ProgramImage();
+        new SRecordLoader().load(file, image);
+
+        assertEquals(0x1F, image.get(0x10000));
+        assertEquals(0x20, image.get(0x10001));
+        assertEquals(1, image.getSegmentsCount());
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testInvalidChecksumThrows() throws Exception {
+        new SRecordLoader().load(write("bad.s19", "S1060100010203F3\n"), new ProgramImage());
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testInvalidLengthThrows() throws Exception {
+        new SRecordLoader().load(write("bad.s19", "S1080100010203F1\n"), new ProgramImage());
+    }
+
+    @Test(expected = InvalidImageException.class)
+    public void testUnsupportedRecordTypeThrows() throws Exception {
+        new SRecordLoader().load(write("bad.s19", "S4030000FC\n"), new ProgramImage());
+    }
+
+    @Test
+    public void testErrorMessageContainsLineNumber() throws Exception {
+        try {
+            new SRecordLoader().load(write("bad.s19", "S1060100010203F2\n\nX1\n"), new ProgramImage());
+        } catch (InvalidImageException e) {
+            assertTrue(e.getMessage().startsWith("Line 3:"));
+            return;
+        }
+        throw new AssertionError("Expected exception");
+    }
+
+}